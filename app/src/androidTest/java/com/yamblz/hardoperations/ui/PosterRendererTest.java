@@ -0,0 +1,82 @@
+package com.yamblz.hardoperations.ui;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.test.AndroidTestCase;
+
+import com.yamblz.hardoperations.utils.BitmapUtils;
+
+/**
+ * Compares posters drawn by {@link PosterRenderer} with the output of {@link BitmapUtils#fitToCenterBitmap}.
+ */
+public class PosterRendererTest extends AndroidTestCase
+{
+    private static final int POSTER_SIZE = 1000;
+    private static final int OFFSET = 16;
+    private static final int CHANNEL_TOLERANCE = 2;
+
+    public void testWidePosterRect()
+    {
+        assertSameAsFitToCenter(720, 600);
+    }
+
+    public void testNarrowPosterRect()
+    {
+        assertSameAsFitToCenter(400, 900);
+    }
+
+    public void testUpscaledPoster()
+    {
+        assertSameAsFitToCenter(1440, 600);
+    }
+
+    private void assertSameAsFitToCenter(int width, int height)
+    {
+        Bitmap poster = createPoster();
+
+        Bitmap expected = BitmapUtils.fitToCenterBitmap(poster, width, height);
+
+        Bitmap actual = Bitmap.createBitmap(width + 2 * OFFSET, height + 2 * OFFSET, Bitmap.Config.ARGB_8888);
+        new PosterRenderer().draw(new Canvas(actual), poster, OFFSET, OFFSET, width, height);
+
+        for (int y = 0; y < actual.getHeight(); y++)
+        {
+            for (int x = 0; x < actual.getWidth(); x++)
+            {
+                int actualPixel = actual.getPixel(x, y);
+                boolean insideRect = x >= OFFSET && x < OFFSET + width && y >= OFFSET && y < OFFSET + height;
+                int expectedPixel = insideRect ? expected.getPixel(x - OFFSET, y - OFFSET) : Color.TRANSPARENT;
+                assertPixelsClose(x, y, expectedPixel, actualPixel);
+            }
+        }
+    }
+
+    private static void assertPixelsClose(int x, int y, int expected, int actual)
+    {
+        boolean close = Math.abs(Color.alpha(expected) - Color.alpha(actual)) <= CHANNEL_TOLERANCE
+                && Math.abs(Color.red(expected) - Color.red(actual)) <= CHANNEL_TOLERANCE
+                && Math.abs(Color.green(expected) - Color.green(actual)) <= CHANNEL_TOLERANCE
+                && Math.abs(Color.blue(expected) - Color.blue(actual)) <= CHANNEL_TOLERANCE;
+        if (!close)
+        {
+            fail(String.format("Pixel (%d, %d): expected #%08X, actual #%08X", x, y, expected, actual));
+        }
+    }
+
+    private static Bitmap createPoster()
+    {
+        Bitmap poster = Bitmap.createBitmap(POSTER_SIZE, POSTER_SIZE, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(poster);
+        canvas.drawColor(Color.rgb(30, 60, 90));
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        for (int i = 0; i < 10; i++)
+        {
+            paint.setColor(Color.rgb(25 * i, 255 - 25 * i, (80 * i) % 256));
+            canvas.drawCircle(100 * i + 50, POSTER_SIZE - 100 * i - 50, 40 + 10 * i, paint);
+            canvas.drawRect(100 * i, 100 * i, 100 * i + 30, 100 * i + 300, paint);
+        }
+        return poster;
+    }
+}
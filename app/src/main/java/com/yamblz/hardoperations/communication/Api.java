@@ -1,28 +1,127 @@
 package com.yamblz.hardoperations.communication;
 
+import android.annotation.TargetApi;
 import android.content.Context;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 
 import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonIOException;
+import com.yamblz.hardoperations.BuildConfig;
 import com.yamblz.hardoperations.R;
 import com.yamblz.hardoperations.model.Artist;
+import com.yamblz.hardoperations.model.ArtistStore;
+import com.yamblz.hardoperations.model.GeneratedTypeAdapterFactory;
+import com.yamblz.hardoperations.ui.MemoryBudget;
+import com.yamblz.hardoperations.utils.BackgroundThreadFactory;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Created by i-sergeev on 06.07.16
  */
 public class Api
 {
+    private static final String SNAPSHOT_FILE_NAME = "artists.snapshot";
+    private static final String FEED_FILE_NAME = "artists.json";
+
+    private static final ExecutorService REFRESH_EXECUTOR =
+            Executors.newSingleThreadExecutor(new BackgroundThreadFactory("artists-refresh"));
+
+    public interface ArtistsListener extends ArtistsStreamParser.BatchListener
+    {
+        /**
+         * Called on the loading thread when the batches given out so far are dropped, the batches that follow
+         * start from the first artist again. Happens when the first download of the remote feed breaks off
+         * and the bundled artists are given out instead.
+         */
+        void onArtistsReset();
+
+        /**
+         * Called on the loading thread instead of any batches when a snapshot saved by a previous launch
+         * is loaded. The store holds all the artists and is not appended to.
+         */
+        void onSnapshotLoaded(@NonNull ArtistStore store);
+    }
+
+    public interface OnArtistsChangedListener
+    {
+        /**
+         * Called on the main thread when a newer feed was downloaded, the next load returns it.
+         */
+        void onArtistsChanged();
+    }
+
+    // Application context, loaders keep the Api past the activity that created it
     @NonNull
     private final Context context;
-    private final Gson gson = new Gson();
+    // Generated adapters of the model, Gson reflects over nothing
+    private final Gson gson = new GsonBuilder()
+            .registerTypeAdapterFactory(new GeneratedTypeAdapterFactory())
+            .create();
+    // Null if the bundled resource is the source
+    @Nullable
+    private final ArtistsFeed feed;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
 
+    @Nullable
+    private volatile OnArtistsChangedListener onArtistsChangedListener;
+    private final AtomicBoolean refreshStarted = new AtomicBoolean();
 
     public Api(@NonNull Context context)
     {
-        this.context = context;
+        this(context, BuildConfig.ARTISTS_FEED_URL);
+    }
+
+    /**
+     * @param feedUrl url of the remote feed, empty for the bundled resource
+     */
+    public Api(@NonNull Context context, @NonNull String feedUrl)
+    {
+        this.context = context.getApplicationContext();
+        this.feed = newFeed(this.context, feedUrl);
+    }
+
+    @Nullable
+    private ArtistsFeed newFeed(@NonNull Context context, @NonNull String url)
+    {
+        if (url.isEmpty())
+        {
+            return null;
+        }
+        try
+        {
+            return new ArtistsFeed(new URL(url),
+                                   new File(context.getFilesDir(), FEED_FILE_NAME),
+                                   new ArtistsStreamParser(gson));
+        }
+        catch (MalformedURLException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public void setOnArtistsChangedListener(@Nullable OnArtistsChangedListener listener)
+    {
+        onArtistsChangedListener = listener;
     }
 
     public Artist[] getArtists()
@@ -33,4 +132,271 @@ public class Api
 
         return gson.fromJson(inStreamReader, Artist[].class);
     }
+
+    /**
+     * Streaming version of {@link #getArtists()}: artists are passed to the listener in batches
+     * while the rest of the resource is still being parsed.
+     * <p>
+     * If a snapshot of the same resource was saved by a previous launch its store is given out instead,
+     * see {@link ArtistsListener#onSnapshotLoaded(ArtistStore)}. Otherwise the snapshot is saved once
+     * the resource is parsed.
+     * <p>
+     * With a remote feed the local copy of its last version is the resource, a newer version is
+     * downloaded in background once per {@code Api} and reported to {@link OnArtistsChangedListener}.
+     * Only the first launch waits for the network, the download is parsed while it streams in.
+     * If it fails the bundled artists are given out, after {@link ArtistsListener#onArtistsReset()}
+     * if batches of the download were given out already.
+     */
+    public void getArtists(@NonNull ArtistsListener listener)
+    {
+        if (feed == null)
+        {
+            getArtists(listener, getSourceStamp(), null);
+            return;
+        }
+        File feedFile = feed.getCachedFile();
+        if (feedFile != null)
+        {
+            getArtists(listener, feedFile.lastModified(), feedFile);
+            refreshInBackground(feed);
+            return;
+        }
+
+        refreshStarted.set(true);
+        PublishedCountListener publishedCountListener = new PublishedCountListener(listener);
+        List<Artist> artists;
+        try
+        {
+            artists = feed.download(publishedCountListener);
+        }
+        catch (IOException e)
+        {
+            // Offline first launch or the connection dropped, the bundled feed is better than nothing.
+            // Nothing was saved, the next Api downloads the feed again
+            if (publishedCountListener.publishedCount > 0)
+            {
+                listener.onArtistsReset();
+            }
+            getArtists(listener, getSourceStamp(), null);
+            return;
+        }
+        feedFile = feed.getCachedFile();
+        if (artists == null || feedFile == null)
+        {
+            throw new IllegalStateException("Feed was not saved");
+        }
+        writeSnapshot(artists, feedFile.lastModified());
+    }
+
+    /**
+     * @param feedFile the local copy of the remote feed or null for the bundled resource
+     */
+    private void getArtists(@NonNull ArtistsListener listener, long sourceStamp, @Nullable File feedFile)
+    {
+        File snapshotFile = getSnapshotFile();
+        try
+        {
+            ArtistStore snapshot = ArtistsSnapshot.open(snapshotFile, sourceStamp);
+            if (snapshot != null)
+            {
+                listener.onSnapshotLoaded(snapshot);
+                return;
+            }
+        }
+        catch (IOException ignored)
+        {
+            // Broken snapshot is replaced below
+        }
+
+        List<Artist> artists = parseArtists(openSource(feedFile), listener);
+        writeSnapshot(artists, sourceStamp);
+    }
+
+    private void writeSnapshot(@NonNull List<Artist> artists, long sourceStamp)
+    {
+        ArtistStore store = new ArtistStore();
+        store.addAll(artists);
+        try
+        {
+            ArtistsSnapshot.write(getSnapshotFile(), store, sourceStamp);
+        }
+        catch (IOException ignored)
+        {
+            // Next launch will parse the resource again
+        }
+    }
+
+    @NonNull
+    private InputStream openSource(@Nullable File feedFile)
+    {
+        if (feedFile == null)
+        {
+            return context.getResources().openRawResource(R.raw.artists);
+        }
+        try
+        {
+            return new FileInputStream(feedFile);
+        }
+        catch (FileNotFoundException e)
+        {
+            throw new JsonIOException(e);
+        }
+    }
+
+    /**
+     * Downloads the feed if it changed, the snapshot of the new version is ready for the next load.
+     */
+    private void refreshInBackground(@NonNull final ArtistsFeed feed)
+    {
+        if (!refreshStarted.compareAndSet(false, true))
+        {
+            return;
+        }
+        REFRESH_EXECUTOR.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                List<Artist> artists;
+                try
+                {
+                    artists = feed.download(new ArtistsStreamParser.BatchListener()
+                    {
+                        @Override
+                        public void onBatchParsed(@NonNull List<Artist> batch)
+                        {
+                        }
+                    });
+                }
+                catch (IOException e)
+                {
+                    // The local copy stays, the next Api retries
+                    return;
+                }
+                File feedFile = feed.getCachedFile();
+                if (artists == null || feedFile == null)
+                {
+                    return;
+                }
+                writeSnapshot(artists, feedFile.lastModified());
+                mainHandler.post(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        OnArtistsChangedListener listener = onArtistsChangedListener;
+                        if (listener != null)
+                        {
+                            listener.onArtistsChanged();
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Large feeds are parsed on all cores, see {@link ArtistsParallelParser}, unless their chars don't fit
+     * into the memory budget. The rest is streamed.
+     */
+    @NonNull
+    private List<Artist> parseArtists(@NonNull InputStream inStream,
+                                      @NonNull ArtistsStreamParser.BatchListener listener)
+    {
+        try
+        {
+            // Uncompressed size of the resource, chars take no more than their UTF-8 bytes
+            int length = inStream.available();
+            int parallelism = Runtime.getRuntime().availableProcessors();
+            Reader reader = new InputStreamReader(inStream, "UTF-8");
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP
+                    && ArtistsParallelParser.isWorthParallel(length,
+                                                             parallelism,
+                                                             MemoryBudget.with(context).getParseBufferBytes()))
+            {
+                return parseInParallel(reader, length, parallelism, listener);
+            }
+            return new ArtistsStreamParser(gson).parse(reader, listener);
+        }
+        catch (IOException e)
+        {
+            throw new JsonIOException(e);
+        }
+        finally
+        {
+            closeQuietly(inStream);
+        }
+    }
+
+    @NonNull
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    private List<Artist> parseInParallel(@NonNull Reader reader,
+                                         int length,
+                                         int parallelism,
+                                         @NonNull ArtistsStreamParser.BatchListener listener) throws IOException
+    {
+        char[] json = new char[length + 1];
+        int count = 0;
+        int read;
+        while ((read = reader.read(json, count, json.length - count)) != -1)
+        {
+            count += read;
+            if (count == json.length)
+            {
+                json = Arrays.copyOf(json, json.length * 2);
+            }
+        }
+        return new ArtistsParallelParser(gson, parallelism).parse(json, count, listener);
+    }
+
+    @NonNull
+    private File getSnapshotFile()
+    {
+        return new File(context.getFilesDir(), SNAPSHOT_FILE_NAME);
+    }
+
+    /**
+     * Raw resource can only change together with the apk, so the install time identifies its version.
+     */
+    private long getSourceStamp()
+    {
+        try
+        {
+            return context.getPackageManager().getPackageInfo(context.getPackageName(), 0).lastUpdateTime;
+        }
+        catch (PackageManager.NameNotFoundException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class PublishedCountListener implements ArtistsStreamParser.BatchListener
+    {
+        @NonNull
+        private final ArtistsStreamParser.BatchListener listener;
+        int publishedCount;
+
+        PublishedCountListener(@NonNull ArtistsStreamParser.BatchListener listener)
+        {
+            this.listener = listener;
+        }
+
+        @Override
+        public void onBatchParsed(@NonNull List<Artist> batch)
+        {
+            publishedCount += batch.size();
+            listener.onBatchParsed(batch);
+        }
+    }
+
+    private static void closeQuietly(InputStream inStream)
+    {
+        try
+        {
+            inStream.close();
+        }
+        catch (IOException ignored)
+        {
+        }
+    }
 }
@@ -0,0 +1,325 @@
+package com.yamblz.hardoperations.communication;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+
+import com.google.gson.JsonParseException;
+import com.yamblz.hardoperations.model.Artist;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Remote artists feed with a local copy of its last version.
+ * <p>
+ * Downloads are conditional: the validators of the copy, ETag and Last-Modified, are sent back and
+ * an unchanged feed costs a 304 with no body. The feed is requested gzipped, the response is parsed
+ * while it is being downloaded and is saved as plain JSON next to the validators once all of it parsed.
+ */
+public class ArtistsFeed
+{
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int CONNECT_TIMEOUT_MS = 15000;
+    private static final int READ_TIMEOUT_MS = 20000;
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String VALIDATORS_SUFFIX = ".validators";
+
+    @NonNull
+    private final URL url;
+    @NonNull
+    private final File file;
+    @NonNull
+    private final ArtistsStreamParser parser;
+
+    /**
+     * @param file the local copy of the feed; the validators and temp files are kept next to it
+     */
+    public ArtistsFeed(@NonNull URL url, @NonNull File file, @NonNull ArtistsStreamParser parser)
+    {
+        this.url = url;
+        this.file = file;
+        this.parser = parser;
+    }
+
+    /**
+     * @return the copy of the last downloaded version or null if nothing was downloaded yet
+     */
+    @Nullable
+    public File getCachedFile()
+    {
+        return file.isFile() ? file : null;
+    }
+
+    /**
+     * Downloads the feed if it changed since the cached copy, artists are passed to the listener
+     * while the response is still being read.
+     *
+     * @return artists of the new version or null if the cached copy is up to date
+     */
+    @Nullable
+    @WorkerThread
+    public List<Artist> download(@NonNull ArtistsStreamParser.BatchListener listener) throws IOException
+    {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        connection.setReadTimeout(READ_TIMEOUT_MS);
+        // Validators are handled here, the platform cache would only keep a second copy
+        connection.setUseCaches(false);
+        // Set explicitly, the stream is not decompressed by the connection then
+        connection.setRequestProperty("Accept-Encoding", "gzip");
+        String[] validators = getCachedFile() != null ? readValidators() : null;
+        if (validators != null)
+        {
+            setRequestProperty(connection, "If-None-Match", validators[0]);
+            setRequestProperty(connection, "If-Modified-Since", validators[1]);
+        }
+        try
+        {
+            int responseCode = connection.getResponseCode();
+            if (responseCode == HttpURLConnection.HTTP_NOT_MODIFIED && validators != null)
+            {
+                return null;
+            }
+            if (responseCode != HttpURLConnection.HTTP_OK)
+            {
+                throw new IOException("HTTP " + responseCode + " for " + url);
+            }
+            InputStream in = connection.getInputStream();
+            try
+            {
+                if ("gzip".equalsIgnoreCase(connection.getContentEncoding()))
+                {
+                    in = new GZIPInputStream(in);
+                }
+                List<Artist> artists = save(in, listener);
+                writeValidators(connection.getHeaderField("ETag"), connection.getHeaderField("Last-Modified"));
+                return artists;
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        finally
+        {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Parses the feed while copying it to a temp file, the copy replaces the cached one if the feed parsed.
+     * A feed with an id that is not a number is rejected, the store keeps ids as numbers.
+     */
+    @NonNull
+    private List<Artist> save(@NonNull InputStream in, @NonNull ArtistsStreamParser.BatchListener listener)
+            throws IOException
+    {
+        File tempFile = new File(file.getPath() + TEMP_SUFFIX);
+        OutputStream out = new FileOutputStream(tempFile);
+        boolean saved = false;
+        try
+        {
+            CopyingInputStream copyingIn = new CopyingInputStream(in, out);
+            List<Artist> artists = parser.parse(new InputStreamReader(copyingIn, UTF_8),
+                                                new IdCheckingListener(listener));
+            copyingIn.drain();
+            out.close();
+            if (!tempFile.renameTo(file))
+            {
+                throw new IOException("Can't write " + file);
+            }
+            saved = true;
+            return artists;
+        }
+        catch (JsonParseException e)
+        {
+            // A broken response is a failed download like any other
+            throw new IOException(e);
+        }
+        catch (IllegalStateException e)
+        {
+            throw new IOException(e);
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IOException(e);
+        }
+        finally
+        {
+            if (!saved)
+            {
+                out.close();
+                tempFile.delete();
+            }
+        }
+    }
+
+    /**
+     * @return ETag and Last-Modified of the cached copy, each may be null
+     */
+    @Nullable
+    private String[] readValidators()
+    {
+        try
+        {
+            BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(new FileInputStream(file.getPath() + VALIDATORS_SUFFIX), UTF_8));
+            try
+            {
+                return new String[]{emptyToNull(reader.readLine()), emptyToNull(reader.readLine())};
+            }
+            finally
+            {
+                reader.close();
+            }
+        }
+        catch (IOException e)
+        {
+            // No validators, the feed is downloaded unconditionally
+            return null;
+        }
+    }
+
+    /**
+     * Written after the copy: validators of a newer version next to an older copy would keep it forever.
+     */
+    private void writeValidators(@Nullable String eTag, @Nullable String lastModified) throws IOException
+    {
+        File validatorsFile = new File(file.getPath() + VALIDATORS_SUFFIX);
+        File tempFile = new File(validatorsFile.getPath() + TEMP_SUFFIX);
+        Writer writer = new OutputStreamWriter(new FileOutputStream(tempFile), UTF_8);
+        try
+        {
+            writer.write((eTag != null ? eTag : "") + "\n" + (lastModified != null ? lastModified : "") + "\n");
+        }
+        finally
+        {
+            writer.close();
+        }
+        if (!tempFile.renameTo(validatorsFile))
+        {
+            tempFile.delete();
+            throw new IOException("Can't write " + validatorsFile);
+        }
+    }
+
+    private static void setRequestProperty(@NonNull HttpURLConnection connection,
+                                           @NonNull String name,
+                                           @Nullable String value)
+    {
+        if (value != null)
+        {
+            connection.setRequestProperty(name, value);
+        }
+    }
+
+    @Nullable
+    private static String emptyToNull(@Nullable String value)
+    {
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    /**
+     * Checks the ids of a batch before it is passed on, so no batch with a broken id reaches the listener.
+     */
+    private static final class IdCheckingListener implements ArtistsStreamParser.BatchListener
+    {
+        @NonNull
+        private final ArtistsStreamParser.BatchListener listener;
+
+        IdCheckingListener(@NonNull ArtistsStreamParser.BatchListener listener)
+        {
+            this.listener = listener;
+        }
+
+        @Override
+        public void onBatchParsed(@NonNull List<Artist> batch)
+        {
+            for (Artist artist : batch)
+            {
+                // Throws NumberFormatException for a null id too
+                Long.parseLong(artist.getId());
+            }
+            listener.onBatchParsed(batch);
+        }
+    }
+
+    /**
+     * Writes everything read from the stream to {@code out}.
+     */
+    private static final class CopyingInputStream extends FilterInputStream
+    {
+        @NonNull
+        private final OutputStream out;
+
+        CopyingInputStream(@NonNull InputStream in, @NonNull OutputStream out)
+        {
+            super(in);
+            this.out = out;
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            int b = super.read();
+            if (b != -1)
+            {
+                out.write(b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(@NonNull byte[] buffer, int offset, int count) throws IOException
+        {
+            int read = super.read(buffer, offset, count);
+            if (read > 0)
+            {
+                out.write(buffer, offset, read);
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException
+        {
+            // Skipped bytes must be copied too
+            byte[] buffer = new byte[(int) Math.min(n, 8192)];
+            int read = read(buffer, 0, buffer.length);
+            return Math.max(read, 0);
+        }
+
+        /**
+         * Copies what the parser left after the array.
+         */
+        void drain() throws IOException
+        {
+            byte[] buffer = new byte[8192];
+            //noinspection StatementWithEmptyBody
+            while (read(buffer, 0, buffer.length) != -1)
+            {
+            }
+        }
+
+        @Override
+        public boolean markSupported()
+        {
+            return false;
+        }
+    }
+}
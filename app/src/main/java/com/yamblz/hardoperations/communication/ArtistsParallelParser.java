@@ -0,0 +1,439 @@
+package com.yamblz.hardoperations.communication;
+
+import android.support.annotation.NonNull;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.MalformedJsonException;
+import com.yamblz.hardoperations.model.Artist;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * Parses the artists array on several cores. A scanner that only tracks nesting and strings splits
+ * the array into chunks of whole records, chunks are parsed by a fork-join pool into their places
+ * of the result.
+ * <p>
+ * The first batches, at least {@link #MIN_SERIAL_COUNT} artists, are parsed and handed out one by one
+ * before the rest is scanned, like {@link ArtistsStreamParser} does. Batches of the rest keep growing
+ * the same way and are handed out in order as soon as the chunks they are in are parsed.
+ * <p>
+ * The whole feed is held as chars, two bytes per char next to the parsed artists, see
+ * {@link #isWorthParallel(int, int, long)}. Needs {@link ForkJoinPool}, which Android has since API 21.
+ */
+public class ArtistsParallelParser
+{
+    // Below this the scan and the fork-join overhead eat the gain
+    public static final int MIN_PARALLEL_LENGTH = 256 * 1024;
+    // More than a screen of cards on any device
+    static final int MIN_SERIAL_COUNT = 16;
+    // Chunks per thread, so that a thread done early takes work of the others
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    @NonNull
+    private final TypeAdapter<Artist> artistAdapter;
+    private final int parallelism;
+
+    public ArtistsParallelParser(@NonNull Gson gson, int parallelism)
+    {
+        if (parallelism < 1)
+        {
+            throw new IllegalArgumentException("Parallelism " + parallelism);
+        }
+        this.artistAdapter = gson.getAdapter(Artist.class);
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Whether a feed of {@code length} chars is parsed faster in parallel than by {@link ArtistsStreamParser}
+     * and its chars fit into {@code maxBufferBytes}.
+     */
+    public static boolean isWorthParallel(int length, int parallelism, long maxBufferBytes)
+    {
+        return parallelism > 1 && length >= MIN_PARALLEL_LENGTH && getBufferBytes(length) <= maxBufferBytes;
+    }
+
+    /**
+     * @return bytes of the chars a feed of {@code length} chars is read into
+     */
+    public static long getBufferBytes(int length)
+    {
+        return 2L * (length + 1);
+    }
+
+    @NonNull
+    public List<Artist> parse(@NonNull char[] json, int length, @NonNull ArtistsStreamParser.BatchListener listener)
+            throws IOException
+    {
+        RecordScanner scanner = new RecordScanner(json, length);
+
+        List<Artist> first = new ArrayList<Artist>();
+        int batchSize = ArtistsStreamParser.FIRST_BATCH_SIZE;
+        while (!scanner.isAtEnd() && first.size() < MIN_SERIAL_COUNT)
+        {
+            Chunk chunk = scanner.nextChunk(first.size(), batchSize, Integer.MAX_VALUE);
+            Artist[] batch = new Artist[chunk.count];
+            chunk.parse(json, batch, 0, artistAdapter);
+            first.addAll(Arrays.asList(batch));
+            listener.onBatchParsed(new ArrayList<Artist>(Arrays.asList(batch)));
+            batchSize = ArtistsStreamParser.nextBatchSize(batchSize);
+        }
+
+        List<Chunk> chunks = new ArrayList<Chunk>();
+        int chunkLength = Math.max(1, (length - scanner.position) / (parallelism * CHUNKS_PER_THREAD));
+        int count = first.size();
+        while (!scanner.isAtEnd())
+        {
+            Chunk chunk = scanner.nextChunk(count, Integer.MAX_VALUE, chunkLength);
+            chunks.add(chunk);
+            count += chunk.count;
+        }
+
+        Artist[] artists = first.toArray(new Artist[count]);
+        List<Artist> result = Arrays.asList(artists);
+        if (!chunks.isEmpty())
+        {
+            parseChunks(json, chunks, artists, result, first.size(), batchSize, listener);
+        }
+        return result;
+    }
+
+    /**
+     * Parses the chunks in parallel, hands out batches of {@code result} from {@code published} on
+     * in order as the chunks are parsed.
+     */
+    private void parseChunks(@NonNull final char[] json,
+                             @NonNull List<Chunk> chunks,
+                             @NonNull final Artist[] artists,
+                             @NonNull List<Artist> result,
+                             int published,
+                             int batchSize,
+                             @NonNull ArtistsStreamParser.BatchListener listener) throws IOException
+    {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try
+        {
+            List<Future<Void>> parsed = new ArrayList<Future<Void>>(chunks.size());
+            for (final Chunk chunk : chunks)
+            {
+                parsed.add(pool.submit(new Callable<Void>()
+                {
+                    @Override
+                    public Void call() throws IOException
+                    {
+                        chunk.parse(json, artists, chunk.firstIndex, artistAdapter);
+                        return null;
+                    }
+                }));
+            }
+
+            for (int i = 0; i < chunks.size(); i++)
+            {
+                await(parsed.get(i));
+                Chunk chunk = chunks.get(i);
+                int parsedCount = chunk.firstIndex + chunk.count;
+                boolean last = i == chunks.size() - 1;
+                while (parsedCount - published >= batchSize || (last && published < parsedCount))
+                {
+                    int to = Math.min(published + batchSize, parsedCount);
+                    listener.onBatchParsed(result.subList(published, to));
+                    published = to;
+                    batchSize = ArtistsStreamParser.nextBatchSize(batchSize);
+                }
+            }
+        }
+        finally
+        {
+            // Stops the chunks still queued if one of them failed
+            pool.shutdownNow();
+        }
+    }
+
+    private static void await(@NonNull Future<Void> parsed) throws IOException
+    {
+        try
+        {
+            parsed.get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            // Fork-join pools wrap checked exceptions of callables into runtime ones
+            for (Throwable wrapped = cause; wrapped != null; wrapped = wrapped.getCause())
+            {
+                if (wrapped instanceof IOException)
+                {
+                    throw (IOException) wrapped;
+                }
+            }
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error)
+            {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    /**
+     * Whole records {@code [start, end)} of the array, the first of them has {@code firstIndex} in the array.
+     */
+    static final class Chunk
+    {
+        final int start;
+        final int end;
+        final int firstIndex;
+        final int count;
+
+        Chunk(int start, int end, int firstIndex, int count)
+        {
+            this.start = start;
+            this.end = end;
+            this.firstIndex = firstIndex;
+            this.count = count;
+        }
+
+        void parse(@NonNull char[] json,
+                   @NonNull Artist[] artists,
+                   int offset,
+                   @NonNull TypeAdapter<Artist> adapter) throws IOException
+        {
+            JsonReader reader = new JsonReader(new ChunkReader(json, start, end));
+            reader.beginArray();
+            for (int i = 0; i < count; i++)
+            {
+                artists[offset + i] = adapter.read(reader);
+            }
+            reader.endArray();
+        }
+    }
+
+    /**
+     * Finds the boundaries of the records of the top level array. Looks at brackets, braces,
+     * quotes and escapes only, the records themselves are validated by the parser.
+     */
+    static final class RecordScanner
+    {
+        private final char[] json;
+        private final int length;
+        private int position;
+        private boolean atEnd;
+
+        RecordScanner(@NonNull char[] json, int length) throws MalformedJsonException
+        {
+            this.json = json;
+            this.length = length;
+            skipWhitespace();
+            if (position == length || json[position] != '[')
+            {
+                throw error("Expected an array");
+            }
+            position++;
+            skipWhitespace();
+            if (position < length && json[position] == ']')
+            {
+                position++;
+                atEnd = true;
+            }
+        }
+
+        boolean isAtEnd()
+        {
+            return atEnd;
+        }
+
+        /**
+         * Scans records until there are {@code maxCount} of them or they are at least {@code minLength} chars long.
+         */
+        @NonNull
+        Chunk nextChunk(int firstIndex, int maxCount, int minLength) throws MalformedJsonException
+        {
+            int start = position;
+            int count = 0;
+            while (!atEnd && count < maxCount && position - start < minLength)
+            {
+                skipValue();
+                count++;
+                skipWhitespace();
+                if (position == length)
+                {
+                    throw error("Unterminated array");
+                }
+                char c = json[position++];
+                if (c == ']')
+                {
+                    atEnd = true;
+                    return new Chunk(start, position - 1, firstIndex, count);
+                }
+                if (c != ',')
+                {
+                    throw error("Expected ',' or ']'");
+                }
+                skipWhitespace();
+            }
+            // Ends after the separator, the reader of the chunk skips it
+            return new Chunk(start, position, firstIndex, count);
+        }
+
+        private void skipValue() throws MalformedJsonException
+        {
+            int depth = 0;
+            while (position < length)
+            {
+                char c = json[position++];
+                switch (c)
+                {
+                    case '"':
+                        skipString();
+                        break;
+                    case '{':
+                    case '[':
+                        depth++;
+                        break;
+                    case '}':
+                    case ']':
+                        if (depth == 0)
+                        {
+                            // The end of the top level array, a record can't be empty
+                            throw error("Expected a value");
+                        }
+                        depth--;
+                        break;
+                    case ',':
+                        if (depth == 0)
+                        {
+                            throw error("Expected a value");
+                        }
+                        break;
+                    default:
+                        if (depth == 0 && !isLiteral(c))
+                        {
+                            throw error("Unexpected character");
+                        }
+                        break;
+                }
+                if (depth == 0 && (position == length || !isLiteral(json[position])))
+                {
+                    return;
+                }
+            }
+            throw error("Unterminated value");
+        }
+
+        private void skipString() throws MalformedJsonException
+        {
+            while (position < length)
+            {
+                char c = json[position++];
+                if (c == '\\')
+                {
+                    position++;
+                }
+                else if (c == '"')
+                {
+                    return;
+                }
+            }
+            throw error("Unterminated string");
+        }
+
+        /**
+         * Chars of numbers, true, false and null.
+         */
+        private static boolean isLiteral(char c)
+        {
+            return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'z') || c == '-' || c == '+' || c == '.'
+                    || c == 'E';
+        }
+
+        private void skipWhitespace()
+        {
+            while (position < length)
+            {
+                char c = json[position];
+                if (c != ' ' && c != '\n' && c != '\r' && c != '\t')
+                {
+                    return;
+                }
+                position++;
+            }
+        }
+
+        @NonNull
+        private MalformedJsonException error(@NonNull String message)
+        {
+            return new MalformedJsonException(message + " at char " + position);
+        }
+    }
+
+    /**
+     * Reads the records of a chunk as an array of their own: {@code [} + records + {@code ]}.
+     */
+    private static final class ChunkReader extends Reader
+    {
+        private final char[] json;
+        private final int end;
+        private int position;
+        private boolean openRead;
+        private boolean closeRead;
+
+        ChunkReader(char[] json, int start, int end)
+        {
+            this.json = json;
+            this.position = start;
+            // A trailing separator would be read as an empty record
+            while (end > start && (json[end - 1] == ',' || Character.isWhitespace(json[end - 1])))
+            {
+                end--;
+            }
+            this.end = end;
+        }
+
+        @Override
+        public int read(@NonNull char[] buffer, int offset, int count)
+        {
+            if (count == 0)
+            {
+                return 0;
+            }
+            int read = 0;
+            if (!openRead)
+            {
+                buffer[offset + read++] = '[';
+                openRead = true;
+            }
+            int copied = Math.min(count - read, end - position);
+            System.arraycopy(json, position, buffer, offset + read, copied);
+            position += copied;
+            read += copied;
+            if (position == end && !closeRead && read < count)
+            {
+                buffer[offset + read++] = ']';
+                closeRead = true;
+            }
+            return read > 0 ? read : -1;
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+}
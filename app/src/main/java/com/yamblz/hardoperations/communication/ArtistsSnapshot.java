@@ -0,0 +1,102 @@
+package com.yamblz.hardoperations.communication;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.yamblz.hardoperations.model.ArtistStore;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Copy of the artists store saved by a launch that the next launches map instead of parsing the feed.
+ * <p>
+ * Layout: header ({@code magic, format version, source stamp}), the columns of the store as
+ * {@link ArtistStore#writeTo(DataOutputStream)} writes them. The columns are read back in bulk,
+ * texts are decoded from the mapping only when a row is shown.
+ */
+public final class ArtistsSnapshot
+{
+    private static final int MAGIC = 0x41525453;
+    // 1 had a record per artist that was decoded into an Artist object
+    private static final int FORMAT_VERSION = 2;
+    private static final int HEADER_SIZE = 4 + 4 + 8;
+
+    private ArtistsSnapshot()
+    {
+    }
+
+    /**
+     * @param sourceStamp version of the data the snapshot was made from, e.g. the time the app was installed
+     * @return store backed by the mapped snapshot or null if the file is missing, broken or was written
+     * for another source stamp
+     */
+    @Nullable
+    public static ArtistStore open(@NonNull File file, long sourceStamp) throws IOException
+    {
+        if (!file.isFile() || file.length() < HEADER_SIZE)
+        {
+            return null;
+        }
+
+        RandomAccessFile randomAccessFile = new RandomAccessFile(file, "r");
+        MappedByteBuffer buffer;
+        try
+        {
+            FileChannel channel = randomAccessFile.getChannel();
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        finally
+        {
+            randomAccessFile.close();
+        }
+
+        if (buffer.getInt() != MAGIC || buffer.getInt() != FORMAT_VERSION || buffer.getLong() != sourceStamp)
+        {
+            return null;
+        }
+        try
+        {
+            return ArtistStore.read(buffer);
+        }
+        catch (BufferUnderflowException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Writes the snapshot to a temporary file first, so a reader never sees a half written one.
+     * Must be called by the thread that appends to the store.
+     */
+    public static void write(@NonNull File file, @NonNull ArtistStore store, long sourceStamp) throws IOException
+    {
+        File tempFile = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+        try
+        {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(sourceStamp);
+            store.writeTo(out);
+        }
+        finally
+        {
+            out.close();
+        }
+
+        if (!tempFile.renameTo(file))
+        {
+            //noinspection ResultOfMethodCallIgnored
+            tempFile.delete();
+            throw new IOException("Can't move snapshot to " + file);
+        }
+    }
+}
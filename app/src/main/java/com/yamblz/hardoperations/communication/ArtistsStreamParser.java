@@ -0,0 +1,77 @@
+package com.yamblz.hardoperations.communication;
+
+import android.support.annotation.NonNull;
+
+import com.google.gson.Gson;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.yamblz.hardoperations.model.Artist;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Parses the artists array element by element and hands parsed artists out in batches.
+ * The first batch is just big enough to fill the first screen, the following ones grow
+ * up to {@link #MAX_BATCH_SIZE} so that late batches don't flood the UI thread.
+ */
+public class ArtistsStreamParser
+{
+    public static final int FIRST_BATCH_SIZE = 4;
+    public static final int MAX_BATCH_SIZE = 256;
+
+    public interface BatchListener
+    {
+        /**
+         * Called on the parsing thread. The batch is not touched by the parser afterwards.
+         */
+        void onBatchParsed(@NonNull List<Artist> batch);
+    }
+
+    @NonNull
+    private final TypeAdapter<Artist> artistAdapter;
+
+    public ArtistsStreamParser(@NonNull Gson gson)
+    {
+        artistAdapter = gson.getAdapter(Artist.class);
+    }
+
+    @NonNull
+    public List<Artist> parse(@NonNull Reader reader, @NonNull BatchListener listener) throws IOException
+    {
+        JsonReader jsonReader = new JsonReader(reader);
+        List<Artist> artists = new ArrayList<Artist>();
+
+        int batchSize = FIRST_BATCH_SIZE;
+        List<Artist> batch = new ArrayList<Artist>(batchSize);
+
+        jsonReader.beginArray();
+        while (jsonReader.hasNext())
+        {
+            Artist artist = artistAdapter.read(jsonReader);
+            artists.add(artist);
+            batch.add(artist);
+
+            if (batch.size() == batchSize)
+            {
+                listener.onBatchParsed(batch);
+                batchSize = nextBatchSize(batchSize);
+                batch = new ArrayList<Artist>(batchSize);
+            }
+        }
+        jsonReader.endArray();
+
+        if (!batch.isEmpty())
+        {
+            listener.onBatchParsed(batch);
+        }
+        return artists;
+    }
+
+    static int nextBatchSize(int batchSize)
+    {
+        return Math.min(batchSize * 2, MAX_BATCH_SIZE);
+    }
+}
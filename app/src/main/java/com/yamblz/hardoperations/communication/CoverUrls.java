@@ -0,0 +1,64 @@
+package com.yamblz.hardoperations.communication;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import com.yamblz.hardoperations.model.Cover;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Picks the cover url for the size a cover is shown at. Cover urls end with the image size,
+ * e.g. {@code .../300x300}, so besides the two variants of {@link Cover} the exact size may be requested.
+ */
+public final class CoverUrls
+{
+    private static final Pattern SIZE_SUFFIX = Pattern.compile("/(\\d+)x(\\d+)$");
+
+    private CoverUrls()
+    {
+    }
+
+    /**
+     * @param targetWidth width the cover is drawn at
+     * @param exactSize   request an image of exactly the target width instead of the nearest bigger variant
+     */
+    @Nullable
+    public static String forWidth(@NonNull Cover cover, int targetWidth, boolean exactSize)
+    {
+        String smallUrl = cover.getSmallImageUrl();
+        String bigUrl = cover.getBigImageUrl();
+        int smallWidth = getWidth(smallUrl);
+        int bigWidth = getWidth(bigUrl);
+
+        if (exactSize && bigWidth > 0 && targetWidth < bigWidth && targetWidth != smallWidth)
+        {
+            return withSize(bigUrl, targetWidth, targetWidth);
+        }
+        if (smallUrl != null && (bigUrl == null || (smallWidth > 0 && smallWidth >= targetWidth)))
+        {
+            return smallUrl;
+        }
+        return bigUrl;
+    }
+
+    /**
+     * @return width encoded in the url or 0 if the url has no size
+     */
+    public static int getWidth(@Nullable String url)
+    {
+        if (url == null)
+        {
+            return 0;
+        }
+        Matcher matcher = SIZE_SUFFIX.matcher(url);
+        return matcher.find() ? Integer.parseInt(matcher.group(1)) : 0;
+    }
+
+    @NonNull
+    static String withSize(@NonNull String url, int width, int height)
+    {
+        return SIZE_SUFFIX.matcher(url).replaceFirst("/" + width + "x" + height);
+    }
+}
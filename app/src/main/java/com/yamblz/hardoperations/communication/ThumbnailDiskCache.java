@@ -0,0 +1,253 @@
+package com.yamblz.hardoperations.communication;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Disk tier of the poster cache: images already scaled to the size they are drawn at, keyed by
+ * (url, width, height). A thumbnail is downloaded and scaled once, warm starts and other cards
+ * of the same size read the small file.
+ * <p>
+ * Files are evicted least recently used first when their total size exceeds the budget.
+ */
+public class ThumbnailDiskCache
+{
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    private static final int CONNECT_TIMEOUT_MS = 15000;
+    private static final int READ_TIMEOUT_MS = 20000;
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    public interface Transcoder
+    {
+        /**
+         * Scales the downloaded image to the thumbnail size and encodes it.
+         */
+        @NonNull
+        byte[] transcode(@NonNull InputStream source, int width, int height) throws IOException;
+    }
+
+    @NonNull
+    private final File directory;
+    private final long maxBytes;
+    @NonNull
+    private final Transcoder transcoder;
+
+    // File name to file size, in access order
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<String, Long>(64, 0.75f, true);
+    private long totalBytes;
+
+    /**
+     * Reads the list of files in the directory, to be created off the UI thread.
+     */
+    public ThumbnailDiskCache(@NonNull File directory, long maxBytes, @NonNull Transcoder transcoder)
+    {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        this.transcoder = transcoder;
+
+        directory.mkdirs();
+        File[] files = directory.listFiles();
+        if (files == null)
+        {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>()
+        {
+            @Override
+            public int compare(File lhs, File rhs)
+            {
+                long left = lhs.lastModified();
+                long right = rhs.lastModified();
+                return left < right ? -1 : (left == right ? 0 : 1);
+            }
+        });
+        for (File file : files)
+        {
+            if (file.getName().endsWith(TEMP_SUFFIX))
+            {
+                // Left by a process killed while writing
+                file.delete();
+            }
+            else
+            {
+                entries.put(file.getName(), file.length());
+                totalBytes += file.length();
+            }
+        }
+    }
+
+    /**
+     * @return the cached thumbnail or null if it is not on disk
+     */
+    @Nullable
+    public File peek(@NonNull String url, int width, int height)
+    {
+        String name = fileName(url, width, height);
+        synchronized (this)
+        {
+            if (entries.get(name) == null)
+            {
+                return null;
+            }
+        }
+        File file = new File(directory, name);
+        // Keeps the order of the entries after a restart; fails if the system cleared the cache dir
+        if (!file.setLastModified(System.currentTimeMillis()) && !file.exists())
+        {
+            removeEntry(name);
+            return null;
+        }
+        return file;
+    }
+
+    /**
+     * Deletes a thumbnail that turned out to be unreadable, the next {@link #get(String, int, int)}
+     * downloads it again.
+     */
+    public void remove(@NonNull String url, int width, int height)
+    {
+        String name = fileName(url, width, height);
+        new File(directory, name).delete();
+        removeEntry(name);
+    }
+
+    private synchronized void removeEntry(@NonNull String name)
+    {
+        Long removed = entries.remove(name);
+        if (removed != null)
+        {
+            totalBytes -= removed;
+        }
+    }
+
+    /**
+     * Returns the cached thumbnail, downloading and scaling the image first if it is not on disk.
+     */
+    @NonNull
+    @WorkerThread
+    public File get(@NonNull String url, int width, int height) throws IOException
+    {
+        File cached = peek(url, width, height);
+        if (cached != null)
+        {
+            return cached;
+        }
+
+        byte[] thumbnail = download(url, width, height);
+        String name = fileName(url, width, height);
+        File file = new File(directory, name);
+        // Loads of the same thumbnail may race, each writes its own temp file and the renames replace each other
+        File tempFile = File.createTempFile(name, TEMP_SUFFIX, directory);
+        OutputStream out = new FileOutputStream(tempFile);
+        try
+        {
+            out.write(thumbnail);
+        }
+        finally
+        {
+            out.close();
+        }
+        if (!tempFile.renameTo(file))
+        {
+            tempFile.delete();
+            throw new IOException("Can't write " + file);
+        }
+
+        synchronized (this)
+        {
+            Long replaced = entries.put(name, (long) thumbnail.length);
+            totalBytes += thumbnail.length - (replaced != null ? replaced : 0);
+            trimToSize(name);
+        }
+        return file;
+    }
+
+    @NonNull
+    private byte[] download(@NonNull String url, int width, int height) throws IOException
+    {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        connection.setReadTimeout(READ_TIMEOUT_MS);
+        // The thumbnail is the cache, the full image is not needed anymore
+        connection.setUseCaches(false);
+        try
+        {
+            int responseCode = connection.getResponseCode();
+            if (responseCode != HttpURLConnection.HTTP_OK)
+            {
+                throw new IOException("HTTP " + responseCode + " for " + url);
+            }
+            InputStream in = connection.getInputStream();
+            try
+            {
+                return transcoder.transcode(in, width, height);
+            }
+            finally
+            {
+                in.close();
+            }
+        }
+        finally
+        {
+            connection.disconnect();
+        }
+    }
+
+    private void trimToSize(@NonNull String keep)
+    {
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && iterator.hasNext())
+        {
+            Map.Entry<String, Long> eldest = iterator.next();
+            if (eldest.getKey().equals(keep))
+            {
+                continue;
+            }
+            new File(directory, eldest.getKey()).delete();
+            totalBytes -= eldest.getValue();
+            iterator.remove();
+        }
+    }
+
+    public synchronized long getSize()
+    {
+        return totalBytes;
+    }
+
+    @NonNull
+    static String fileName(@NonNull String url, int width, int height)
+    {
+        try
+        {
+            byte[] digest = MessageDigest.getInstance("MD5").digest(url.getBytes(UTF_8));
+            StringBuilder name = new StringBuilder(digest.length * 2 + 16);
+            for (byte b : digest)
+            {
+                name.append(HEX_DIGITS[(b >> 4) & 0xf]).append(HEX_DIGITS[b & 0xf]);
+            }
+            return name.append('-').append(width).append('x').append(height).toString();
+        }
+        catch (NoSuchAlgorithmException e)
+        {
+            throw new IllegalStateException(e);
+        }
+    }
+}
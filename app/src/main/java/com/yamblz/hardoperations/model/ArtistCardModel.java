@@ -0,0 +1,74 @@
+package com.yamblz.hardoperations.model;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * Everything an artist card shows, with all strings built in advance, off the UI thread.
+ */
+public final class ArtistCardModel
+{
+    @NonNull
+    private final String id;
+    @NonNull
+    private final String title;
+    @NonNull
+    private final String description;
+    @Nullable
+    private final Cover cover;
+
+    public ArtistCardModel(@NonNull String id,
+                           @NonNull String title,
+                           @NonNull String description,
+                           @Nullable Cover cover)
+    {
+        this.id = id;
+        this.title = title;
+        this.description = description;
+        this.cover = cover;
+    }
+
+    /**
+     * Builds the model of a store row, the description is decoded here.
+     */
+    @NonNull
+    public static ArtistCardModel create(@NonNull ArtistStore store,
+                                         int row,
+                                         @NonNull ArtistDescriptions.QuantityStrings quantityStrings)
+    {
+        String albumsText = quantityStrings.getAlbums(store.getAlbumsCount(row));
+        String tracksText = quantityStrings.getTracks(store.getTracksCount(row));
+        String name = store.getName(row);
+        return new ArtistCardModel(Long.toString(store.getId(row)),
+                                   name != null ? name : "",
+                                   ArtistDescriptions.build(store.getDescription(row), albumsText, tracksText),
+                                   store.getCover(row));
+    }
+
+    @NonNull
+    public String getId()
+    {
+        return id;
+    }
+
+    @NonNull
+    public String getTitle()
+    {
+        return title;
+    }
+
+    /**
+     * The artist description followed by albums and tracks counts, as the card shows it.
+     */
+    @NonNull
+    public String getDescription()
+    {
+        return description;
+    }
+
+    @Nullable
+    public Cover getCover()
+    {
+        return cover;
+    }
+}
@@ -0,0 +1,39 @@
+package com.yamblz.hardoperations.model;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * Builds the text shown under the artist name: the description followed by albums and tracks counts.
+ */
+public final class ArtistDescriptions
+{
+    /**
+     * Localized "N albums"/"N tracks" strings, on Android these are plurals resources.
+     */
+    public interface QuantityStrings
+    {
+        @NonNull
+        String getAlbums(int count);
+
+        @NonNull
+        String getTracks(int count);
+    }
+
+    private ArtistDescriptions()
+    {
+    }
+
+    @NonNull
+    public static String build(@Nullable String description, @NonNull String albumsText, @NonNull String tracksText)
+    {
+        String text = String.valueOf(description);
+        return new StringBuilder(text.length() + albumsText.length() + tracksText.length() + 3)
+                .append(text)
+                .append("\n\n")
+                .append(albumsText)
+                .append('\n')
+                .append(tracksText)
+                .toString();
+    }
+}
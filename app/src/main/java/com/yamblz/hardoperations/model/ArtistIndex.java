@@ -0,0 +1,225 @@
+package com.yamblz.hardoperations.model;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * Filter and sort index over the rows of an {@link ArtistStore}: a bitset of rows per genre
+ * and precomputed row permutations for every order. A query combines the bitsets of the chosen genres
+ * word by word and walks the permutation of the order, it never touches the artists themselves.
+ * <p>
+ * Immutable, covers the rows the store had when the index was built.
+ */
+public final class ArtistIndex
+{
+    public static final int ORDER_DEFAULT = 0;
+    // Most tracks first, artists with equal counts keep the store order
+    public static final int ORDER_TRACKS = 1;
+    // Most albums first, artists with equal counts keep the store order
+    public static final int ORDER_ALBUMS = 2;
+
+    private final int size;
+    // genreRows[ordinal] has bit (row % 64) of word (row / 64) set for every row with the genre
+    private final long[][] genreRows;
+    private final int[] rowsByTracks;
+    private final int[] rowsByAlbums;
+
+    private ArtistIndex(int size, @NonNull long[][] genreRows, @NonNull int[] rowsByTracks, @NonNull int[] rowsByAlbums)
+    {
+        this.size = size;
+        this.genreRows = genreRows;
+        this.rowsByTracks = rowsByTracks;
+        this.rowsByAlbums = rowsByAlbums;
+    }
+
+    @NonNull
+    public static ArtistIndex build(@NonNull ArtistStore store)
+    {
+        int size = store.size();
+        int words = wordsFor(size);
+        long[][] genreRows = new long[store.getGenreOrdinalsCount()][];
+        for (int ordinal = 0; ordinal < genreRows.length; ordinal++)
+        {
+            genreRows[ordinal] = new long[words];
+        }
+
+        long[] tracksKeys = new long[size];
+        long[] albumsKeys = new long[size];
+        for (int row = 0; row < size; row++)
+        {
+            for (int i = store.getGenresCount(row) - 1; i >= 0; i--)
+            {
+                genreRows[store.getGenreOrdinal(row, i)][row >>> 6] |= 1L << row;
+            }
+            tracksKeys[row] = descendingKey(store.getTracksCount(row), row);
+            albumsKeys[row] = descendingKey(store.getAlbumsCount(row), row);
+        }
+
+        return new ArtistIndex(size, genreRows, sortedRows(tracksKeys), sortedRows(albumsKeys));
+    }
+
+    /**
+     * Sorting these keys orders rows by the value descending, then by the row ascending.
+     */
+    private static long descendingKey(int value, int row)
+    {
+        return ((long) ~value << 32) | row;
+    }
+
+    @NonNull
+    private static int[] sortedRows(@NonNull long[] keys)
+    {
+        Arrays.sort(keys);
+        int[] rows = new int[keys.length];
+        for (int i = 0; i < keys.length; i++)
+        {
+            rows[i] = (int) keys[i];
+        }
+        return rows;
+    }
+
+    private static int wordsFor(int bits)
+    {
+        return (bits + 63) >>> 6;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * @param genreOrdinals genres to filter by, see {@link ArtistStore#getGenreName(int)};
+     *                      empty to keep all artists
+     * @param matchAll      whether an artist must have all of the genres or any of them
+     * @param order         one of the {@code ORDER_*} constants
+     * @return rows of the matching artists in the order
+     */
+    @NonNull
+    public int[] query(@NonNull int[] genreOrdinals, boolean matchAll, int order)
+    {
+        return query(genreOrdinals, matchAll, order, null);
+    }
+
+    /**
+     * Same as {@link #query(int[], boolean, int)}, but only rows set in {@code rowsMask} may match,
+     * e.g. the rows found by {@link ArtistSearchIndex}.
+     */
+    @NonNull
+    public int[] query(@NonNull int[] genreOrdinals, boolean matchAll, int order, @Nullable long[] rowsMask)
+    {
+        long[] matching = genreOrdinals.length > 0 ? combine(genreOrdinals, matchAll) : null;
+        if (rowsMask != null)
+        {
+            if (matching == null)
+            {
+                // Only read below
+                matching = rowsMask;
+            }
+            else
+            {
+                for (int word = 0; word < matching.length; word++)
+                {
+                    matching[word] &= rowsMask[word];
+                }
+            }
+        }
+        int[] result = new int[matching != null ? countBits(matching) : size];
+        int count = 0;
+
+        if (order == ORDER_DEFAULT)
+        {
+            if (matching == null)
+            {
+                for (int row = 0; row < size; row++)
+                {
+                    result[row] = row;
+                }
+                return result;
+            }
+            for (int word = 0; word < matching.length; word++)
+            {
+                long bits = matching[word];
+                while (bits != 0)
+                {
+                    result[count++] = (word << 6) + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                }
+            }
+            return result;
+        }
+
+        int[] rows = getOrderedRows(order);
+        if (matching == null)
+        {
+            System.arraycopy(rows, 0, result, 0, size);
+            return result;
+        }
+        for (int row : rows)
+        {
+            if ((matching[row >>> 6] & (1L << row)) != 0)
+            {
+                result[count++] = row;
+            }
+        }
+        return result;
+    }
+
+    @NonNull
+    private long[] combine(@NonNull int[] genreOrdinals, boolean matchAll)
+    {
+        long[] matching = getGenreRows(genreOrdinals[0]).clone();
+        for (int i = 1; i < genreOrdinals.length; i++)
+        {
+            long[] rows = getGenreRows(genreOrdinals[i]);
+            for (int word = 0; word < matching.length; word++)
+            {
+                if (matchAll)
+                {
+                    matching[word] &= rows[word];
+                }
+                else
+                {
+                    matching[word] |= rows[word];
+                }
+            }
+        }
+        return matching;
+    }
+
+    @NonNull
+    private long[] getGenreRows(int ordinal)
+    {
+        if (ordinal < 0 || ordinal >= genreRows.length)
+        {
+            throw new IllegalArgumentException("Unknown genre ordinal " + ordinal);
+        }
+        return genreRows[ordinal];
+    }
+
+    @NonNull
+    private int[] getOrderedRows(int order)
+    {
+        switch (order)
+        {
+            case ORDER_TRACKS:
+                return rowsByTracks;
+            case ORDER_ALBUMS:
+                return rowsByAlbums;
+            default:
+                throw new IllegalArgumentException("Unknown order " + order);
+        }
+    }
+
+    private static int countBits(@NonNull long[] words)
+    {
+        int count = 0;
+        for (long word : words)
+        {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+}
@@ -0,0 +1,371 @@
+package com.yamblz.hardoperations.model;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Inverted index of the words of artist names and descriptions.
+ * <p>
+ * Words are lower-cased with {@link Character#toLowerCase(char)}, which covers Cyrillic, and 'ё' is
+ * folded into 'е'. Every word of a query matches the words of an artist it is a prefix of, an artist
+ * matches a query when all words of the query match. Terms are kept sorted, so the terms of a prefix
+ * are a contiguous range, and the postings of all terms are rows of one flat array.
+ * <p>
+ * Immutable and safe to query from any thread; a {@link Search} keeps the state of one search box.
+ */
+public final class ArtistSearchIndex
+{
+    private final int size;
+    private final String[] terms;
+    // Rows of terms[i] are postings[termOffsets[i]..termOffsets[i + 1]), ascending
+    private final int[] termOffsets;
+    private final int[] postings;
+    // Rows of all the terms starting with the char, for the first letter typed
+    private final Map<Character, long[]> firstCharRows;
+
+    private ArtistSearchIndex(int size,
+                              @NonNull String[] terms,
+                              @NonNull int[] termOffsets,
+                              @NonNull int[] postings,
+                              @NonNull Map<Character, long[]> firstCharRows)
+    {
+        this.size = size;
+        this.terms = terms;
+        this.termOffsets = termOffsets;
+        this.postings = postings;
+        this.firstCharRows = firstCharRows;
+    }
+
+    /**
+     * Decodes all names and descriptions, to be called off the UI thread.
+     */
+    @NonNull
+    public static ArtistSearchIndex build(@NonNull ArtistStore store)
+    {
+        int size = store.size();
+        Map<String, Postings> postingsByTerm = new HashMap<String, Postings>();
+        StringBuilder word = new StringBuilder();
+        for (int row = 0; row < size; row++)
+        {
+            addWords(postingsByTerm, store.getName(row), row, word);
+            addWords(postingsByTerm, store.getDescription(row), row, word);
+        }
+
+        String[] terms = postingsByTerm.keySet().toArray(new String[postingsByTerm.size()]);
+        Arrays.sort(terms);
+        int[] termOffsets = new int[terms.length + 1];
+        for (int i = 0; i < terms.length; i++)
+        {
+            termOffsets[i + 1] = termOffsets[i] + postingsByTerm.get(terms[i]).size;
+        }
+        int[] postings = new int[termOffsets[terms.length]];
+        Map<Character, long[]> firstCharRows = new HashMap<Character, long[]>();
+        for (int i = 0; i < terms.length; i++)
+        {
+            Postings termPostings = postingsByTerm.get(terms[i]);
+            System.arraycopy(termPostings.rows, 0, postings, termOffsets[i], termPostings.size);
+
+            char firstChar = terms[i].charAt(0);
+            long[] rows = firstCharRows.get(firstChar);
+            if (rows == null)
+            {
+                rows = new long[wordsFor(size)];
+                firstCharRows.put(firstChar, rows);
+            }
+            for (int p = 0; p < termPostings.size; p++)
+            {
+                int row = termPostings.rows[p];
+                rows[row >>> 6] |= 1L << row;
+            }
+        }
+
+        return new ArtistSearchIndex(size, terms, termOffsets, postings, firstCharRows);
+    }
+
+    private static void addWords(@NonNull Map<String, Postings> postingsByTerm,
+                                 @Nullable String text,
+                                 int row,
+                                 @NonNull StringBuilder word)
+    {
+        if (text == null)
+        {
+            return;
+        }
+        int length = text.length();
+        int i = 0;
+        while (i < length)
+        {
+            word.setLength(0);
+            i = nextWord(text, i, word);
+            if (word.length() > 0)
+            {
+                String term = word.toString();
+                Postings termPostings = postingsByTerm.get(term);
+                if (termPostings == null)
+                {
+                    termPostings = new Postings();
+                    postingsByTerm.put(term, termPostings);
+                }
+                termPostings.add(row);
+            }
+        }
+    }
+
+    /**
+     * Appends the normalized next word of the text starting at {@code from} to {@code word}.
+     *
+     * @return position after the word
+     */
+    private static int nextWord(@NonNull String text, int from, @NonNull StringBuilder word)
+    {
+        int i = from;
+        int length = text.length();
+        while (i < length && !Character.isLetterOrDigit(text.charAt(i)))
+        {
+            i++;
+        }
+        while (i < length && Character.isLetterOrDigit(text.charAt(i)))
+        {
+            word.append(normalize(text.charAt(i)));
+            i++;
+        }
+        return i;
+    }
+
+    private static char normalize(char c)
+    {
+        char lower = Character.toLowerCase(c);
+        return lower == 'ё' ? 'е' : lower;
+    }
+
+    /**
+     * Normalized words of the query, the same way as the words of the artists.
+     */
+    @NonNull
+    static List<String> tokenize(@NonNull String query)
+    {
+        List<String> words = new ArrayList<String>();
+        StringBuilder word = new StringBuilder();
+        int i = 0;
+        while (i < query.length())
+        {
+            word.setLength(0);
+            i = nextWord(query, i, word);
+            if (word.length() > 0)
+            {
+                words.add(word.toString());
+            }
+        }
+        return words;
+    }
+
+    private static int wordsFor(int bits)
+    {
+        return (bits + 63) >>> 6;
+    }
+
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Starts a search box session, see {@link Search#update(String)}.
+     */
+    @NonNull
+    public Search newSearch()
+    {
+        return new Search();
+    }
+
+    /**
+     * Rows matching the query from scratch, for one-off queries.
+     *
+     * @return bitset of the rows or null if the query has no words
+     */
+    @Nullable
+    public long[] query(@NonNull String query)
+    {
+        return newSearch().update(query);
+    }
+
+    /**
+     * First term starting with the prefix or not less than it, within [from, to).
+     */
+    private int lowerBound(@NonNull String prefix, int from, int to)
+    {
+        int low = from;
+        int high = to;
+        while (low < high)
+        {
+            int middle = (low + high) >>> 1;
+            if (terms[middle].compareTo(prefix) < 0)
+            {
+                low = middle + 1;
+            }
+            else
+            {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * First term after the range of terms starting with the prefix, within [from, to).
+     */
+    private int prefixEnd(@NonNull String prefix, int from, int to)
+    {
+        int low = from;
+        int high = to;
+        while (low < high)
+        {
+            int middle = (low + high) >>> 1;
+            if (terms[middle].startsWith(prefix) || terms[middle].compareTo(prefix) < 0)
+            {
+                low = middle + 1;
+            }
+            else
+            {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Incremental search for text typed into one search box. Each word of the previous query is kept
+     * with its term range and the rows matching all words up to it. A query that extends the previous one
+     * narrows the term range of the extended word and its rows, words before it are not searched again.
+     * <p>
+     * Not thread-safe, meant to be updated from the thread the query is typed on.
+     */
+    public final class Search
+    {
+        private final List<String> words = new ArrayList<String>();
+        private final List<int[]> termRanges = new ArrayList<int[]>();
+        // Rows matching words 0..i
+        private final List<long[]> matchingRows = new ArrayList<long[]>();
+
+        private Search()
+        {
+        }
+
+        /**
+         * @return bitset of the rows matching the query, null if the query has no words.
+         * The bitset must not be modified
+         */
+        @Nullable
+        public long[] update(@NonNull String query)
+        {
+            List<String> newWords = tokenize(query);
+
+            int kept = 0;
+            while (kept < newWords.size() && kept < words.size() && newWords.get(kept).equals(words.get(kept)))
+            {
+                kept++;
+            }
+
+            // A word typed further narrows the term range and the rows of the previous version of it
+            int[] extendedRange = null;
+            long[] extendedRows = null;
+            if (kept < newWords.size() && kept < words.size() && newWords.get(kept).startsWith(words.get(kept)))
+            {
+                extendedRange = termRanges.get(kept);
+                extendedRows = matchingRows.get(kept);
+            }
+            truncate(kept);
+
+            for (int i = kept; i < newWords.size(); i++)
+            {
+                String word = newWords.get(i);
+                int[] range;
+                long[] previous;
+                if (i == kept && extendedRange != null)
+                {
+                    int from = lowerBound(word, extendedRange[0], extendedRange[1]);
+                    range = new int[]{from, prefixEnd(word, from, extendedRange[1])};
+                    previous = extendedRows;
+                }
+                else
+                {
+                    int from = lowerBound(word, 0, terms.length);
+                    range = new int[]{from, prefixEnd(word, from, terms.length)};
+                    previous = i > 0 ? matchingRows.get(i - 1) : null;
+                }
+
+                words.add(word);
+                termRanges.add(range);
+                matchingRows.add(intersect(previous, word, range));
+            }
+
+            return matchingRows.isEmpty() ? null : matchingRows.get(matchingRows.size() - 1);
+        }
+
+        private void truncate(int count)
+        {
+            while (words.size() > count)
+            {
+                int last = words.size() - 1;
+                words.remove(last);
+                termRanges.remove(last);
+                matchingRows.remove(last);
+            }
+        }
+
+        @NonNull
+        private long[] intersect(@Nullable long[] previous, @NonNull String word, @NonNull int[] range)
+        {
+            long[] rows;
+            long[] firstCharMatches = word.length() == 1 ? firstCharRows.get(word.charAt(0)) : null;
+            if (firstCharMatches != null)
+            {
+                rows = firstCharMatches.clone();
+            }
+            else
+            {
+                rows = new long[wordsFor(size)];
+                for (int p = termOffsets[range[0]]; p < termOffsets[range[1]]; p++)
+                {
+                    int row = postings[p];
+                    rows[row >>> 6] |= 1L << row;
+                }
+            }
+
+            if (previous != null)
+            {
+                for (int w = 0; w < rows.length; w++)
+                {
+                    rows[w] &= previous[w];
+                }
+            }
+            return rows;
+        }
+    }
+
+    private static final class Postings
+    {
+        private int[] rows = new int[2];
+        private int size;
+
+        void add(int row)
+        {
+            // Rows are added in ascending order, a word repeated in the same artist is stored once
+            if (size > 0 && rows[size - 1] == row)
+            {
+                return;
+            }
+            if (size == rows.length)
+            {
+                rows = Arrays.copyOf(rows, size * 2);
+            }
+            rows[size++] = row;
+        }
+    }
+}
@@ -0,0 +1,721 @@
+package com.yamblz.hardoperations.model;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Artists stored column by column: a few primitive arrays instead of eight objects per artist.
+ * <ul>
+ * <li>ids are {@code long}s;</li>
+ * <li>genres are ordinals into a table of distinct genre names;</li>
+ * <li>cover URLs are rebuilt from the id and a shared URL template,
+ * only URLs that don't fit any template are kept as they are;</li>
+ * <li>descriptions and links are UTF-8 bytes in shared fixed size pages, decoded only when asked for.</li>
+ * </ul>
+ * Artists are appended by one thread. Rows below {@link #size()} may be read from any thread
+ * while the writer keeps appending.
+ * <p>
+ * The columns are saved as they are by {@link #writeTo(DataOutputStream)} and loaded back in bulk
+ * by {@link #read(ByteBuffer)}, the texts of a loaded store stay in the buffer.
+ */
+public final class ArtistStore
+{
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int INITIAL_CAPACITY = 64;
+    private static final int NO_TEXT = -1;
+    // Pages are small enough to stay out of the large objects space and to never be copied on growth
+    private static final int TEXT_PAGE_SIZE = 64 * 1024;
+    private static final int NO_COVER = -1;
+    private static final int EXPLICIT_COVER = -2;
+    private static final int NULL_LENGTH = -1;
+
+    // <prefix>[<8 hex digits token>.]p.<id>/<width>x<height>
+    private static final Pattern COVER_URL = Pattern.compile("^(.*/)(?:([0-9a-f]{8})\\.)?p\\.(\\d+)/(\\d+x\\d+)$");
+
+    private long[] ids = new long[INITIAL_CAPACITY];
+    private String[] names = new String[INITIAL_CAPACITY];
+    private int[] tracksCounts = new int[INITIAL_CAPACITY];
+    private int[] albumsCounts = new int[INITIAL_CAPACITY];
+
+    // Genres of row i are genreOrdinals[genreOffsets[i]..genreOffsets[i + 1])
+    private int[] genreOffsets = new int[INITIAL_CAPACITY + 1];
+    private short[] genreOrdinals = new short[INITIAL_CAPACITY * 2];
+    private String[] genreNames = new String[16];
+    private volatile int genreCount;
+    private final Map<String, Short> genreOrdinalsByName = new HashMap<String, Short>();
+
+    // Text of a row starts at textPages[start / TEXT_PAGE_SIZE][start % TEXT_PAGE_SIZE] and never crosses pages
+    private byte[][] textPages = new byte[16][];
+    private int textPagesCount;
+    private int lastTextPageUsed;
+    // Pages of a store read from a buffer, null for an appended one
+    @Nullable
+    private ByteBuffer[] bufferTextPages;
+    private int[] descriptionStarts = new int[INITIAL_CAPACITY];
+    private int[] descriptionLengths = new int[INITIAL_CAPACITY];
+    private int[] linkStarts = new int[INITIAL_CAPACITY];
+    private int[] linkLengths = new int[INITIAL_CAPACITY];
+
+    // Index into coverTemplates, NO_COVER or EXPLICIT_COVER
+    private int[] coverTemplateIndexes = new int[INITIAL_CAPACITY];
+    // Token of the template URL or index into explicitCovers
+    private int[] coverTokens = new int[INITIAL_CAPACITY];
+    private CoverTemplate[] coverTemplates = new CoverTemplate[4];
+    private int coverTemplatesCount;
+    private final Map<String, Integer> coverTemplateIndexesByKey = new HashMap<String, Integer>();
+    private Cover[] explicitCovers = new Cover[4];
+    private int explicitCoversCount;
+
+    // Written last by append(), so everything below it is visible to the readers
+    private volatile int size;
+
+    public int size()
+    {
+        return size;
+    }
+
+    /**
+     * Appends artists. Must always be called by the same thread.
+     *
+     * @throws NumberFormatException if an artist id is not a number
+     * @throws IllegalStateException if the store was read from a buffer
+     */
+    public void addAll(@NonNull List<Artist> artists)
+    {
+        if (bufferTextPages != null)
+        {
+            throw new IllegalStateException("Store read from a buffer is not appended to");
+        }
+        int row = size;
+        ensureCapacity(row + artists.size());
+        for (Artist artist : artists)
+        {
+            append(row, artist);
+            row++;
+        }
+        size = row;
+    }
+
+    private void append(int row, @NonNull Artist artist)
+    {
+        long id = Long.parseLong(artist.getId());
+        ids[row] = id;
+        names[row] = artist.getName();
+        tracksCounts[row] = artist.getTracksCount();
+        albumsCounts[row] = artist.getAlbumsCount();
+
+        String[] genres = artist.getGenres();
+        int genresFrom = genreOffsets[row];
+        int genresCount = genres != null ? genres.length : 0;
+        if (genresFrom + genresCount > genreOrdinals.length)
+        {
+            genreOrdinals = Arrays.copyOf(genreOrdinals, Math.max(genreOrdinals.length * 2, genresFrom + genresCount));
+        }
+        for (int i = 0; i < genresCount; i++)
+        {
+            genreOrdinals[genresFrom + i] = internGenre(genres[i]);
+        }
+        genreOffsets[row + 1] = genresFrom + genresCount;
+
+        byte[] description = encode(artist.getDescription());
+        descriptionStarts[row] = appendText(description);
+        descriptionLengths[row] = description != null ? description.length : NO_TEXT;
+        byte[] link = encode(artist.getWebCite());
+        linkStarts[row] = appendText(link);
+        linkLengths[row] = link != null ? link.length : NO_TEXT;
+
+        appendCover(row, id, artist.getCover());
+    }
+
+    private short internGenre(@NonNull String genre)
+    {
+        Short ordinal = genreOrdinalsByName.get(genre);
+        if (ordinal != null)
+        {
+            return ordinal;
+        }
+        int count = genreCount;
+        if (count > Short.MAX_VALUE)
+        {
+            throw new IllegalStateException("Too many genres");
+        }
+        if (count == genreNames.length)
+        {
+            genreNames = Arrays.copyOf(genreNames, count * 2);
+        }
+        genreNames[count] = genre;
+        genreOrdinalsByName.put(genre, (short) count);
+        genreCount = count + 1;
+        return (short) count;
+    }
+
+    @Nullable
+    private static byte[] encode(@Nullable String text)
+    {
+        return text != null ? text.getBytes(UTF_8) : null;
+    }
+
+    private int appendText(@Nullable byte[] bytes)
+    {
+        if (bytes == null)
+        {
+            return NO_TEXT;
+        }
+        if (textPagesCount == 0 || lastTextPageUsed + bytes.length > TEXT_PAGE_SIZE)
+        {
+            if (textPagesCount == textPages.length)
+            {
+                textPages = Arrays.copyOf(textPages, textPagesCount * 2);
+            }
+            // Longer texts get a page of their own
+            textPages[textPagesCount++] = new byte[Math.max(TEXT_PAGE_SIZE, bytes.length)];
+            lastTextPageUsed = 0;
+        }
+        int start = (textPagesCount - 1) * TEXT_PAGE_SIZE + lastTextPageUsed;
+        System.arraycopy(bytes, 0, textPages[textPagesCount - 1], lastTextPageUsed, bytes.length);
+        lastTextPageUsed += bytes.length;
+        return start;
+    }
+
+    private void appendCover(int row, long id, @Nullable Cover cover)
+    {
+        if (cover == null)
+        {
+            coverTemplateIndexes[row] = NO_COVER;
+            return;
+        }
+
+        Matcher small = matchCoverUrl(cover.getSmallImageUrl(), id);
+        Matcher big = matchCoverUrl(cover.getBigImageUrl(), id);
+        if (small != null && big != null
+                && small.group(1).equals(big.group(1))
+                && equal(small.group(2), big.group(2)))
+        {
+            String token = small.group(2);
+            coverTemplateIndexes[row] = internCoverTemplate(small.group(1), token != null, small.group(4), big.group(4));
+            coverTokens[row] = token != null ? (int) Long.parseLong(token, 16) : 0;
+            return;
+        }
+
+        if (explicitCoversCount == explicitCovers.length)
+        {
+            explicitCovers = Arrays.copyOf(explicitCovers, explicitCoversCount * 2);
+        }
+        explicitCovers[explicitCoversCount] = cover;
+        coverTemplateIndexes[row] = EXPLICIT_COVER;
+        coverTokens[row] = explicitCoversCount;
+        explicitCoversCount++;
+    }
+
+    @Nullable
+    private static Matcher matchCoverUrl(@Nullable String url, long id)
+    {
+        if (url == null)
+        {
+            return null;
+        }
+        Matcher matcher = COVER_URL.matcher(url);
+        if (!matcher.matches() || !matcher.group(3).equals(Long.toString(id)))
+        {
+            return null;
+        }
+        return matcher;
+    }
+
+    private int internCoverTemplate(@NonNull String prefix, boolean hasToken, @NonNull String smallSize, @NonNull String bigSize)
+    {
+        String key = prefix + '|' + hasToken + '|' + smallSize + '|' + bigSize;
+        Integer index = coverTemplateIndexesByKey.get(key);
+        if (index != null)
+        {
+            return index;
+        }
+        if (coverTemplatesCount == coverTemplates.length)
+        {
+            coverTemplates = Arrays.copyOf(coverTemplates, coverTemplatesCount * 2);
+        }
+        coverTemplates[coverTemplatesCount] = new CoverTemplate(prefix, hasToken, smallSize, bigSize);
+        coverTemplateIndexesByKey.put(key, coverTemplatesCount);
+        return coverTemplatesCount++;
+    }
+
+    /**
+     * Drops the spare capacity left by the appends. Must be called by the appending thread.
+     */
+    public void trimToSize()
+    {
+        int currentSize = size;
+        if (ids.length == currentSize && genreOrdinals.length == genreOffsets[currentSize])
+        {
+            return;
+        }
+        genreOrdinals = Arrays.copyOf(genreOrdinals, genreOffsets[currentSize]);
+        resize(currentSize);
+        // Publishes the trimmed arrays
+        size = currentSize;
+    }
+
+    private void ensureCapacity(int capacity)
+    {
+        if (capacity > ids.length)
+        {
+            resize(Math.max(ids.length * 2, capacity));
+        }
+    }
+
+    private void resize(int newCapacity)
+    {
+        ids = Arrays.copyOf(ids, newCapacity);
+        names = Arrays.copyOf(names, newCapacity);
+        tracksCounts = Arrays.copyOf(tracksCounts, newCapacity);
+        albumsCounts = Arrays.copyOf(albumsCounts, newCapacity);
+        genreOffsets = Arrays.copyOf(genreOffsets, newCapacity + 1);
+        descriptionStarts = Arrays.copyOf(descriptionStarts, newCapacity);
+        descriptionLengths = Arrays.copyOf(descriptionLengths, newCapacity);
+        linkStarts = Arrays.copyOf(linkStarts, newCapacity);
+        linkLengths = Arrays.copyOf(linkLengths, newCapacity);
+        coverTemplateIndexes = Arrays.copyOf(coverTemplateIndexes, newCapacity);
+        coverTokens = Arrays.copyOf(coverTokens, newCapacity);
+    }
+
+    public long getId(int row)
+    {
+        checkRow(row);
+        return ids[row];
+    }
+
+    @Nullable
+    public String getName(int row)
+    {
+        checkRow(row);
+        return names[row];
+    }
+
+    public int getTracksCount(int row)
+    {
+        checkRow(row);
+        return tracksCounts[row];
+    }
+
+    public int getAlbumsCount(int row)
+    {
+        checkRow(row);
+        return albumsCounts[row];
+    }
+
+    public int getGenresCount(int row)
+    {
+        checkRow(row);
+        return genreOffsets[row + 1] - genreOffsets[row];
+    }
+
+    /**
+     * Ordinal of the {@code index}-th genre of the artist, see {@link #getGenreName(int)}.
+     */
+    public int getGenreOrdinal(int row, int index)
+    {
+        if (index < 0 || index >= getGenresCount(row))
+        {
+            throw new IndexOutOfBoundsException("Genre " + index + " of row " + row);
+        }
+        return genreOrdinals[genreOffsets[row] + index];
+    }
+
+    /**
+     * Number of distinct genres, genre ordinals are below it.
+     */
+    public int getGenreOrdinalsCount()
+    {
+        return genreCount;
+    }
+
+    @NonNull
+    public String getGenreName(int ordinal)
+    {
+        if (ordinal < 0 || ordinal >= genreCount)
+        {
+            throw new IndexOutOfBoundsException("Genre ordinal " + ordinal);
+        }
+        return genreNames[ordinal];
+    }
+
+    /**
+     * Decodes the description, meant to be called for the rows that are about to be shown.
+     */
+    @Nullable
+    public String getDescription(int row)
+    {
+        checkRow(row);
+        return decodeText(descriptionStarts[row], descriptionLengths[row]);
+    }
+
+    @Nullable
+    public String getLink(int row)
+    {
+        checkRow(row);
+        return decodeText(linkStarts[row], linkLengths[row]);
+    }
+
+    @Nullable
+    private String decodeText(int start, int length)
+    {
+        if (length == NO_TEXT)
+        {
+            return null;
+        }
+        if (bufferTextPages != null)
+        {
+            // Each call reads through its own view of the page, so texts can be read from any thread
+            ByteBuffer page = bufferTextPages[start / TEXT_PAGE_SIZE].duplicate();
+            page.position(start % TEXT_PAGE_SIZE);
+            byte[] bytes = new byte[length];
+            page.get(bytes);
+            return new String(bytes, UTF_8);
+        }
+        return new String(textPages[start / TEXT_PAGE_SIZE], start % TEXT_PAGE_SIZE, length, UTF_8);
+    }
+
+    @Nullable
+    public Cover getCover(int row)
+    {
+        checkRow(row);
+        int templateIndex = coverTemplateIndexes[row];
+        if (templateIndex == NO_COVER)
+        {
+            return null;
+        }
+        if (templateIndex == EXPLICIT_COVER)
+        {
+            return explicitCovers[coverTokens[row]];
+        }
+        return coverTemplates[templateIndex].build(ids[row], coverTokens[row]);
+    }
+
+    /**
+     * Builds a regular artist object of the row.
+     */
+    @NonNull
+    public Artist getArtist(int row)
+    {
+        String[] genres = new String[getGenresCount(row)];
+        for (int i = 0; i < genres.length; i++)
+        {
+            genres[i] = getGenreName(getGenreOrdinal(row, i));
+        }
+        return new Artist(Long.toString(getId(row)),
+                          getName(row),
+                          genres,
+                          getTracksCount(row),
+                          getAlbumsCount(row),
+                          getLink(row),
+                          getDescription(row),
+                          getCover(row));
+    }
+
+    /**
+     * Writes the columns of the rows below {@link #size()}. Must be called by the appending thread.
+     * Arrays are written as they are, strings as UTF-8 bytes prefixed with their length, -1 stands for null.
+     */
+    public void writeTo(@NonNull DataOutputStream out) throws IOException
+    {
+        int currentSize = size;
+        out.writeInt(currentSize);
+        for (int row = 0; row < currentSize; row++)
+        {
+            out.writeLong(ids[row]);
+        }
+        for (int row = 0; row < currentSize; row++)
+        {
+            writeString(out, names[row]);
+        }
+        writeInts(out, tracksCounts, currentSize);
+        writeInts(out, albumsCounts, currentSize);
+
+        writeInts(out, genreOffsets, currentSize + 1);
+        for (int i = 0; i < genreOffsets[currentSize]; i++)
+        {
+            out.writeShort(genreOrdinals[i]);
+        }
+        out.writeInt(genreCount);
+        for (int i = 0; i < genreCount; i++)
+        {
+            writeString(out, genreNames[i]);
+        }
+
+        writeInts(out, descriptionStarts, currentSize);
+        writeInts(out, descriptionLengths, currentSize);
+        writeInts(out, linkStarts, currentSize);
+        writeInts(out, linkLengths, currentSize);
+        int pagesCount = bufferTextPages != null ? bufferTextPages.length : textPagesCount;
+        out.writeInt(pagesCount);
+        for (int i = 0; i < pagesCount; i++)
+        {
+            out.writeInt(getTextPageLength(i));
+        }
+        for (int i = 0; i < pagesCount; i++)
+        {
+            writeTextPage(out, i);
+        }
+
+        writeInts(out, coverTemplateIndexes, currentSize);
+        writeInts(out, coverTokens, currentSize);
+        out.writeInt(coverTemplatesCount);
+        for (int i = 0; i < coverTemplatesCount; i++)
+        {
+            CoverTemplate template = coverTemplates[i];
+            writeString(out, template.prefix);
+            out.writeBoolean(template.hasToken);
+            writeString(out, template.smallSize);
+            writeString(out, template.bigSize);
+        }
+        out.writeInt(explicitCoversCount);
+        for (int i = 0; i < explicitCoversCount; i++)
+        {
+            writeString(out, explicitCovers[i].getSmallImageUrl());
+            writeString(out, explicitCovers[i].getBigImageUrl());
+        }
+    }
+
+    private int getTextPageLength(int page)
+    {
+        if (bufferTextPages != null)
+        {
+            return bufferTextPages[page].limit();
+        }
+        // Only the last page may have unused space at its end that is worth not writing
+        return page == textPagesCount - 1 ? lastTextPageUsed : textPages[page].length;
+    }
+
+    private void writeTextPage(@NonNull DataOutputStream out, int page) throws IOException
+    {
+        if (bufferTextPages != null)
+        {
+            byte[] bytes = new byte[bufferTextPages[page].limit()];
+            bufferTextPages[page].duplicate().get(bytes);
+            out.write(bytes);
+            return;
+        }
+        out.write(textPages[page], 0, getTextPageLength(page));
+    }
+
+    /**
+     * Reads the columns written by {@link #writeTo(DataOutputStream)} from the position of the buffer on.
+     * Arrays are copied in bulk, only names and the shared tables are decoded. Texts are not copied:
+     * they are decoded from the buffer when asked for, so the buffer must not change while the store is used.
+     * The store is complete, it is not appended to.
+     *
+     * @throws BufferUnderflowException if the buffer ends before the columns or their counts are broken
+     */
+    @NonNull
+    public static ArtistStore read(@NonNull ByteBuffer in)
+    {
+        ArtistStore store = new ArtistStore();
+        int size = readCount(in, 8);
+        store.ids = new long[size];
+        in.asLongBuffer().get(store.ids);
+        in.position(in.position() + 8 * size);
+        store.names = new String[size];
+        for (int row = 0; row < size; row++)
+        {
+            store.names[row] = readString(in);
+        }
+        store.tracksCounts = readInts(in, size);
+        store.albumsCounts = readInts(in, size);
+
+        store.genreOffsets = readInts(in, size + 1);
+        int genreOrdinalsCount = store.genreOffsets[size];
+        checkRemaining(in, genreOrdinalsCount, 2);
+        store.genreOrdinals = new short[genreOrdinalsCount];
+        in.asShortBuffer().get(store.genreOrdinals);
+        in.position(in.position() + 2 * genreOrdinalsCount);
+        int genreCount = readCount(in, 4);
+        store.genreNames = new String[genreCount];
+        for (int i = 0; i < genreCount; i++)
+        {
+            store.genreNames[i] = readString(in);
+            store.genreOrdinalsByName.put(store.genreNames[i], (short) i);
+        }
+        store.genreCount = genreCount;
+
+        store.descriptionStarts = readInts(in, size);
+        store.descriptionLengths = readInts(in, size);
+        store.linkStarts = readInts(in, size);
+        store.linkLengths = readInts(in, size);
+        int pagesCount = readCount(in, 4);
+        int[] pageLengths = readInts(in, pagesCount);
+        ByteBuffer[] pages = new ByteBuffer[pagesCount];
+        for (int i = 0; i < pagesCount; i++)
+        {
+            checkRemaining(in, pageLengths[i], 1);
+            ByteBuffer page = in.slice();
+            page.limit(pageLengths[i]);
+            pages[i] = page;
+            in.position(in.position() + pageLengths[i]);
+        }
+        store.textPages = new byte[0][];
+        store.bufferTextPages = pages;
+
+        store.coverTemplateIndexes = readInts(in, size);
+        store.coverTokens = readInts(in, size);
+        int templatesCount = readCount(in, 4);
+        store.coverTemplates = new CoverTemplate[templatesCount];
+        for (int i = 0; i < templatesCount; i++)
+        {
+            String prefix = readString(in);
+            boolean hasToken = in.get() != 0;
+            String smallSize = readString(in);
+            String bigSize = readString(in);
+            if (prefix == null || smallSize == null || bigSize == null)
+            {
+                throw new BufferUnderflowException();
+            }
+            store.coverTemplates[i] = new CoverTemplate(prefix, hasToken, smallSize, bigSize);
+        }
+        store.coverTemplatesCount = templatesCount;
+        int explicitCount = readCount(in, 8);
+        store.explicitCovers = new Cover[explicitCount];
+        for (int i = 0; i < explicitCount; i++)
+        {
+            store.explicitCovers[i] = new Cover(readString(in), readString(in));
+        }
+        store.explicitCoversCount = explicitCount;
+
+        // Publishes the columns
+        store.size = size;
+        return store;
+    }
+
+    private static void writeInts(@NonNull DataOutputStream out, @NonNull int[] values, int count) throws IOException
+    {
+        for (int i = 0; i < count; i++)
+        {
+            out.writeInt(values[i]);
+        }
+    }
+
+    @NonNull
+    private static int[] readInts(@NonNull ByteBuffer in, int count)
+    {
+        checkRemaining(in, count, 4);
+        int[] values = new int[count];
+        in.asIntBuffer().get(values);
+        in.position(in.position() + 4 * count);
+        return values;
+    }
+
+    /**
+     * Reads a count of items that take at least {@code minItemBytes} each.
+     */
+    private static int readCount(@NonNull ByteBuffer in, int minItemBytes)
+    {
+        int count = in.getInt();
+        checkRemaining(in, count, minItemBytes);
+        return count;
+    }
+
+    private static void checkRemaining(@NonNull ByteBuffer in, int count, int itemBytes)
+    {
+        if (count < 0 || (long) count * itemBytes > in.remaining())
+        {
+            throw new BufferUnderflowException();
+        }
+    }
+
+    private static void writeString(@NonNull DataOutputStream out, @Nullable String value) throws IOException
+    {
+        if (value == null)
+        {
+            out.writeInt(NULL_LENGTH);
+            return;
+        }
+        byte[] bytes = value.getBytes(UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    @Nullable
+    private static String readString(@NonNull ByteBuffer in)
+    {
+        int length = in.getInt();
+        if (length == NULL_LENGTH)
+        {
+            return null;
+        }
+        checkRemaining(in, length, 1);
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, UTF_8);
+    }
+
+    /**
+     * Must be called before reading the arrays, reading the size makes rows below it visible.
+     */
+    private void checkRow(int row)
+    {
+        int currentSize = size;
+        if (row < 0 || row >= currentSize)
+        {
+            throw new IndexOutOfBoundsException("Row " + row + ", size " + currentSize);
+        }
+    }
+
+    private static boolean equal(@Nullable String a, @Nullable String b)
+    {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private static final class CoverTemplate
+    {
+        private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+        @NonNull
+        private final String prefix;
+        private final boolean hasToken;
+        @NonNull
+        private final String smallSize;
+        @NonNull
+        private final String bigSize;
+
+        CoverTemplate(@NonNull String prefix, boolean hasToken, @NonNull String smallSize, @NonNull String bigSize)
+        {
+            this.prefix = prefix;
+            this.hasToken = hasToken;
+            this.smallSize = smallSize;
+            this.bigSize = bigSize;
+        }
+
+        @NonNull
+        Cover build(long id, int token)
+        {
+            return new Cover(buildUrl(id, token, smallSize), buildUrl(id, token, bigSize));
+        }
+
+        @NonNull
+        private String buildUrl(long id, int token, @NonNull String imageSize)
+        {
+            StringBuilder url = new StringBuilder(prefix.length() + 40);
+            url.append(prefix);
+            if (hasToken)
+            {
+                for (int shift = 28; shift >= 0; shift -= 4)
+                {
+                    url.append(HEX_DIGITS[(token >>> shift) & 0xf]);
+                }
+                url.append('.');
+            }
+            return url.append("p.").append(id).append('/').append(imageSize).toString();
+        }
+    }
+}
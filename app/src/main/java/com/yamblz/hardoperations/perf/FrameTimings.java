@@ -0,0 +1,156 @@
+package com.yamblz.hardoperations.perf;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.view.Choreographer;
+
+import com.yamblz.hardoperations.BuildConfig;
+
+import java.io.PrintWriter;
+
+/**
+ * Latency histograms of the list phases and the dropped frames counter.
+ * <p>
+ * Every call must be guarded by {@link #ENABLED}, e.g.
+ * <pre>
+ * long start = FrameTimings.ENABLED ? System.nanoTime() : 0;
+ * ...
+ * if (FrameTimings.ENABLED)
+ * {
+ *     FrameTimings.record(FrameTimings.PHASE_DRAW, start);
+ * }
+ * </pre>
+ * so that release builds, where the flag is false, don't contain the instrumentation at all.
+ * All methods are called on the main thread.
+ */
+public final class FrameTimings
+{
+    public static final boolean ENABLED = BuildConfig.PERF_INSTRUMENTATION;
+
+    public static final int PHASE_BIND = 0;
+    public static final int PHASE_MEASURE = 1;
+    public static final int PHASE_DRAW = 2;
+    public static final int PHASE_IMAGE_LOADED = 3;
+    public static final int PHASE_FRAME = 4;
+    private static final String[] PHASE_NAMES = {"bind", "measure", "draw", "image loaded", "frame"};
+
+    private static final long FRAME_INTERVAL_NANOS = 1000000000L / 60;
+
+    private static final LatencyHistogram[] histograms = new LatencyHistogram[PHASE_NAMES.length];
+    private static long droppedFrames;
+    private static DroppedFramesMonitor droppedFramesMonitor;
+
+    static
+    {
+        for (int i = 0; i < histograms.length; i++)
+        {
+            histograms[i] = new LatencyHistogram();
+        }
+    }
+
+    private FrameTimings()
+    {
+    }
+
+    public static void record(int phase, long startNanos)
+    {
+        histograms[phase].record(System.nanoTime() - startNanos);
+    }
+
+    @NonNull
+    public static LatencyHistogram getHistogram(int phase)
+    {
+        return histograms[phase];
+    }
+
+    public static long getDroppedFrames()
+    {
+        return droppedFrames;
+    }
+
+    public static void reset()
+    {
+        for (LatencyHistogram histogram : histograms)
+        {
+            histogram.reset();
+        }
+        droppedFrames = 0;
+    }
+
+    /**
+     * Starts counting dropped frames, e.g. while the list is on screen. Frames are not watched before Jelly Bean.
+     */
+    public static void startFrameMonitoring()
+    {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN && droppedFramesMonitor == null)
+        {
+            droppedFramesMonitor = new DroppedFramesMonitor();
+            droppedFramesMonitor.start();
+        }
+    }
+
+    public static void stopFrameMonitoring()
+    {
+        if (droppedFramesMonitor != null)
+        {
+            droppedFramesMonitor.stop();
+            droppedFramesMonitor = null;
+        }
+    }
+
+    public static void dump(@NonNull String prefix, @NonNull PrintWriter writer)
+    {
+        writer.print(prefix);
+        writer.println("Frame timings:");
+        for (int i = 0; i < histograms.length; i++)
+        {
+            writer.print(prefix);
+            writer.print("  ");
+            histograms[i].dump(PHASE_NAMES[i], writer);
+        }
+        writer.print(prefix);
+        writer.println("  dropped frames: " + droppedFrames);
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static final class DroppedFramesMonitor implements Choreographer.FrameCallback
+    {
+        private boolean running;
+        private long lastFrameNanos;
+
+        void start()
+        {
+            running = true;
+            lastFrameNanos = 0;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        void stop()
+        {
+            running = false;
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos)
+        {
+            if (!running)
+            {
+                return;
+            }
+            if (lastFrameNanos != 0)
+            {
+                long intervalNanos = frameTimeNanos - lastFrameNanos;
+                histograms[PHASE_FRAME].record(intervalNanos);
+                long skipped = intervalNanos / FRAME_INTERVAL_NANOS - 1;
+                if (skipped > 0)
+                {
+                    droppedFrames += skipped;
+                }
+            }
+            lastFrameNanos = frameTimeNanos;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.yamblz.hardoperations.perf;
+
+import android.support.annotation.NonNull;
+
+import java.io.PrintWriter;
+import java.util.Locale;
+
+/**
+ * Histogram of durations with power of two buckets: bucket {@code i} counts durations in
+ * {@code [2^(i - 1), 2^i)} microseconds, the first bucket counts durations under a microsecond.
+ * Recording only updates counters and never allocates. Not thread safe, meant to be used on the main thread.
+ */
+public class LatencyHistogram
+{
+    static final int BUCKETS_COUNT = 24;
+
+    private final long[] buckets = new long[BUCKETS_COUNT];
+    private long count;
+    private long totalNanos;
+    private long maxNanos;
+
+    public void record(long nanos)
+    {
+        if (nanos < 0)
+        {
+            nanos = 0;
+        }
+        buckets[bucketOf(nanos)]++;
+        count++;
+        totalNanos += nanos;
+        if (nanos > maxNanos)
+        {
+            maxNanos = nanos;
+        }
+    }
+
+    public void reset()
+    {
+        for (int i = 0; i < BUCKETS_COUNT; i++)
+        {
+            buckets[i] = 0;
+        }
+        count = 0;
+        totalNanos = 0;
+        maxNanos = 0;
+    }
+
+    public long getCount()
+    {
+        return count;
+    }
+
+    public long getMaxNanos()
+    {
+        return maxNanos;
+    }
+
+    public long getMeanNanos()
+    {
+        return count == 0 ? 0 : totalNanos / count;
+    }
+
+    /**
+     * @param percentile from 0 to 100
+     * @return upper bound of the bucket the percentile falls in, not more than the max recorded duration
+     */
+    public long getPercentileNanos(double percentile)
+    {
+        if (count == 0)
+        {
+            return 0;
+        }
+        long rank = (long) Math.ceil(count * percentile / 100);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS_COUNT; i++)
+        {
+            seen += buckets[i];
+            if (seen >= rank && seen > 0)
+            {
+                return Math.min(bucketUpperBoundNanos(i), maxNanos);
+            }
+        }
+        return maxNanos;
+    }
+
+    public void dump(@NonNull String name, @NonNull PrintWriter writer)
+    {
+        writer.println(String.format(Locale.US,
+                                     "%s: count=%d mean=%.3fms p50<=%.3fms p90<=%.3fms p99<=%.3fms max=%.3fms",
+                                     name,
+                                     count,
+                                     getMeanNanos() / 1e6,
+                                     getPercentileNanos(50) / 1e6,
+                                     getPercentileNanos(90) / 1e6,
+                                     getPercentileNanos(99) / 1e6,
+                                     maxNanos / 1e6));
+    }
+
+    static int bucketOf(long nanos)
+    {
+        long micros = nanos / 1000;
+        int bucket = 64 - Long.numberOfLeadingZeros(micros);
+        return Math.min(bucket, BUCKETS_COUNT - 1);
+    }
+
+    static long bucketUpperBoundNanos(int bucket)
+    {
+        return (1L << bucket) * 1000;
+    }
+}
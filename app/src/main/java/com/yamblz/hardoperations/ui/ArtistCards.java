@@ -0,0 +1,143 @@
+package com.yamblz.hardoperations.ui;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+
+import com.yamblz.hardoperations.model.ArtistCardModel;
+import com.yamblz.hardoperations.model.ArtistDescriptions;
+import com.yamblz.hardoperations.model.ArtistIndex;
+import com.yamblz.hardoperations.model.ArtistSearchIndex;
+import com.yamblz.hardoperations.model.ArtistStore;
+
+/**
+ * Card models of the rows of an {@link ArtistStore}. Models are built on demand, so only descriptions
+ * of the rows around the visible ones are decoded, and kept for the recently used rows.
+ * Safe to use from any thread. Models of the rows about to be bound are built in background by
+ * {@link #prebuild(int[], int, int)}: the loader builds the first screen, the adapter the cards shown
+ * after a filter change and {@link TextPreLayouter} the rows ahead of the scroll and of appended batches.
+ */
+public class ArtistCards
+{
+    // A screen of cards and the ones right below it, built in background whenever the cards shown change
+    static final int FIRST_SCREEN_CARDS = 8;
+    private static final int CACHE_SIZE = 64;
+
+    @NonNull
+    private final ArtistStore store;
+    @NonNull
+    private final ArtistDescriptions.QuantityStrings quantityStrings;
+    // Least recently used models by row; a scan of a few dozen ints, no boxed keys on every bind
+    private final int[] cachedRows = new int[CACHE_SIZE];
+    private final ArtistCardModel[] cachedModels = new ArtistCardModel[CACHE_SIZE];
+    private final long[] lastUses = new long[CACHE_SIZE];
+    private long useCount;
+    @Nullable
+    private volatile ArtistIndex index;
+    @Nullable
+    private volatile ArtistSearchIndex searchIndex;
+
+    public ArtistCards(@NonNull ArtistStore store, @NonNull ArtistDescriptions.QuantityStrings quantityStrings)
+    {
+        this.store = store;
+        this.quantityStrings = quantityStrings;
+    }
+
+    @NonNull
+    public ArtistStore getStore()
+    {
+        return store;
+    }
+
+    /**
+     * Filter and sort index, available once all artists are loaded.
+     */
+    @Nullable
+    public ArtistIndex getIndex()
+    {
+        return index;
+    }
+
+    void setIndex(@NonNull ArtistIndex index)
+    {
+        this.index = index;
+    }
+
+    /**
+     * Full-text index of names and descriptions, available once all artists are loaded.
+     */
+    @Nullable
+    public ArtistSearchIndex getSearchIndex()
+    {
+        return searchIndex;
+    }
+
+    void setSearchIndex(@NonNull ArtistSearchIndex searchIndex)
+    {
+        this.searchIndex = searchIndex;
+    }
+
+    @NonNull
+    public ArtistCardModel get(int row)
+    {
+        ArtistCardModel model = getCached(row);
+        if (model == null)
+        {
+            // Built out of the lock, a row built twice by racing threads costs less than a blocked UI thread
+            model = ArtistCardModel.create(store, row, quantityStrings);
+            putCached(row, model);
+        }
+        return model;
+    }
+
+    /**
+     * Builds models of the cards at the adapter positions, those past the end of the store are skipped.
+     *
+     * @param rows store rows shown at adapter positions, null if positions are rows
+     */
+    @WorkerThread
+    public void prebuild(@Nullable int[] rows, int fromPosition, int count)
+    {
+        int positionsCount = rows != null ? rows.length : store.size();
+        int toPosition = Math.min(positionsCount, fromPosition + count);
+        for (int position = Math.max(0, fromPosition); position < toPosition; position++)
+        {
+            get(rows != null ? rows[position] : position);
+        }
+    }
+
+    @Nullable
+    private synchronized ArtistCardModel getCached(int row)
+    {
+        for (int i = 0; i < CACHE_SIZE; i++)
+        {
+            if (cachedModels[i] != null && cachedRows[i] == row)
+            {
+                lastUses[i] = ++useCount;
+                return cachedModels[i];
+            }
+        }
+        return null;
+    }
+
+    private synchronized void putCached(int row, @NonNull ArtistCardModel model)
+    {
+        int slot = 0;
+        for (int i = 0; i < CACHE_SIZE; i++)
+        {
+            if (cachedModels[i] != null && cachedRows[i] == row)
+            {
+                // Put by another thread meanwhile
+                slot = i;
+                break;
+            }
+            if (lastUses[i] < lastUses[slot])
+            {
+                slot = i;
+            }
+        }
+        cachedRows[slot] = row;
+        cachedModels[slot] = model;
+        lastUses[slot] = ++useCount;
+    }
+}
@@ -6,24 +6,20 @@ import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Paint;
-import android.graphics.Typeface;
 import android.graphics.drawable.Drawable;
 import android.os.Build;
 import android.support.annotation.NonNull;
-import android.support.v7.graphics.Palette;
-import android.text.Layout;
 import android.text.StaticLayout;
-import android.text.TextPaint;
 import android.util.AttributeSet;
 import android.view.View;
 
 import com.squareup.picasso.Picasso;
 import com.squareup.picasso.Target;
 import com.yamblz.hardoperations.R;
-import com.yamblz.hardoperations.model.Artist;
-import com.yamblz.hardoperations.utils.BitmapUtils;
-
-import java.util.Collections;
+import com.yamblz.hardoperations.communication.CoverUrls;
+import com.yamblz.hardoperations.model.ArtistCardModel;
+import com.yamblz.hardoperations.model.Cover;
+import com.yamblz.hardoperations.perf.FrameTimings;
 
 /**
  * Created by i-sergeev on 06.07.16
@@ -31,17 +27,58 @@ import java.util.Collections;
 public class ArtistView extends View
 {
     private static final int WHITE_COLOR = 0xFFFFFF;
-    private static final int PALETTE_POPULATION = 100;
+    // Exact sizes make every card width a separate image for the server and the http cache
+    private static final boolean REQUEST_EXACT_COVER_SIZE = false;
 
-    private TextPaint titlePaint;
-    private TextPaint descriptionPaint;
     private int defaultTextColor;
     private int defaultBackgroundColor;
-
-    private Artist artist;
+    // Dimensions are read once, resource lookups are not free in onMeasure and onDraw
+    private int posterPadding;
+    private int posterHeight;
+    private int posterTextMargin;
+    private int textLRPadding;
+    private int titleDescMargin;
+    private int bottomPadding;
+
+    private ArtistCardModel card;
     private Bitmap posterBitmap;
     private ImageLoadTarget imageLoadTarget;
-    private Picasso picasso;
+    private PosterScheduler posterScheduler;
+    private CardColorsCache cardColorsCache;
+    private CardColors cardColors;
+    private TextLayoutCache textLayoutCache;
+    private StaticLayout titleLayout;
+    private StaticLayout descriptionLayout;
+    private int layoutsWidth;
+    private boolean layoutsExpanded;
+    private TextPreLayouter textPreLayouter;
+    // Expanded cards show the whole description, collapsed ones only the first lines
+    private boolean expanded;
+    private boolean fullDescriptionRequested;
+    // Bound during a fling: no poster load, no palette, no description layout, see FlingFidelityController
+    private boolean lowFidelity;
+    private boolean layoutsLowFidelity;
+    private CardSnapshotCache cardSnapshotCache;
+    // The card was bound without loading the poster as a snapshot of it was cached
+    private boolean posterSkipped;
+    // Snapshot the last draw recorded, it is in the display list until the next draw
+    private Bitmap drawnSnapshot;
+    private final Canvas snapshotCanvas = new Canvas();
+    private final PosterRenderer posterRenderer = new PosterRenderer();
+    // Recolored for every rect, onDraw must not allocate
+    private final Paint rectPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final CardColorsCache.OnColorsReadyListener onColorsReadyListener =
+            new CardColorsCache.OnColorsReadyListener()
+            {
+                @Override
+                public void onColorsReady(@NonNull String artistId, @NonNull CardColors colors)
+                {
+                    if (card != null && artistId.equals(card.getId()))
+                    {
+                        setCardColors(colors);
+                    }
+                }
+            };
 
     public ArtistView(Context context)
     {
@@ -71,7 +108,9 @@ public class ArtistView extends View
 
     private void init(@NonNull Context context)
     {
-        picasso = Picasso.with(context);
+        posterScheduler = PosterScheduler.with(context);
+        cardColorsCache = CardColorsCache.with(context);
+        cardSnapshotCache = CardSnapshotCache.with(context);
 
         Resources resources = getResources();
 
@@ -80,106 +119,304 @@ public class ArtistView extends View
         //noinspection deprecation
         defaultBackgroundColor = resources.getColor(R.color.default_background_color);
 
-        float titleFontSize = resources.getDimensionPixelSize(R.dimen.artist_card_title_font_size);
-        titlePaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
-        titlePaint.setTypeface(Typeface.DEFAULT_BOLD);
-        titlePaint.setTextSize(titleFontSize);
-        titlePaint.setColor(defaultTextColor);
+        posterPadding = resources.getDimensionPixelOffset(R.dimen.artist_card_top_padding);
+        posterHeight = resources.getDimensionPixelOffset(R.dimen.poster_height);
+        posterTextMargin = resources.getDimensionPixelOffset(R.dimen.artist_card_poster_text_margin);
+        textLRPadding = resources.getDimensionPixelOffset(R.dimen.artist_card_lr_text_padding);
+        titleDescMargin = resources.getDimensionPixelOffset(R.dimen.artist_card_title_desc_margin);
+        bottomPadding = resources.getDimensionPixelOffset(R.dimen.artist_card_bottom_padding);
 
-        float descriptionFontSize = resources.getDimensionPixelSize(R.dimen.artist_card_font_size);
-        descriptionPaint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
-        descriptionPaint.setTextSize(descriptionFontSize);
-        descriptionPaint.setColor(defaultTextColor);
+        textLayoutCache = TextLayoutCache.with(context);
+        textPreLayouter = TextPreLayouter.with(context);
     }
 
-    public void setArtist(Artist artist)
+    /**
+     * @param lowFidelity whether the card is only flung through: it is drawn with the title and the colors
+     *                    at hand and a placeholder poster until {@link #showFullFidelity()}
+     */
+    public void setCard(@NonNull ArtistCardModel card, boolean expanded, boolean lowFidelity)
     {
-        this.artist = artist;
+        this.card = card;
+        this.expanded = expanded;
+        this.lowFidelity = lowFidelity;
+        fullDescriptionRequested = false;
+        cardColors = cardColorsCache.get(card.getId());
+        titleLayout = null;
+        descriptionLayout = null;
         invalidate();
         requestLayout();
 
+        cancelPoster();
+        posterBitmap = null;
+        posterSkipped = false;
+        // Until the card is laid out the poster size is unknown, the poster is loaded from onSizeChanged then
+        if (getWidth() > 0)
+        {
+            loadPosterIfNoSnapshot(getWidth());
+        }
+    }
+
+    /**
+     * Loads what a card bound in low fidelity skipped, e.g. when the fling settles with the card on screen.
+     */
+    public void showFullFidelity()
+    {
+        if (!lowFidelity)
+        {
+            return;
+        }
+        lowFidelity = false;
+        if (card == null)
+        {
+            return;
+        }
+        requestLayout();
+        invalidate();
+        if (posterBitmap == null && imageLoadTarget == null && getWidth() > 0)
+        {
+            loadPosterIfNoSnapshot(getWidth());
+        }
+    }
+
+    /**
+     * Shows the whole description or only its first lines. The full description is laid out in background,
+     * the card stays collapsed until it is ready.
+     */
+    public void setExpanded(boolean expanded)
+    {
+        if (this.expanded == expanded)
+        {
+            return;
+        }
+        this.expanded = expanded;
+        requestLayout();
+        invalidate();
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh)
+    {
+        super.onSizeChanged(w, h, oldw, oldh);
+        if (card != null && w != oldw)
+        {
+            loadPosterIfNoSnapshot(w);
+        }
+    }
+
+    /**
+     * Cancels loading the poster, e.g. when the view is recycled.
+     */
+    public void cancelPoster()
+    {
         if (imageLoadTarget != null)
         {
-            Picasso.with(getContext()).cancelRequest(imageLoadTarget);
+            posterScheduler.cancel(imageLoadTarget);
             imageLoadTarget = null;
         }
+    }
+
+    @Override
+    protected void onAttachedToWindow()
+    {
+        super.onAttachedToWindow();
+        // A view taken back from the cache of the recycler view is not bound again
+        if (card != null && posterBitmap == null && imageLoadTarget == null && getWidth() > 0)
+        {
+            loadPosterIfNoSnapshot(getWidth());
+        }
+    }
+
+    @Override
+    protected void onDetachedFromWindow()
+    {
+        // Nobody will see the poster of a card scrolled away
+        cancelPoster();
+        setDrawnSnapshot(null);
+        super.onDetachedFromWindow();
+    }
+
+    /**
+     * A snapshot has the poster drawn already, the poster is loaded only if the snapshot gets evicted.
+     * A card in low fidelity loads nothing.
+     */
+    private void loadPosterIfNoSnapshot(int viewWidth)
+    {
+        if (lowFidelity)
+        {
+            return;
+        }
+        if (CardSnapshotCache.ENABLED && cardSnapshotCache.get(card.getId(), viewWidth) != null)
+        {
+            posterSkipped = true;
+            return;
+        }
+        posterSkipped = false;
+        loadPoster(viewWidth);
+    }
+
+    private void loadPoster(int viewWidth)
+    {
+        cancelPoster();
+        if (card.getCover() == null)
+        {
+            return;
+        }
         imageLoadTarget = new ImageLoadTarget();
-        picasso.load(artist.getCover().getBigImageUrl()).into(imageLoadTarget);
+        posterScheduler.load(createPosterUri(getResources(), card.getCover(), viewWidth),
+                             imageLoadTarget,
+                             PosterScheduler.VISIBLE);
+    }
+
+    /**
+     * Uri of the poster thumbnail of the cover variant closest to the poster width, the thumbnail
+     * is the size of the poster drawn, so neither the bitmap in memory nor the file on disk is bigger.
+     * Prefetching must use the same uri to hit the memory cache later.
+     */
+    @NonNull
+    static String createPosterUri(@NonNull Resources resources, @NonNull Cover cover, int viewWidth)
+    {
+        int posterWidth = viewWidth - (2 * resources.getDimensionPixelOffset(R.dimen.artist_card_top_padding));
+        int posterHeight = resources.getDimensionPixelOffset(R.dimen.poster_height);
+        String url = CoverUrls.forWidth(cover, posterWidth, REQUEST_EXACT_COVER_SIZE);
+        return PosterRequestHandler.createUri(url, posterWidth, posterHeight).toString();
     }
 
     private void setPosterBitmap(Bitmap bitmap)
     {
         posterBitmap = bitmap;
+        invalidateSnapshot();
+        invalidate();
+    }
+
+    private void setCardColors(CardColors colors)
+    {
+        cardColors = colors;
+        invalidateSnapshot();
         invalidate();
     }
 
+    private void invalidateSnapshot()
+    {
+        if (CardSnapshotCache.ENABLED && card != null)
+        {
+            cardSnapshotCache.invalidate(card.getId());
+        }
+    }
+
     @Override
     protected void onDraw(Canvas canvas)
     {
         super.onDraw(canvas);
 
-        if (artist == null)
+        if (card == null)
         {
             return;
         }
+        long startNanos = FrameTimings.ENABLED ? System.nanoTime() : 0;
 
-        //Draw background
-        Palette palette = getPalette();
-        canvas.drawRect(0, 0, getWidth(), getHeight(), getRectPaint(palette.getLightVibrantColor(
-                defaultBackgroundColor)));
+        if (CardSnapshotCache.ENABLED)
+        {
+            drawWithSnapshot(canvas);
+        }
+        else
+        {
+            drawCard(canvas);
+        }
 
-        int textColor = palette.getDarkMutedColor(defaultTextColor);
-        titlePaint.setColor(palette.getDarkMutedColor(textColor));
-        descriptionPaint.setColor(textColor);
+        if (FrameTimings.ENABLED)
+        {
+            FrameTimings.record(FrameTimings.PHASE_DRAW, startNanos);
+        }
+    }
 
-        //draw poster
-        int posterLRPosterPadding = getResources().getDimensionPixelOffset(R.dimen.artist_card_top_padding);
-        int posterTopPadding = getResources().getDimensionPixelOffset(R.dimen.artist_card_top_padding);
+    private void drawWithSnapshot(@NonNull Canvas canvas)
+    {
+        Bitmap snapshot = cardSnapshotCache.get(card.getId(), getWidth());
+        if (snapshot != null && snapshot.getHeight() != getHeight())
+        {
+            // Text of the card was laid out differently, e.g. with another font scale
+            cardSnapshotCache.invalidate(card.getId());
+            snapshot = null;
+        }
+        if (snapshot == null && posterBitmap != null && cardColors != null
+                && cardSnapshotCache.fits(getWidth(), getHeight()))
+        {
+            snapshot = cardSnapshotCache.obtain(getWidth(), getHeight());
+            snapshotCanvas.setBitmap(snapshot);
+            drawCard(snapshotCanvas);
+            snapshotCanvas.setBitmap(null);
+            cardSnapshotCache.put(card.getId(), snapshot);
+        }
 
-        int imageHeight = getResources().getDimensionPixelOffset(R.dimen.poster_height);
+        setDrawnSnapshot(snapshot);
+        if (snapshot != null)
+        {
+            canvas.drawBitmap(snapshot, 0, 0, null);
+            return;
+        }
+        drawCard(canvas);
+        if (posterSkipped && !lowFidelity)
+        {
+            // The snapshot was evicted after the card was bound
+            posterSkipped = false;
+            loadPoster(getWidth());
+        }
+    }
+
+    private void setDrawnSnapshot(Bitmap snapshot)
+    {
+        if (CardSnapshotCache.ENABLED)
+        {
+            cardSnapshotCache.onDrawnChanged(drawnSnapshot, snapshot);
+            drawnSnapshot = snapshot;
+        }
+    }
+
+    private void drawCard(@NonNull Canvas canvas)
+    {
+        //Draw background
+        int backgroundColor = cardColors != null ? cardColors.getBackgroundColor() : defaultBackgroundColor;
+        canvas.drawRect(0, 0, getWidth(), getHeight(), getRectPaint(backgroundColor));
+
+        //draw poster
         if (posterBitmap == null)
         {
-            canvas.drawRect(posterLRPosterPadding,
-                            posterTopPadding,
-                            getWidth() - posterLRPosterPadding,
-                            imageHeight,
+            canvas.drawRect(posterPadding,
+                            posterPadding,
+                            getWidth() - posterPadding,
+                            posterHeight,
                             getRectPaint(WHITE_COLOR));
         }
         else
         {
-            Bitmap scaledBitmap = BitmapUtils.fitToCenterBitmap(posterBitmap,
-                                                                getWidth() - (2 * posterLRPosterPadding),
-                                                                imageHeight);
-            canvas.drawBitmap(scaledBitmap,
-                              posterLRPosterPadding,
-                              posterTopPadding,
-                              getBitmapPaint());
-            scaledBitmap.recycle();
+            posterRenderer.draw(canvas,
+                                posterBitmap,
+                                posterPadding,
+                                posterPadding,
+                                getWidth() - (2 * posterPadding),
+                                posterHeight);
         }
 
         //draw title
-        float titleTextHeight = getTextHeight(artist.getName(), getWidth(), titlePaint);
-        int posterTextMargin = getResources().getDimensionPixelOffset(R.dimen.artist_card_poster_text_margin);
-        int textLRPadding = getResources().getDimensionPixelOffset(R.dimen.artist_card_lr_text_padding);
+        obtainLayouts(getWidth() - (2 * textLRPadding));
 
-        StaticLayout titleStaticLayout = getStaticLayout(artist.getName(),
-                                                         getWidth() - textLRPadding,
-                                                         titlePaint);
+        titleLayout.getPaint().setColor(cardColors != null ? cardColors.getTitleColor() : defaultTextColor);
         canvas.save();
-        canvas.translate(textLRPadding, posterTopPadding + imageHeight + posterTextMargin);
-        titleStaticLayout.draw(canvas);
+        canvas.translate(textLRPadding, posterPadding + posterHeight + posterTextMargin);
+        titleLayout.draw(canvas);
         canvas.restore();
 
         //draw description
-        int titleDescMargin = getResources().getDimensionPixelOffset(R.dimen.artist_card_title_desc_margin);
-
-        StaticLayout descriptionStaticLayout = getStaticLayout(getArtistDescription(),
-                                                               getWidth() - textLRPadding,
-                                                               descriptionPaint);
+        if (descriptionLayout == null)
+        {
+            // Low fidelity
+            return;
+        }
+        descriptionLayout.getPaint().setColor(cardColors != null ? cardColors.getTextColor() : defaultTextColor);
         canvas.save();
         canvas.translate(textLRPadding,
-                         posterTopPadding + imageHeight + posterTextMargin + titleTextHeight + titleDescMargin);
-        descriptionStaticLayout.draw(canvas);
+                         posterPadding + posterHeight + posterTextMargin + titleLayout.getHeight() + titleDescMargin);
+        descriptionLayout.draw(canvas);
         canvas.restore();
     }
 
@@ -188,93 +425,112 @@ public class ArtistView extends View
     {
         super.onMeasure(widthMeasureSpec, heightMeasureSpec);
 
-        if (artist == null)
+        if (card == null)
         {
             setMeasuredDimension(widthMeasureSpec, heightMeasureSpec);
             return;
         }
+        long startNanos = FrameTimings.ENABLED ? System.nanoTime() : 0;
 
-        int posterLRTextPadding = getResources().getDimensionPixelOffset(R.dimen.artist_card_lr_text_padding);
         int width = resolveSizeAndState(getSuggestedMinimumWidth(), widthMeasureSpec, 1);
 
-        int textWidth = width - (2 * posterLRTextPadding);
+        int textWidth = width - (2 * textLRPadding);
 
         int height = 0;
-        height += getResources().getDimensionPixelOffset(R.dimen.poster_height);
-        height += getTextHeight(artist.getName(), textWidth, titlePaint);
-        height += getTextHeight(getArtistDescription(), textWidth, descriptionPaint);
-
-        height += getResources().getDimensionPixelOffset(R.dimen.artist_card_top_padding);
-        height += getResources().getDimensionPixelOffset(R.dimen.artist_card_bottom_padding);
-        height += getResources().getDimensionPixelOffset(R.dimen.artist_card_poster_text_margin);
-        height += getResources().getDimensionPixelOffset(R.dimen.artist_card_title_desc_margin);
+        height += posterHeight;
+        obtainLayouts(textWidth);
+        height += titleLayout.getHeight();
+        // A card in low fidelity keeps the place of a collapsed description, so that it doesn't jump when upgraded
+        height += descriptionLayout != null
+                ? descriptionLayout.getHeight()
+                : textLayoutCache.getCollapsedDescriptionHeight();
+
+        height += posterPadding;
+        height += bottomPadding;
+        height += posterTextMargin;
+        height += titleDescMargin;
 
         setMeasuredDimension(width, height);
-    }
-
-    private float getTextHeight(String text, int width, TextPaint textPaint)
-    {
-        return getStaticLayout(text, width, textPaint).getHeight();
-    }
 
-    private StaticLayout getStaticLayout(String text, int width, TextPaint textPaint)
-    {
-        if (text == null)
+        if (FrameTimings.ENABLED)
         {
-            text = "";
+            FrameTimings.record(FrameTimings.PHASE_MEASURE, startNanos);
         }
-        return new StaticLayout(text, textPaint, width, Layout.Alignment.ALIGN_NORMAL, 1, 1, false);
-    }
-
-    private Paint getRectPaint(int color)
-    {
-        Paint rectPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-        rectPaint.setColor(color);
-        return rectPaint;
-    }
-
-    private Paint getBitmapPaint()
-    {
-        Paint bitmapPaint = new Paint();
-        bitmapPaint.setAntiAlias(true);
-        bitmapPaint.setFilterBitmap(true);
-        bitmapPaint.setDither(true);
-        return bitmapPaint;
     }
 
-    private String getArtistDescription()
+    /**
+     * Takes layouts of the current card for the text width, usually pre-built by {@link TextPreLayouter}.
+     * In low fidelity the description is shown only if its layout is built already.
+     */
+    private void obtainLayouts(int textWidth)
     {
-        if (artist == null)
-        {
-            return "";
-        }
-        String descriptionText = artist.getDescription() + "\n";
-        descriptionText += "\n" + getResources().getQuantityString(R.plurals.artistAlbums,
-                                                                   artist.getAlbumsCount(),
-                                                                   artist.getAlbumsCount());
-        descriptionText += "\n" + getResources().getQuantityString(R.plurals.artistTracks,
-                                                                   artist.getTracksCount(),
-                                                                   artist.getTracksCount());
-        return descriptionText;
+        if (titleLayout != null
+                && layoutsWidth == textWidth
+                && layoutsExpanded == expanded
+                && layoutsLowFidelity == lowFidelity)
+        {
+            return;
+        }
+        textLayoutCache.setLastTextWidth(textWidth);
+        titleLayout = textLayoutCache.get(card.getId(), TextLayoutCache.KIND_TITLE, card.getTitle(), textWidth);
+        layoutsWidth = textWidth;
+        layoutsExpanded = expanded;
+        layoutsLowFidelity = lowFidelity;
+        if (lowFidelity)
+        {
+            descriptionLayout = textLayoutCache.peek(card.getId(),
+                                                     TextLayoutCache.KIND_DESCRIPTION_COLLAPSED,
+                                                     textWidth);
+            return;
+        }
+        descriptionLayout = expanded
+                ? textLayoutCache.peek(card.getId(), TextLayoutCache.KIND_DESCRIPTION, textWidth)
+                : null;
+        if (descriptionLayout == null)
+        {
+            descriptionLayout = textLayoutCache.get(card.getId(),
+                                                    TextLayoutCache.KIND_DESCRIPTION_COLLAPSED,
+                                                    card.getDescription(),
+                                                    textWidth);
+            if (expanded)
+            {
+                requestFullDescription(textWidth);
+            }
+        }
     }
 
-    private Palette getPalette()
+    private void requestFullDescription(int textWidth)
     {
-        if (posterBitmap != null && !posterBitmap.isRecycled())
+        if (fullDescriptionRequested)
         {
-            return Palette.from(posterBitmap).generate();
+            return;
         }
-        else
+        fullDescriptionRequested = true;
+        final ArtistCardModel requestedCard = card;
+        textPreLayouter.layoutFullDescription(card, textWidth, new Runnable()
         {
-            return getDefaultPalette();
-        }
+            @Override
+            public void run()
+            {
+                if (card == requestedCard)
+                {
+                    fullDescriptionRequested = false;
+                    if (expanded)
+                    {
+                        // Takes the full layout instead of the collapsed one
+                        titleLayout = null;
+                        requestLayout();
+                        invalidate();
+                    }
+                }
+            }
+        });
     }
 
-    @NonNull
-    private static Palette getDefaultPalette()
+    private Paint getRectPaint(int color)
     {
-        Palette.Swatch swatch = new Palette.Swatch(WHITE_COLOR, PALETTE_POPULATION);
-        return Palette.from(Collections.singletonList(swatch));
+        rectPaint.setColor(color);
+        return rectPaint;
     }
 
     private final class ImageLoadTarget implements Target
@@ -282,8 +538,17 @@ public class ArtistView extends View
         @Override
         public void onBitmapLoaded(Bitmap bitmap, Picasso.LoadedFrom from)
         {
+            long startNanos = FrameTimings.ENABLED ? System.nanoTime() : 0;
             imageLoadTarget = null;
             setPosterBitmap(bitmap);
+            if (cardColors == null)
+            {
+                cardColorsCache.extract(card.getId(), bitmap, onColorsReadyListener);
+            }
+            if (FrameTimings.ENABLED)
+            {
+                FrameTimings.record(FrameTimings.PHASE_IMAGE_LOADED, startNanos);
+            }
         }
 
         @Override
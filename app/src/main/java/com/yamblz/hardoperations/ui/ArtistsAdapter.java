@@ -3,9 +3,13 @@ package com.yamblz.hardoperations.ui;
 import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.MainThread;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.v7.graphics.Palette;
+import android.support.v7.util.DiffUtil;
 import android.support.v7.widget.RecyclerView;
 import android.view.LayoutInflater;
 import android.view.View;
@@ -14,9 +18,14 @@ import android.view.ViewGroup;
 import com.squareup.picasso.Picasso;
 import com.squareup.picasso.Target;
 import com.yamblz.hardoperations.R;
-import com.yamblz.hardoperations.model.Artist;
+import com.yamblz.hardoperations.model.ArtistCardModel;
+import com.yamblz.hardoperations.perf.FrameTimings;
+import com.yamblz.hardoperations.utils.BackgroundThreadFactory;
 
-import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import butterknife.BindView;
 import butterknife.ButterKnife;
@@ -26,16 +35,155 @@ import butterknife.ButterKnife;
  */
 public class ArtistsAdapter extends RecyclerView.Adapter<ArtistsAdapter.ArtistVH>
 {
-    @NonNull
-    private final Artist[] artists;
+    @Nullable
+    private ArtistCards cards;
+    private int itemCount;
+    // Store rows shown at adapter positions, null to show all rows in the store order
+    @Nullable
+    private int[] rows;
+    // Incremented by every change of the cards shown, a diff calculated for an older state is dropped
+    private int generation;
+    // Ids of the cards the user expanded, they survive filtering and reloads
+    private final Set<String> expandedIds = new HashSet<String>();
+    // Cards are bound in low fidelity while the list is flung, see FlingFidelityController
+    private boolean lowFidelity;
 
-    public ArtistsAdapter(@Nullable Artist[] artists)
+    private final ExecutorService diffExecutor =
+            Executors.newSingleThreadExecutor(new BackgroundThreadFactory("artists-diff"));
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    public ArtistsAdapter()
+    {
+        setHasStableIds(true);
+    }
+
+    /**
+     * Shows the cards right away, all views are rebound.
+     *
+     * @param count number of cards to show; more may be added afterwards,
+     *              every append must be reported with {@link #notifyCardsAppended(int, int)}
+     */
+    @MainThread
+    public void setCards(@Nullable ArtistCards cards, int count)
     {
-        if (artists == null)
+        generation++;
+        this.cards = cards;
+        itemCount = cards != null ? count : 0;
+        rows = null;
+        notifyDataSetChanged();
+    }
+
+    /**
+     * Replaces the cards shown with the given rows of the cards. The diff with the cards shown is calculated
+     * in background and dispatched as inserts, removes, moves and changes, so only cards that actually changed
+     * are rebound. Changes of the cards shown made before the diff is ready cancel it.
+     *
+     * @param cards      cards of a finished load, the same as shown or of a reload
+     * @param rows       rows to show in the order, e.g. the result of an
+     *                   {@link com.yamblz.hardoperations.model.ArtistIndex} query; null to show all cards.
+     *                   The array is not copied
+     * @param firstPosition position of the first card to be on screen after the update, cards from it are
+     *                      built in background together with the diff
+     * @param onUpdated  called once the cards are shown, unless cancelled
+     */
+    @MainThread
+    public void update(@NonNull final ArtistCards cards,
+                       @Nullable final int[] rows,
+                       final int firstPosition,
+                       @Nullable final Runnable onUpdated)
+    {
+        if (this.cards == null)
         {
-            artists = new Artist[0];
+            setCards(cards, cards.getStore().size());
+            this.rows = rows;
+            if (onUpdated != null)
+            {
+                onUpdated.run();
+            }
+            return;
         }
-        this.artists = artists;
+
+        final int updateGeneration = ++generation;
+        final ArtistsDiffCallback diffCallback = new ArtistsDiffCallback(this.cards.getStore(),
+                                                                         this.rows,
+                                                                         itemCount,
+                                                                         cards.getStore(),
+                                                                         rows,
+                                                                         cards.getStore().size());
+        diffExecutor.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                cards.prebuild(rows, firstPosition, ArtistCards.FIRST_SCREEN_CARDS);
+                final DiffUtil.DiffResult diff = diffCallback.isWorthCalculating()
+                        ? DiffUtil.calculateDiff(diffCallback, false)
+                        : null;
+                mainHandler.post(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        if (updateGeneration != generation)
+                        {
+                            return;
+                        }
+                        ArtistsAdapter.this.cards = cards;
+                        ArtistsAdapter.this.rows = rows;
+                        itemCount = cards.getStore().size();
+                        if (diff != null)
+                        {
+                            diff.dispatchUpdatesTo(ArtistsAdapter.this);
+                        }
+                        else
+                        {
+                            notifyDataSetChanged();
+                        }
+                        if (onUpdated != null)
+                        {
+                            onUpdated.run();
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Store row of the card at the adapter position.
+     */
+    public int getRow(int position)
+    {
+        return rows != null ? rows[position] : position;
+    }
+
+    @Nullable
+    public ArtistCards getCards()
+    {
+        return cards;
+    }
+
+    /**
+     * Binds the next cards in low fidelity or in full. Cards bound already are not changed,
+     * those on screen are upgraded with {@link ArtistView#showFullFidelity()}.
+     */
+    @MainThread
+    public void setLowFidelity(boolean lowFidelity)
+    {
+        this.lowFidelity = lowFidelity;
+    }
+
+    public boolean isLowFidelity()
+    {
+        return lowFidelity;
+    }
+
+    @MainThread
+    public void notifyCardsAppended(int from, int count)
+    {
+        generation++;
+        itemCount = from + count;
+        notifyItemRangeInserted(from, count);
     }
 
     @Override
@@ -49,29 +197,74 @@ public class ArtistsAdapter extends RecyclerView.Adapter<ArtistsAdapter.ArtistVH
     @Override
     public void onBindViewHolder(ArtistVH holder, int position)
     {
-        holder.bind(artists[position]);
+        long startNanos = FrameTimings.ENABLED ? System.nanoTime() : 0;
+        holder.bind(cards.get(getRow(position)));
+        if (FrameTimings.ENABLED)
+        {
+            FrameTimings.record(FrameTimings.PHASE_BIND, startNanos);
+        }
+    }
+
+    @Override
+    public void onViewAttachedToWindow(ArtistVH holder)
+    {
+        // A view taken back from the cache of the recycler view is not bound again
+        if (!lowFidelity)
+        {
+            holder.artistView.showFullFidelity();
+        }
+    }
+
+    @Override
+    public void onViewRecycled(ArtistVH holder)
+    {
+        holder.artistView.cancelPoster();
+    }
+
+    @Override
+    public long getItemId(int position)
+    {
+        return cards.getStore().getId(getRow(position));
     }
 
     @Override
     public int getItemCount()
     {
-        return artists.length;
+        return rows != null ? rows.length : itemCount;
     }
 
-    public class ArtistVH extends RecyclerView.ViewHolder
+    public class ArtistVH extends RecyclerView.ViewHolder implements View.OnClickListener
     {
         @BindView(R.id.artist_root_view)
         ArtistView artistView;
+        private ArtistCardModel card;
 
         public ArtistVH(View itemView)
         {
             super(itemView);
             ButterKnife.bind(this, itemView);
+            artistView.setOnClickListener(this);
+        }
+
+        public void bind(@NonNull ArtistCardModel card)
+        {
+            this.card = card;
+            artistView.setCard(card, expandedIds.contains(card.getId()), lowFidelity);
         }
 
-        public void bind(@NonNull Artist artist)
+        @Override
+        public void onClick(View view)
         {
-            artistView.setArtist(artist);
+            if (card == null)
+            {
+                return;
+            }
+            boolean expanded = !expandedIds.remove(card.getId());
+            if (expanded)
+            {
+                expandedIds.add(card.getId());
+            }
+            artistView.setExpanded(expanded);
         }
     }
 }
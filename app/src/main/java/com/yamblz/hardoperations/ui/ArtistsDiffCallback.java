@@ -0,0 +1,189 @@
+package com.yamblz.hardoperations.ui;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v7.util.DiffUtil;
+
+import com.yamblz.hardoperations.model.ArtistStore;
+import com.yamblz.hardoperations.model.Cover;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Diff between two lists of artist cards, each list is a store and the rows shown at adapter positions.
+ * Cards are the same item when artists have the same id, the stores may be of different loads.
+ */
+final class ArtistsDiffCallback extends DiffUtil.Callback
+{
+    // DiffUtil takes about N + M + D^2 steps for lists of N and M items D edits apart
+    private static final long MAX_DIFF_STEPS = 4000000L;
+
+    @NonNull
+    private final ArtistStore oldStore;
+    @Nullable
+    private final int[] oldRows;
+    private final int oldCount;
+    @NonNull
+    private final ArtistStore newStore;
+    @Nullable
+    private final int[] newRows;
+    private final int newCount;
+
+    /**
+     * @param oldRows rows at adapter positions, null for the first {@code oldCount} rows in the store order
+     * @param newRows same as {@code oldRows} for the new list
+     */
+    ArtistsDiffCallback(@NonNull ArtistStore oldStore,
+                        @Nullable int[] oldRows,
+                        int oldCount,
+                        @NonNull ArtistStore newStore,
+                        @Nullable int[] newRows,
+                        int newCount)
+    {
+        this.oldStore = oldStore;
+        this.oldRows = oldRows;
+        this.oldCount = oldRows != null ? oldRows.length : oldCount;
+        this.newStore = newStore;
+        this.newRows = newRows;
+        this.newCount = newRows != null ? newRows.length : newCount;
+    }
+
+    @Override
+    public int getOldListSize()
+    {
+        return oldCount;
+    }
+
+    @Override
+    public int getNewListSize()
+    {
+        return newCount;
+    }
+
+    @Override
+    public boolean areItemsTheSame(int oldItemPosition, int newItemPosition)
+    {
+        return oldStore.getId(oldRow(oldItemPosition)) == newStore.getId(newRow(newItemPosition));
+    }
+
+    @Override
+    public boolean areContentsTheSame(int oldItemPosition, int newItemPosition)
+    {
+        int oldRow = oldRow(oldItemPosition);
+        int newRow = newRow(newItemPosition);
+        if (oldStore == newStore)
+        {
+            return oldRow == newRow;
+        }
+        return equal(oldStore.getName(oldRow), newStore.getName(newRow))
+                && oldStore.getTracksCount(oldRow) == newStore.getTracksCount(newRow)
+                && oldStore.getAlbumsCount(oldRow) == newStore.getAlbumsCount(newRow)
+                && equalGenres(oldRow, newRow)
+                && equal(oldStore.getDescription(oldRow), newStore.getDescription(newRow))
+                && equalCovers(oldStore.getCover(oldRow), newStore.getCover(newRow));
+    }
+
+    private int oldRow(int position)
+    {
+        return oldRows != null ? oldRows[position] : position;
+    }
+
+    private int newRow(int position)
+    {
+        return newRows != null ? newRows[position] : position;
+    }
+
+    private boolean equalGenres(int oldRow, int newRow)
+    {
+        int count = oldStore.getGenresCount(oldRow);
+        if (count != newStore.getGenresCount(newRow))
+        {
+            return false;
+        }
+        for (int i = 0; i < count; i++)
+        {
+            // Genre names are interned by the stores
+            if (!equal(oldStore.getGenreName(oldStore.getGenreOrdinal(oldRow, i)),
+                       newStore.getGenreName(newStore.getGenreOrdinal(newRow, i))))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean equalCovers(@Nullable Cover oldCover, @Nullable Cover newCover)
+    {
+        if (oldCover == null || newCover == null)
+        {
+            return oldCover == newCover;
+        }
+        return equal(oldCover.getSmallImageUrl(), newCover.getSmallImageUrl())
+                && equal(oldCover.getBigImageUrl(), newCover.getBigImageUrl());
+    }
+
+    private static boolean equal(@Nullable Object a, @Nullable Object b)
+    {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * Whether the diff is cheap enough to calculate. Reordering or filtering out most of a long list makes
+     * almost every item an edit and the diff quadratic; such a list is better rebound as a whole.
+     */
+    boolean isWorthCalculating()
+    {
+        long edits = editDistance(ids(oldStore, oldRows, oldCount), ids(newStore, newRows, newCount));
+        return oldCount + newCount + edits * edits <= MAX_DIFF_STEPS;
+    }
+
+    @NonNull
+    private static long[] ids(@NonNull ArtistStore store, @Nullable int[] rows, int count)
+    {
+        long[] ids = new long[count];
+        for (int position = 0; position < count; position++)
+        {
+            ids[position] = store.getId(rows != null ? rows[position] : position);
+        }
+        return ids;
+    }
+
+    /**
+     * Number of insertions and removals turning one list of distinct ids into another, in O(N log N):
+     * the longest common subsequence of lists without repeats is the longest increasing subsequence
+     * of the old positions of the new ids.
+     */
+    static int editDistance(@NonNull long[] oldIds, @NonNull long[] newIds)
+    {
+        Map<Long, Integer> oldPositions = new HashMap<Long, Integer>(oldIds.length * 2);
+        for (int position = 0; position < oldIds.length; position++)
+        {
+            oldPositions.put(oldIds[position], position);
+        }
+
+        // tails[i] is the smallest last old position of the increasing subsequences of length i + 1
+        int[] tails = new int[Math.min(oldIds.length, newIds.length)];
+        int longest = 0;
+        for (long id : newIds)
+        {
+            Integer oldPosition = oldPositions.get(id);
+            if (oldPosition == null)
+            {
+                continue;
+            }
+            int index = Arrays.binarySearch(tails, 0, longest, oldPosition);
+            if (index < 0)
+            {
+                index = -index - 1;
+            }
+            tails[index] = oldPosition;
+            if (index == longest)
+            {
+                longest++;
+            }
+        }
+        return oldIds.length + newIds.length - 2 * longest;
+    }
+}
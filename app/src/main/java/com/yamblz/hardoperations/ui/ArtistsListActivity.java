@@ -1,32 +1,82 @@
 package com.yamblz.hardoperations.ui;
 
+import android.content.DialogInterface;
+import android.support.annotation.NonNull;
 import android.support.v4.app.LoaderManager;
 import android.support.v4.content.Loader;
+import android.support.v4.view.MenuItemCompat;
+import android.support.v7.app.AlertDialog;
 import android.support.v7.app.AppCompatActivity;
 import android.os.Bundle;
 import android.support.v7.widget.LinearLayoutManager;
 import android.support.v7.widget.RecyclerView;
+import android.support.v7.widget.SearchView;
+import android.support.v7.widget.Toolbar;
+import android.view.Menu;
+import android.view.MenuItem;
 import android.view.View;
 import android.widget.ProgressBar;
 
 import com.squareup.picasso.Picasso;
 import com.yamblz.hardoperations.R;
-import com.yamblz.hardoperations.model.Artist;
+import com.yamblz.hardoperations.model.ArtistIndex;
+import com.yamblz.hardoperations.model.ArtistSearchIndex;
+import com.yamblz.hardoperations.model.ArtistStore;
+import com.yamblz.hardoperations.perf.FrameTimings;
+
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
 
 import butterknife.BindView;
 import butterknife.ButterKnife;
 
-public class ArtistsListActivity extends AppCompatActivity implements LoaderManager.LoaderCallbacks<Artist[]>
+public class ArtistsListActivity extends AppCompatActivity
+        implements LoaderManager.LoaderCallbacks<ArtistCards>, ArtistsLoader.OnBatchLoadedListener
 {
 
     private static final int ARTISTS_LOADER_ID = 101;
 
+    private static final String STATE_GENRES = "genres";
+    private static final String STATE_MATCH_ALL_GENRES = "match_all_genres";
+    private static final String STATE_ORDER = "order";
+    private static final String STATE_SEARCH_QUERY = "search_query";
+
+    @BindView(R.id.toolbar)
+    Toolbar toolbar;
+
     @BindView(R.id.progress_bar)
     ProgressBar progressBar;
 
     @BindView(R.id.artists_recycler_view)
     RecyclerView recyclerView;
 
+    private LinearLayoutManager layoutManager;
+    private ArtistsAdapter adapter;
+    private ArtistsLoader artistsLoader;
+    private ArtistsPrefetcher prefetcher;
+    // Latest cards delivered by the loader, the adapter shows older ones until the diff with them is dispatched
+    private ArtistCards cards;
+
+    // Filter and order chosen by the user, applied once the index is built
+    private ArrayList<String> selectedGenres = new ArrayList<String>();
+    private boolean matchAllGenres;
+    private int order = ArtistIndex.ORDER_DEFAULT;
+    private String searchQuery = "";
+    // Session of the search index the query was typed against, null until the index is built
+    private ArtistSearchIndex.Search search;
+    private ArtistSearchIndex searchIndex;
+
+    private final Runnable scrollToTopAction = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            recyclerView.scrollToPosition(0);
+        }
+    };
+
     @Override
     protected void onCreate(Bundle savedInstanceState)
     {
@@ -34,34 +84,339 @@ public class ArtistsListActivity extends AppCompatActivity implements LoaderMana
         setContentView(R.layout.activity_artists_list);
 
         ButterKnife.bind(this);
+        setSupportActionBar(toolbar);
+
+        if (savedInstanceState != null)
+        {
+            selectedGenres = savedInstanceState.getStringArrayList(STATE_GENRES);
+            matchAllGenres = savedInstanceState.getBoolean(STATE_MATCH_ALL_GENRES);
+            order = savedInstanceState.getInt(STATE_ORDER);
+            searchQuery = savedInstanceState.getString(STATE_SEARCH_QUERY, "");
+        }
 
-        recyclerView.setLayoutManager(new LinearLayoutManager(this));
+        layoutManager = new LinearLayoutManager(this);
+        recyclerView.setLayoutManager(layoutManager);
         recyclerView.addItemDecoration(
                 new DividerItemDecoration(this, R.drawable.divider));
+        adapter = new ArtistsAdapter();
+        recyclerView.setAdapter(adapter);
+        recyclerView.addOnScrollListener(new FlingFidelityController(this, adapter));
+        prefetcher = new ArtistsPrefetcher(this, adapter, layoutManager);
+        recyclerView.addOnScrollListener(prefetcher);
 
         showProgress();
-        getSupportLoaderManager().initLoader(
+        Loader<ArtistCards> loader = getSupportLoaderManager().initLoader(
                 ARTISTS_LOADER_ID,
                 null,
-                this).forceLoad();
+                this);
+        artistsLoader = (ArtistsLoader) loader;
+        artistsLoader.setOnBatchLoadedListener(this);
+        loader.forceLoad();
+    }
+
+    @Override
+    protected void onSaveInstanceState(Bundle outState)
+    {
+        super.onSaveInstanceState(outState);
+        outState.putStringArrayList(STATE_GENRES, selectedGenres);
+        outState.putBoolean(STATE_MATCH_ALL_GENRES, matchAllGenres);
+        outState.putInt(STATE_ORDER, order);
+        outState.putString(STATE_SEARCH_QUERY, searchQuery);
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu)
+    {
+        getMenuInflater().inflate(R.menu.artists_list, menu);
+
+        MenuItem searchItem = menu.findItem(R.id.menu_search);
+        SearchView searchView = (SearchView) MenuItemCompat.getActionView(searchItem);
+        if (searchQuery.length() > 0)
+        {
+            MenuItemCompat.expandActionView(searchItem);
+            searchView.setQuery(searchQuery, false);
+        }
+        searchView.setOnQueryTextListener(new SearchView.OnQueryTextListener()
+        {
+            @Override
+            public boolean onQueryTextSubmit(String query)
+            {
+                return false;
+            }
+
+            @Override
+            public boolean onQueryTextChange(String newText)
+            {
+                setSearchQuery(newText);
+                return true;
+            }
+        });
+        return true;
     }
 
     @Override
-    public Loader<Artist[]> onCreateLoader(int id, Bundle args)
+    public boolean onPrepareOptionsMenu(Menu menu)
+    {
+        // Filtering needs the index that is built after the last batch
+        boolean indexReady = getIndex() != null;
+        menu.findItem(R.id.menu_search).setEnabled(indexReady);
+        menu.findItem(R.id.menu_genres).setEnabled(indexReady);
+        menu.findItem(R.id.menu_order_default).setEnabled(indexReady).setChecked(order == ArtistIndex.ORDER_DEFAULT);
+        menu.findItem(R.id.menu_order_tracks).setEnabled(indexReady).setChecked(order == ArtistIndex.ORDER_TRACKS);
+        menu.findItem(R.id.menu_order_albums).setEnabled(indexReady).setChecked(order == ArtistIndex.ORDER_ALBUMS);
+        return super.onPrepareOptionsMenu(menu);
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item)
+    {
+        switch (item.getItemId())
+        {
+            case R.id.menu_genres:
+                showGenresDialog();
+                return true;
+            case R.id.menu_order_default:
+                setOrder(ArtistIndex.ORDER_DEFAULT);
+                return true;
+            case R.id.menu_order_tracks:
+                setOrder(ArtistIndex.ORDER_TRACKS);
+                return true;
+            case R.id.menu_order_albums:
+                setOrder(ArtistIndex.ORDER_ALBUMS);
+                return true;
+            default:
+                return super.onOptionsItemSelected(item);
+        }
+    }
+
+    @Override
+    protected void onResume()
+    {
+        super.onResume();
+        if (FrameTimings.ENABLED)
+        {
+            FrameTimings.startFrameMonitoring();
+        }
+    }
+
+    @Override
+    protected void onPause()
+    {
+        if (FrameTimings.ENABLED)
+        {
+            FrameTimings.stopFrameMonitoring();
+        }
+        super.onPause();
+    }
+
+    /**
+     * {@code adb shell dumpsys activity com.yamblz.hardoperations} prints the frame timings
+     */
+    @Override
+    public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args)
+    {
+        super.dump(prefix, fd, writer, args);
+        if (FrameTimings.ENABLED)
+        {
+            FrameTimings.dump(prefix, writer);
+        }
+    }
+
+    @Override
+    protected void onDestroy()
+    {
+        artistsLoader.setOnBatchLoadedListener(null);
+        super.onDestroy();
+    }
+
+    @Override
+    public Loader<ArtistCards> onCreateLoader(int id, Bundle args)
     {
         return new ArtistsLoader(this);
     }
 
     @Override
-    public void onLoadFinished(Loader<Artist[]> loader, Artist[] data)
+    public void onLoadFinished(Loader<ArtistCards> loader, ArtistCards data)
+    {
+        // All batches of a streamed load are already delivered by now, cards of a reload replace
+        // the shown ones through a diff
+        cards = data;
+        applyFilter(false);
+        supportInvalidateOptionsMenu();
+        showContent();
+    }
+
+    @Override
+    public void onLoaderReset(Loader<ArtistCards> loader)
     {
-        showContent(data);
+
     }
 
     @Override
-    public void onLoaderReset(Loader<Artist[]> loader)
+    public void onBatchLoaded(@NonNull ArtistCards loaded, int from, int count)
+    {
+        if (adapter.getCards() == loaded)
+        {
+            adapter.notifyCardsAppended(from, count);
+            prefetcher.onCardsAppended(from, count);
+        }
+        else if (adapter.getCards() == null)
+        {
+            // First batch, or the activity was recreated in the middle of loading
+            cards = loaded;
+            adapter.setCards(loaded, from + count);
+        }
+        // Batches of a reload are not shown, the loaded cards stay until the reload is finished
+        showContent();
+    }
+
+    private ArtistIndex getIndex()
+    {
+        return cards != null ? cards.getIndex() : null;
+    }
+
+    private void setOrder(int order)
+    {
+        this.order = order;
+        supportInvalidateOptionsMenu();
+        applyFilter(true);
+    }
+
+    private void setSearchQuery(@NonNull String query)
+    {
+        if (query.equals(searchQuery))
+        {
+            return;
+        }
+        searchQuery = query;
+        applyFilter(true);
+    }
+
+    /**
+     * Rows matching the search query, null if there is nothing to search for.
+     * Typing goes through one search session, so every new char narrows the previous result.
+     */
+    private long[] searchRows(@NonNull ArtistCards cards)
+    {
+        ArtistSearchIndex index = cards.getSearchIndex();
+        if (index == null)
+        {
+            return null;
+        }
+        if (search == null || searchIndex != index)
+        {
+            searchIndex = index;
+            search = index.newSearch();
+        }
+        return search.update(searchQuery);
+    }
+
+    private void showGenresDialog()
+    {
+        if (cards == null)
+        {
+            return;
+        }
+        ArtistStore store = cards.getStore();
+        final String[] genres = new String[store.getGenreOrdinalsCount()];
+        final boolean[] checked = new boolean[genres.length];
+        for (int ordinal = 0; ordinal < genres.length; ordinal++)
+        {
+            genres[ordinal] = store.getGenreName(ordinal);
+            checked[ordinal] = selectedGenres.contains(genres[ordinal]);
+        }
+
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.genres_dialog_title)
+                .setMultiChoiceItems(genres, checked, new DialogInterface.OnMultiChoiceClickListener()
+                {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which, boolean isChecked)
+                    {
+                        checked[which] = isChecked;
+                    }
+                })
+                .setPositiveButton(R.string.genres_match_any, new DialogInterface.OnClickListener()
+                {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which)
+                    {
+                        setGenres(genres, checked, false);
+                    }
+                })
+                .setNeutralButton(R.string.genres_match_all, new DialogInterface.OnClickListener()
+                {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which)
+                    {
+                        setGenres(genres, checked, true);
+                    }
+                })
+                .setNegativeButton(R.string.genres_reset, new DialogInterface.OnClickListener()
+                {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which)
+                    {
+                        setGenres(genres, new boolean[genres.length], false);
+                    }
+                })
+                .show();
+    }
+
+    private void setGenres(@NonNull String[] genres, @NonNull boolean[] checked, boolean matchAll)
     {
+        selectedGenres.clear();
+        for (int i = 0; i < genres.length; i++)
+        {
+            if (checked[i])
+            {
+                selectedGenres.add(genres[i]);
+            }
+        }
+        matchAllGenres = matchAll;
+        applyFilter(true);
+    }
 
+    /**
+     * Maps adapter positions to the rows matching the search query and the chosen genres, in the chosen order.
+     *
+     * @param scrollToTop whether to scroll to the first card once it is shown
+     */
+    private void applyFilter(boolean scrollToTop)
+    {
+        ArtistIndex index = getIndex();
+        if (index == null)
+        {
+            return;
+        }
+
+        ArtistStore store = cards.getStore();
+        int[] genreOrdinals = new int[selectedGenres.size()];
+        int genresCount = 0;
+        for (int ordinal = 0; ordinal < store.getGenreOrdinalsCount(); ordinal++)
+        {
+            if (selectedGenres.contains(store.getGenreName(ordinal)))
+            {
+                genreOrdinals[genresCount++] = ordinal;
+            }
+        }
+
+        long[] searchRows = searchRows(cards);
+        int[] rows;
+        if (genresCount == 0 && order == ArtistIndex.ORDER_DEFAULT && searchRows == null)
+        {
+            rows = null;
+        }
+        else
+        {
+            int[] queryOrdinals = genresCount == genreOrdinals.length
+                    ? genreOrdinals
+                    : Arrays.copyOf(genreOrdinals, genresCount);
+            rows = index.query(queryOrdinals, matchAllGenres, order, searchRows);
+        }
+        int firstPosition = scrollToTop ? 0 : Math.max(0, layoutManager.findFirstVisibleItemPosition());
+        adapter.update(cards, rows, firstPosition, scrollToTop ? scrollToTopAction : null);
+        prefetcher.reset();
     }
 
     private void showProgress()
@@ -70,13 +425,9 @@ public class ArtistsListActivity extends AppCompatActivity implements LoaderMana
         recyclerView.setVisibility(View.GONE);
     }
 
-    private void showContent(Artist[] data)
+    private void showContent()
     {
         progressBar.setVisibility(View.GONE);
         recyclerView.setVisibility(View.VISIBLE);
-
-        ArtistsAdapter adapter = new ArtistsAdapter(data);
-        recyclerView.setAdapter(adapter);
-        adapter.notifyDataSetChanged();
     }
 }
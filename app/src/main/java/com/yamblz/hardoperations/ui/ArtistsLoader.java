@@ -1,27 +1,166 @@
 package com.yamblz.hardoperations.ui;
 
 import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import android.support.v4.content.AsyncTaskLoader;
 
 import com.yamblz.hardoperations.communication.Api;
 import com.yamblz.hardoperations.model.Artist;
+import com.yamblz.hardoperations.model.ArtistDescriptions;
+import com.yamblz.hardoperations.model.ArtistIndex;
+import com.yamblz.hardoperations.model.ArtistSearchIndex;
+import com.yamblz.hardoperations.model.ArtistStore;
+
+import java.util.List;
 
 /**
  * Created by i-sergeev on 06.07.16
  */
-public class ArtistsLoader extends AsyncTaskLoader<Artist[]>
+public class ArtistsLoader extends AsyncTaskLoader<ArtistCards>
 {
+    public interface OnBatchLoadedListener
+    {
+        /**
+         * Called on the main thread for every parsed batch before the final result is delivered.
+         *
+         * @param loaded cards of the load; the same object for all batches of a load.
+         *               Its store may already hold rows of batches not delivered yet
+         * @param from   position of the first card of the batch
+         * @param count  size of the batch
+         */
+        void onBatchLoaded(@NonNull ArtistCards loaded, int from, int count);
+    }
+
     private final Api api;
+    private final ArtistDescriptions.QuantityStrings quantityStrings;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    @Nullable
+    private OnBatchLoadedListener onBatchLoadedListener;
+    // Batches of a cancelled load may still be queued on the main thread, they are dropped by this
+    private volatile int loadGeneration;
 
     public ArtistsLoader(Context context)
+    {
+        this(context, new Api(context));
+    }
+
+    ArtistsLoader(Context context, Api api)
     {
         super(context);
-        api = new Api(context);
+        this.api = api;
+        api.setOnArtistsChangedListener(new Api.OnArtistsChangedListener()
+        {
+            @Override
+            public void onArtistsChanged()
+            {
+                onContentChanged();
+            }
+        });
+        // The loader outlives the activity, getContext() is the application context
+        quantityStrings = new ResourcesQuantityStrings(getContext().getResources());
+    }
+
+    public void setOnBatchLoadedListener(@Nullable OnBatchLoadedListener listener)
+    {
+        onBatchLoadedListener = listener;
+    }
+
+    @Override
+    protected void onForceLoad()
+    {
+        super.onForceLoad();
+        loadGeneration++;
     }
 
+    /**
+     * Artists are appended to the store here, in background, or the store of the snapshot is taken as it is.
+     * Models of the first screen of cards are built here too, the rest is built for the rows about to be shown.
+     * Filter and search indexes are built once all artists are stored.
+     */
     @Override
-    public Artist[] loadInBackground()
+    public ArtistCards loadInBackground()
+    {
+        LoadListener listener = new LoadListener(loadGeneration);
+        api.getArtists(listener);
+        ArtistCards cards = listener.cards;
+        ArtistStore store = cards.getStore();
+        store.trimToSize();
+        cards.setIndex(ArtistIndex.build(store));
+        cards.setSearchIndex(ArtistSearchIndex.build(store));
+        return cards;
+    }
+
+    private void publishBatch(int generation, @NonNull ArtistCards cards, int from, int count)
+    {
+        if (generation == loadGeneration && onBatchLoadedListener != null)
+        {
+            onBatchLoadedListener.onBatchLoaded(cards, from, count);
+        }
+    }
+
+    /**
+     * Appends batches to the cards of the load, a reset starts new cards: batches given out with the old ones
+     * stay on screen until the load is finished and its cards replace them. A snapshot comes with cards
+     * of its own that are given out in one batch.
+     */
+    private final class LoadListener implements Api.ArtistsListener
     {
-        return api.getArtists();
+        private final int generation;
+        @NonNull
+        ArtistCards cards = newCards();
+
+        LoadListener(int generation)
+        {
+            this.generation = generation;
+        }
+
+        @NonNull
+        private ArtistCards newCards()
+        {
+            return new ArtistCards(new ArtistStore(), quantityStrings);
+        }
+
+        @Override
+        public void onBatchParsed(@NonNull List<Artist> batch)
+        {
+            ArtistStore store = cards.getStore();
+            int from = store.size();
+            store.addAll(batch);
+            onStored(cards, from, batch.size());
+        }
+
+        @Override
+        public void onArtistsReset()
+        {
+            cards = newCards();
+        }
+
+        @Override
+        public void onSnapshotLoaded(@NonNull ArtistStore store)
+        {
+            cards = new ArtistCards(store, quantityStrings);
+            onStored(cards, 0, store.size());
+        }
+
+        private void onStored(@NonNull final ArtistCards batchCards, final int from, final int count)
+        {
+            if (from < ArtistCards.FIRST_SCREEN_CARDS)
+            {
+                batchCards.prebuild(null, from, Math.min(count, ArtistCards.FIRST_SCREEN_CARDS - from));
+            }
+
+            mainHandler.post(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    publishBatch(generation, batchCards, from, count);
+                }
+            });
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,211 @@
+package com.yamblz.hardoperations.ui;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.NonNull;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+
+import com.squareup.picasso.Picasso;
+import com.squareup.picasso.Target;
+import com.yamblz.hardoperations.model.ArtistStore;
+import com.yamblz.hardoperations.model.Cover;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Warms posters, palettes, card models and text layouts of the cards the list is scrolling to.
+ * The faster the scroll, the more cards ahead are prefetched; posters are loaded through
+ * {@link PosterScheduler}, which is told the visible positions and loads the nearest ones first.
+ * When the scroll direction reverses all prefetches in flight are cancelled.
+ * <p>
+ * Must be added after {@link FlingFidelityController}, posters are not prefetched in low fidelity.
+ */
+public class ArtistsPrefetcher extends RecyclerView.OnScrollListener
+{
+    private static final int MIN_PREFETCH_AHEAD = 1;
+    private static final int MAX_PREFETCH_AHEAD = 8;
+    // Scroll speed in px per scroll event that adds one more card to prefetch
+    private static final int PX_PER_EXTRA_CARD = 40;
+
+    @NonNull
+    private final ArtistsAdapter adapter;
+    @NonNull
+    private final LinearLayoutManager layoutManager;
+    @NonNull
+    private final Resources resources;
+    @NonNull
+    private final PosterScheduler posterScheduler;
+    @NonNull
+    private final CardColorsCache cardColorsCache;
+    @NonNull
+    private final TextPreLayouter textPreLayouter;
+
+    private final int[] rowsAhead = new int[MAX_PREFETCH_AHEAD];
+    private final List<PrefetchTarget> inFlight = new ArrayList<PrefetchTarget>(MAX_PREFETCH_AHEAD);
+    private int direction;
+    private float velocity;
+    // Farthest position prefetched in the current direction
+    private int prefetchedUpTo = RecyclerView.NO_POSITION;
+
+    public ArtistsPrefetcher(@NonNull Context context,
+                             @NonNull ArtistsAdapter adapter,
+                             @NonNull LinearLayoutManager layoutManager)
+    {
+        this.adapter = adapter;
+        this.layoutManager = layoutManager;
+        resources = context.getResources();
+        posterScheduler = PosterScheduler.with(context);
+        cardColorsCache = CardColorsCache.with(context);
+        textPreLayouter = TextPreLayouter.with(context);
+    }
+
+    @Override
+    public void onScrolled(RecyclerView recyclerView, int dx, int dy)
+    {
+        if (dy == 0)
+        {
+            return;
+        }
+
+        int newDirection = dy > 0 ? 1 : -1;
+        if (newDirection != direction)
+        {
+            cancelAll();
+            direction = newDirection;
+            velocity = 0;
+        }
+        velocity = (velocity + Math.abs(dy)) / 2;
+
+        int firstVisible = layoutManager.findFirstVisibleItemPosition();
+        int lastVisible = layoutManager.findLastVisibleItemPosition();
+        if (firstVisible == RecyclerView.NO_POSITION)
+        {
+            return;
+        }
+        posterScheduler.setViewport(firstVisible, lastVisible);
+        int edgePosition = direction > 0 ? lastVisible : firstVisible;
+
+        int ahead = Math.min(MAX_PREFETCH_AHEAD, MIN_PREFETCH_AHEAD + (int) (velocity / PX_PER_EXTRA_CARD));
+        prefetch(edgePosition, ahead, recyclerView.getWidth());
+    }
+
+    private void prefetch(int edgePosition, int ahead, int cardWidth)
+    {
+        ArtistCards cards = adapter.getCards();
+        if (cards == null)
+        {
+            return;
+        }
+        ArtistStore store = cards.getStore();
+        int aheadCount = 0;
+
+        for (int i = 1; i <= ahead; i++)
+        {
+            int position = edgePosition + direction * i;
+            if (position < 0 || position >= adapter.getItemCount())
+            {
+                break;
+            }
+            int row = adapter.getRow(position);
+            rowsAhead[aheadCount++] = row;
+
+            boolean alreadyPrefetched = prefetchedUpTo != RecyclerView.NO_POSITION
+                    && (position - prefetchedUpTo) * direction <= 0;
+            Cover cover = store.getCover(row);
+            // Posters are not loaded during a fling, the prefetch continues from here once it slows down
+            if (!alreadyPrefetched && cover != null && !adapter.isLowFidelity())
+            {
+                PrefetchTarget target = new PrefetchTarget(Long.toString(store.getId(row)));
+                inFlight.add(target);
+                prefetchedUpTo = position;
+                posterScheduler.load(ArtistView.createPosterUri(resources, cover, cardWidth), target, position);
+            }
+        }
+
+        textPreLayouter.preLayout(cards, rowsAhead, aheadCount);
+    }
+
+    /**
+     * Pre-lays out the first appended cards if the list is scrolled close to its end. Cards past the viewport
+     * are bound only once the user scrolls to them, the models and layouts are ready by then.
+     */
+    public void onCardsAppended(int from, int count)
+    {
+        ArtistCards cards = adapter.getCards();
+        int lastVisible = layoutManager.findLastVisibleItemPosition();
+        if (cards == null || lastVisible == RecyclerView.NO_POSITION || from > lastVisible + MAX_PREFETCH_AHEAD)
+        {
+            return;
+        }
+        int aheadCount = Math.min(count, MAX_PREFETCH_AHEAD);
+        for (int i = 0; i < aheadCount; i++)
+        {
+            rowsAhead[i] = adapter.getRow(from + i);
+        }
+        textPreLayouter.preLayout(cards, rowsAhead, aheadCount);
+    }
+
+    /**
+     * Forgets the prefetch progress, to be called when the cards at adapter positions change.
+     */
+    public void reset()
+    {
+        cancelAll();
+        direction = 0;
+        velocity = 0;
+    }
+
+    private void cancelAll()
+    {
+        // Cancelling may start other loads and drop far ones, whose targets remove themselves from the list
+        List<PrefetchTarget> targets = new ArrayList<PrefetchTarget>(inFlight);
+        inFlight.clear();
+        for (PrefetchTarget target : targets)
+        {
+            posterScheduler.cancel(target);
+        }
+        prefetchedUpTo = RecyclerView.NO_POSITION;
+    }
+
+    private final class PrefetchTarget implements Target
+    {
+        @NonNull
+        private final String artistId;
+
+        PrefetchTarget(@NonNull String artistId)
+        {
+            this.artistId = artistId;
+        }
+
+        @Override
+        public void onBitmapLoaded(Bitmap bitmap, Picasso.LoadedFrom from)
+        {
+            inFlight.remove(this);
+            cardColorsCache.extract(artistId, bitmap, NO_OP_LISTENER);
+        }
+
+        @Override
+        public void onBitmapFailed(Drawable errorDrawable)
+        {
+            inFlight.remove(this);
+        }
+
+        @Override
+        public void onPrepareLoad(Drawable placeHolderDrawable)
+        {
+        }
+    }
+
+    private static final CardColorsCache.OnColorsReadyListener NO_OP_LISTENER =
+            new CardColorsCache.OnColorsReadyListener()
+            {
+                @Override
+                public void onColorsReady(@NonNull String artistId, @NonNull CardColors colors)
+                {
+                }
+            };
+}
@@ -0,0 +1,45 @@
+package com.yamblz.hardoperations.ui;
+
+import android.support.annotation.NonNull;
+import android.support.v7.graphics.Palette;
+
+/**
+ * Colors of an artist card taken from the palette of its poster.
+ */
+public final class CardColors
+{
+    private final int backgroundColor;
+    private final int titleColor;
+    private final int textColor;
+
+    public CardColors(int backgroundColor, int titleColor, int textColor)
+    {
+        this.backgroundColor = backgroundColor;
+        this.titleColor = titleColor;
+        this.textColor = textColor;
+    }
+
+    @NonNull
+    public static CardColors fromPalette(@NonNull Palette palette, int defaultBackgroundColor, int defaultTextColor)
+    {
+        int textColor = palette.getDarkMutedColor(defaultTextColor);
+        return new CardColors(palette.getLightVibrantColor(defaultBackgroundColor),
+                              palette.getDarkMutedColor(textColor),
+                              textColor);
+    }
+
+    public int getBackgroundColor()
+    {
+        return backgroundColor;
+    }
+
+    public int getTitleColor()
+    {
+        return titleColor;
+    }
+
+    public int getTextColor()
+    {
+        return textColor;
+    }
+}
@@ -0,0 +1,507 @@
+package com.yamblz.hardoperations.ui;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.annotation.WorkerThread;
+import android.support.v7.graphics.Palette;
+import android.support.v4.util.LruCache;
+
+import com.yamblz.hardoperations.R;
+import com.yamblz.hardoperations.utils.BackgroundThreadFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Card colors by artist id. Palettes are generated once per cover on a background thread
+ * from a downscaled copy of the poster, results are kept in a LRU and, optionally, on disk.
+ * <p>
+ * The disk file is a log of records appended as colors are generated. Only an index of the records,
+ * artist id to offset in the file, is kept in memory; it is a LRU bounded by the number of artists,
+ * and the file is rewritten with the records of the index once most of its records are evicted ones.
+ * Records are read from the file on the background thread when colors are asked for by
+ * {@link #extract(String, Bitmap, OnColorsReadyListener)}.
+ */
+public class CardColorsCache implements MemoryBudget.Trimmable
+{
+    private static final int PALETTE_BITMAP_SIZE = 100;
+    private static final String DISK_CACHE_FILE_NAME = "card_colors";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int MAX_DISK_ENTRIES = 4096;
+    // The file is compacted once it holds this many records per entry of the index
+    private static final int MAX_RECORDS_PER_ENTRY = 2;
+    // Background, title and text colors follow the id of a record
+    private static final int COLORS_BYTES = 3 * 4;
+
+    public interface OnColorsReadyListener
+    {
+        @MainThread
+        void onColorsReady(@NonNull String artistId, @NonNull CardColors colors);
+    }
+
+    private static CardColorsCache instance;
+
+    private final int defaultBackgroundColor;
+    private final int defaultTextColor;
+    @Nullable
+    private final File diskCacheFile;
+
+    private final LruCache<String, CardColors> memoryCache;
+    private final int maxDiskEntries;
+    // Artist id to offset of its record in the disk file, in access order. Accessed on the executor only,
+    // read from the file when first needed
+    private final LinkedHashMap<String, Integer> diskIndex = new LinkedHashMap<String, Integer>(64, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest)
+        {
+            return size() > maxDiskEntries;
+        }
+    };
+    private boolean diskIndexRead;
+    // Records in the disk file, the ones of the index and the evicted or replaced ones
+    private int diskRecordsCount;
+    // Accessed on the main thread only
+    private final Map<String, List<OnColorsReadyListener>> pendingListeners =
+            new HashMap<String, List<OnColorsReadyListener>>();
+
+    private final ExecutorService executor =
+            Executors.newSingleThreadExecutor(new BackgroundThreadFactory("palette"));
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    @NonNull
+    public static synchronized CardColorsCache with(@NonNull Context context)
+    {
+        if (instance == null)
+        {
+            Context appContext = context.getApplicationContext();
+            MemoryBudget memoryBudget = MemoryBudget.with(appContext);
+            instance = new CardColorsCache(appContext.getResources(),
+                                           memoryBudget.getPaletteCacheSize(),
+                                           new File(appContext.getCacheDir(), DISK_CACHE_FILE_NAME),
+                                           MAX_DISK_ENTRIES);
+            memoryBudget.register(instance);
+        }
+        return instance;
+    }
+
+    /**
+     * @param memoryCacheSize number of artists to keep colors of in memory
+     * @param diskCacheFile   file to persist colors to, null to keep them in memory only
+     * @param maxDiskEntries  number of artists to keep colors of in the file
+     */
+    public CardColorsCache(@NonNull Resources resources,
+                           int memoryCacheSize,
+                           @Nullable File diskCacheFile,
+                           int maxDiskEntries)
+    {
+        memoryCache = new LruCache<String, CardColors>(memoryCacheSize);
+        //noinspection deprecation
+        defaultBackgroundColor = resources.getColor(R.color.default_background_color);
+        //noinspection deprecation
+        defaultTextColor = resources.getColor(R.color.default_text_color);
+        this.diskCacheFile = diskCacheFile;
+        this.maxDiskEntries = maxDiskEntries;
+    }
+
+    /**
+     * @return colors kept in memory; colors on disk are read in background by
+     * {@link #extract(String, Bitmap, OnColorsReadyListener)}
+     */
+    @Nullable
+    public CardColors get(@NonNull String artistId)
+    {
+        return memoryCache.get(artistId);
+    }
+
+    /**
+     * Reads colors from disk or generates them for the poster in background unless they are in memory.
+     * The listener is called on the main thread; several requests for one artist share a single generation.
+     */
+    @MainThread
+    public void extract(@NonNull final String artistId,
+                        @NonNull final Bitmap poster,
+                        @NonNull OnColorsReadyListener listener)
+    {
+        CardColors colors = get(artistId);
+        if (colors != null)
+        {
+            listener.onColorsReady(artistId, colors);
+            return;
+        }
+
+        List<OnColorsReadyListener> listeners = pendingListeners.get(artistId);
+        if (listeners != null)
+        {
+            listeners.add(listener);
+            return;
+        }
+        listeners = new ArrayList<OnColorsReadyListener>();
+        listeners.add(listener);
+        pendingListeners.put(artistId, listeners);
+
+        executor.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                final CardColors colors = readOrGenerateColors(artistId, poster);
+                mainHandler.post(new Runnable()
+                {
+                    @Override
+                    public void run()
+                    {
+                        List<OnColorsReadyListener> listeners = pendingListeners.remove(artistId);
+                        for (OnColorsReadyListener listener : listeners)
+                        {
+                            listener.onColorsReady(artistId, colors);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    @NonNull
+    @WorkerThread
+    private CardColors readOrGenerateColors(@NonNull String artistId, @NonNull Bitmap poster)
+    {
+        CardColors colors = readFromDisk(artistId);
+        if (colors == null)
+        {
+            colors = generateColors(poster);
+            writeToDisk(artistId, colors);
+        }
+        memoryCache.put(artistId, colors);
+        return colors;
+    }
+
+    @NonNull
+    private CardColors generateColors(@NonNull Bitmap poster)
+    {
+        Bitmap bitmap = poster;
+        int maxSide = Math.max(poster.getWidth(), poster.getHeight());
+        if (maxSide > PALETTE_BITMAP_SIZE)
+        {
+            float scale = (float) PALETTE_BITMAP_SIZE / maxSide;
+            bitmap = Bitmap.createScaledBitmap(poster,
+                                               Math.max(1, Math.round(poster.getWidth() * scale)),
+                                               Math.max(1, Math.round(poster.getHeight() * scale)),
+                                               false);
+        }
+
+        Palette palette = Palette.from(bitmap).generate();
+        if (bitmap != poster)
+        {
+            bitmap.recycle();
+        }
+        return CardColors.fromPalette(palette, defaultBackgroundColor, defaultTextColor);
+    }
+
+    void put(@NonNull final String artistId, @NonNull final CardColors colors)
+    {
+        memoryCache.put(artistId, colors);
+        if (diskCacheFile != null)
+        {
+            executor.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    writeToDisk(artistId, colors);
+                }
+            });
+        }
+    }
+
+    /**
+     * Trims the memory LRU, trimming to 0 drops the index of the disk file too, it is read again when needed.
+     */
+    @Override
+    public void trimToFraction(float fraction)
+    {
+        memoryCache.trimToSize((int) (memoryCache.maxSize() * fraction));
+        if (fraction == 0 && diskCacheFile != null)
+        {
+            executor.execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    diskIndex.clear();
+                    diskIndexRead = false;
+                }
+            });
+        }
+    }
+
+    int getMemoryCacheSize()
+    {
+        return memoryCache.size();
+    }
+
+    /**
+     * @return number of entries of the disk index in memory, once the work queued before is done
+     */
+    int getDiskIndexSize() throws InterruptedException, ExecutionException
+    {
+        return executor.submit(new Callable<Integer>()
+        {
+            @Override
+            public Integer call()
+            {
+                return diskIndex.size();
+            }
+        }).get();
+    }
+
+    @Nullable
+    @WorkerThread
+    private CardColors readFromDisk(@NonNull String artistId)
+    {
+        if (diskCacheFile == null)
+        {
+            return null;
+        }
+        readDiskIndex();
+        Integer offset = diskIndex.get(artistId);
+        if (offset == null)
+        {
+            return null;
+        }
+        RandomAccessFile file = null;
+        try
+        {
+            file = new RandomAccessFile(diskCacheFile, "r");
+            file.seek(offset);
+            if (file.readUTF().equals(artistId))
+            {
+                return new CardColors(file.readInt(), file.readInt(), file.readInt());
+            }
+        }
+        catch (IOException ignored)
+        {
+            // The system cleared the cache dir, the colors are generated again
+        }
+        finally
+        {
+            closeQuietly(file);
+        }
+        diskIndex.remove(artistId);
+        return null;
+    }
+
+    @WorkerThread
+    private void readDiskIndex()
+    {
+        if (diskIndexRead || diskCacheFile == null)
+        {
+            return;
+        }
+        diskIndexRead = true;
+        diskIndex.clear();
+        diskRecordsCount = 0;
+        if (!diskCacheFile.isFile())
+        {
+            return;
+        }
+        long length = diskCacheFile.length();
+        int offset = 0;
+        DataInputStream in = null;
+        try
+        {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(diskCacheFile)));
+            byte[] colors = new byte[COLORS_BYTES];
+            while (offset < length)
+            {
+                String artistId = in.readUTF();
+                in.readFully(colors);
+                diskIndex.put(artistId, offset);
+                diskRecordsCount++;
+                offset += recordLength(artistId);
+            }
+        }
+        catch (IOException e)
+        {
+            // Broken tail of the file, everything read before it is still valid
+            closeQuietly(in);
+            in = null;
+            truncate(diskCacheFile, offset);
+        }
+        finally
+        {
+            closeQuietly(in);
+        }
+    }
+
+    @WorkerThread
+    private void writeToDisk(@NonNull String artistId, @NonNull CardColors colors)
+    {
+        if (diskCacheFile == null)
+        {
+            return;
+        }
+        readDiskIndex();
+        if (!diskCacheFile.exists())
+        {
+            // The system cleared the cache dir
+            diskIndex.clear();
+            diskRecordsCount = 0;
+        }
+        int offset = (int) diskCacheFile.length();
+        DataOutputStream out = null;
+        try
+        {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(diskCacheFile, true)));
+            writeRecord(out, artistId, colors);
+            out.close();
+            out = null;
+            diskIndex.put(artistId, offset);
+            diskRecordsCount++;
+        }
+        catch (IOException ignored)
+        {
+            // Colors will be generated again on the next launch
+            truncate(diskCacheFile, offset);
+        }
+        finally
+        {
+            closeQuietly(out);
+        }
+
+        if (diskRecordsCount > diskIndex.size() * MAX_RECORDS_PER_ENTRY)
+        {
+            compactDiskFile();
+        }
+    }
+
+    /**
+     * Rewrites the file with the records of the index only, in the order of the index.
+     */
+    @WorkerThread
+    private void compactDiskFile()
+    {
+        File tempFile = new File(diskCacheFile.getPath() + TEMP_SUFFIX);
+        LinkedHashMap<String, Integer> compacted = new LinkedHashMap<String, Integer>(diskIndex.size() * 2);
+        RandomAccessFile in = null;
+        DataOutputStream out = null;
+        try
+        {
+            in = new RandomAccessFile(diskCacheFile, "r");
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            for (Map.Entry<String, Integer> entry : diskIndex.entrySet())
+            {
+                in.seek(entry.getValue());
+                String artistId = in.readUTF();
+                CardColors colors = new CardColors(in.readInt(), in.readInt(), in.readInt());
+                if (artistId.equals(entry.getKey()))
+                {
+                    compacted.put(artistId, out.size());
+                    writeRecord(out, artistId, colors);
+                }
+            }
+            out.close();
+            out = null;
+            if (!tempFile.renameTo(diskCacheFile))
+            {
+                throw new IOException("Can't move " + tempFile);
+            }
+        }
+        catch (IOException e)
+        {
+            // The file stays as it is, a later append tries again
+            //noinspection ResultOfMethodCallIgnored
+            tempFile.delete();
+            return;
+        }
+        finally
+        {
+            closeQuietly(in);
+            closeQuietly(out);
+        }
+        // Inserted in access order, so the order of the LRU stays
+        diskIndex.clear();
+        diskIndex.putAll(compacted);
+        diskRecordsCount = compacted.size();
+    }
+
+    private static void writeRecord(@NonNull DataOutputStream out,
+                                    @NonNull String artistId,
+                                    @NonNull CardColors colors) throws IOException
+    {
+        out.writeUTF(artistId);
+        out.writeInt(colors.getBackgroundColor());
+        out.writeInt(colors.getTitleColor());
+        out.writeInt(colors.getTextColor());
+    }
+
+    /**
+     * @return bytes of the record, {@link DataOutputStream#writeUTF(String)} writes the length and modified UTF-8
+     */
+    private static int recordLength(@NonNull String artistId)
+    {
+        int length = 2;
+        for (int i = 0; i < artistId.length(); i++)
+        {
+            char c = artistId.charAt(i);
+            length += c >= 0x0001 && c <= 0x007f ? 1 : (c <= 0x07ff ? 2 : 3);
+        }
+        return length + COLORS_BYTES;
+    }
+
+    private static void truncate(@NonNull File file, long length)
+    {
+        RandomAccessFile randomAccessFile = null;
+        try
+        {
+            randomAccessFile = new RandomAccessFile(file, "rw");
+            randomAccessFile.setLength(length);
+        }
+        catch (IOException ignored)
+        {
+            // Records after the length are skipped as broken on the next read
+        }
+        finally
+        {
+            closeQuietly(randomAccessFile);
+        }
+    }
+
+    private static void closeQuietly(@Nullable Closeable closeable)
+    {
+        if (closeable == null)
+        {
+            return;
+        }
+        try
+        {
+            closeable.close();
+        }
+        catch (IOException ignored)
+        {
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.yamblz.hardoperations.ui;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.support.v4.util.LruCache;
+
+import com.yamblz.hardoperations.BuildConfig;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finished artist cards rasterized into bitmaps, keyed by artist id and card width, so drawing
+ * or rebinding a card is a single bitmap draw. A card is finished once its poster and colors are known.
+ * <p>
+ * Optional, off unless the app is built with {@code -PcardSnapshots}: a snapshot is a full-card bitmap,
+ * only a few fit into the budget. Cards bigger than {@link #fits(int, int)} allows are never snapshotted.
+ * <p>
+ * One snapshot per artist is kept: a snapshot of another width replaces it. Snapshots are evicted
+ * least recently used first when their total size in bytes exceeds the budget. Evicted snapshots that
+ * no card draws anymore are reused by {@link #obtain(int, int)} for new snapshots of the same size.
+ */
+@MainThread
+public class CardSnapshotCache implements MemoryBudget.Trimmable
+{
+    public static final boolean ENABLED = BuildConfig.CARD_SNAPSHOTS;
+
+    // The smallest max texture size of Android GPUs, bigger bitmaps can't be drawn hardware accelerated
+    private static final int MAX_SNAPSHOT_SIDE = 2048;
+    // At least this many snapshots fit into the budget, bigger cards are not snapshotted
+    private static final int MIN_SNAPSHOTS = 8;
+    private static final int MAX_REUSABLE = 2;
+
+    private static CardSnapshotCache instance;
+
+    private final LruCache<String, Bitmap> snapshots;
+    // Cards draw a snapshot from a display list until they draw again, it is reused only after they stop
+    private final Map<Bitmap, Integer> drawCounts = new IdentityHashMap<Bitmap, Integer>();
+    private final Map<Bitmap, Boolean> removedButDrawn = new IdentityHashMap<Bitmap, Boolean>();
+    private final List<Bitmap> reusable = new ArrayList<Bitmap>(MAX_REUSABLE);
+
+    @NonNull
+    public static synchronized CardSnapshotCache with(@NonNull Context context)
+    {
+        if (instance == null)
+        {
+            MemoryBudget memoryBudget = MemoryBudget.with(context);
+            instance = new CardSnapshotCache(memoryBudget.getSnapshotCacheBytes());
+            memoryBudget.register(instance);
+        }
+        return instance;
+    }
+
+    CardSnapshotCache(int maxBytes)
+    {
+        snapshots = new LruCache<String, Bitmap>(maxBytes)
+        {
+            @Override
+            protected int sizeOf(String artistId, Bitmap snapshot)
+            {
+                return snapshot.getRowBytes() * snapshot.getHeight();
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, String artistId, Bitmap oldValue, Bitmap newValue)
+            {
+                if (oldValue != newValue)
+                {
+                    onRemoved(oldValue);
+                }
+            }
+        };
+    }
+
+    /**
+     * @return whether a card of the size may be snapshotted
+     */
+    public boolean fits(int width, int height)
+    {
+        return width > 0 && height > 0 && width <= MAX_SNAPSHOT_SIDE && height <= MAX_SNAPSHOT_SIDE
+                && (long) width * height * 4 <= snapshots.maxSize() / MIN_SNAPSHOTS;
+    }
+
+    /**
+     * @return snapshot of the card of the width or null, a snapshot of another width is dropped
+     */
+    @Nullable
+    public Bitmap get(@NonNull String artistId, int width)
+    {
+        Bitmap snapshot = snapshots.get(artistId);
+        if (snapshot != null && snapshot.getWidth() != width)
+        {
+            snapshots.remove(artistId);
+            return null;
+        }
+        return snapshot;
+    }
+
+    /**
+     * @return a cleared bitmap for a new snapshot, one no card draws anymore if there is one of the size
+     */
+    @NonNull
+    public Bitmap obtain(int width, int height)
+    {
+        for (int i = 0; i < reusable.size(); i++)
+        {
+            Bitmap bitmap = reusable.get(i);
+            if (bitmap.getWidth() == width && bitmap.getHeight() == height)
+            {
+                reusable.remove(i);
+                bitmap.eraseColor(Color.TRANSPARENT);
+                return bitmap;
+            }
+        }
+        return Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+    }
+
+    public void put(@NonNull String artistId, @NonNull Bitmap snapshot)
+    {
+        snapshots.put(artistId, snapshot);
+    }
+
+    /**
+     * Tells that a card started or stopped drawing a snapshot, each {@code drawn} is null for no snapshot.
+     */
+    public void onDrawnChanged(@Nullable Bitmap previous, @Nullable Bitmap drawn)
+    {
+        if (previous == drawn)
+        {
+            return;
+        }
+        if (drawn != null)
+        {
+            Integer count = drawCounts.get(drawn);
+            drawCounts.put(drawn, count != null ? count + 1 : 1);
+        }
+        if (previous != null)
+        {
+            Integer count = drawCounts.remove(previous);
+            if (count != null && count > 1)
+            {
+                drawCounts.put(previous, count - 1);
+            }
+            else if (removedButDrawn.remove(previous) != null)
+            {
+                addReusable(previous);
+            }
+        }
+    }
+
+    private void onRemoved(@NonNull Bitmap snapshot)
+    {
+        if (drawCounts.containsKey(snapshot))
+        {
+            removedButDrawn.put(snapshot, Boolean.TRUE);
+        }
+        else
+        {
+            addReusable(snapshot);
+        }
+    }
+
+    private void addReusable(@NonNull Bitmap bitmap)
+    {
+        if (reusable.size() == MAX_REUSABLE)
+        {
+            reusable.remove(0);
+        }
+        reusable.add(bitmap);
+    }
+
+    /**
+     * Drops the snapshot of the card, to be called when anything drawn on the card changes.
+     */
+    public void invalidate(@NonNull String artistId)
+    {
+        snapshots.remove(artistId);
+    }
+
+    public void clear()
+    {
+        snapshots.evictAll();
+        reusable.clear();
+    }
+
+    @Override
+    public void trimToFraction(float fraction)
+    {
+        snapshots.trimToSize((int) (snapshots.maxSize() * fraction));
+        if (fraction < 1)
+        {
+            reusable.clear();
+        }
+    }
+
+    int getSizeBytes()
+    {
+        return snapshots.size();
+    }
+}
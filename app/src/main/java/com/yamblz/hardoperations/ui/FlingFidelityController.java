@@ -0,0 +1,76 @@
+package com.yamblz.hardoperations.ui;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+import android.support.v7.widget.RecyclerView;
+
+/**
+ * Switches the list to low fidelity while it is flung fast: cards are bound with the title only,
+ * a placeholder poster and the colors at hand, no poster is loaded and no palette extracted for cards
+ * that are on screen for a few frames. When the fling slows down, settles or is caught by a touch,
+ * cards on screen are upgraded to full fidelity.
+ */
+public class FlingFidelityController extends RecyclerView.OnScrollListener
+{
+    // Scroll per frame that starts low fidelity, about 2400dp per second at 60 fps
+    private static final int ENTER_DP_PER_SCROLL = 40;
+    // Lower than the enter speed, so that a fling near the threshold doesn't flip back and forth
+    private static final int EXIT_DP_PER_SCROLL = 15;
+
+    @NonNull
+    private final ArtistsAdapter adapter;
+    private final int enterPx;
+    private final int exitPx;
+
+    public FlingFidelityController(@NonNull Context context, @NonNull ArtistsAdapter adapter)
+    {
+        this.adapter = adapter;
+        float density = context.getResources().getDisplayMetrics().density;
+        enterPx = Math.round(ENTER_DP_PER_SCROLL * density);
+        exitPx = Math.round(EXIT_DP_PER_SCROLL * density);
+    }
+
+    @Override
+    public void onScrollStateChanged(RecyclerView recyclerView, int newState)
+    {
+        if (newState != RecyclerView.SCROLL_STATE_SETTLING)
+        {
+            showFullFidelity(recyclerView);
+        }
+    }
+
+    @Override
+    public void onScrolled(RecyclerView recyclerView, int dx, int dy)
+    {
+        if (recyclerView.getScrollState() != RecyclerView.SCROLL_STATE_SETTLING)
+        {
+            return;
+        }
+        int speed = Math.abs(dy);
+        if (!adapter.isLowFidelity() && speed >= enterPx)
+        {
+            adapter.setLowFidelity(true);
+        }
+        else if (adapter.isLowFidelity() && speed < exitPx)
+        {
+            showFullFidelity(recyclerView);
+        }
+    }
+
+    private void showFullFidelity(@NonNull RecyclerView recyclerView)
+    {
+        if (!adapter.isLowFidelity())
+        {
+            return;
+        }
+        adapter.setLowFidelity(false);
+        for (int i = 0; i < recyclerView.getChildCount(); i++)
+        {
+            RecyclerView.ViewHolder holder = recyclerView.getChildViewHolder(recyclerView.getChildAt(i));
+            if (holder instanceof ArtistsAdapter.ArtistVH)
+            {
+                ((ArtistsAdapter.ArtistVH) holder).artistView.showFullFidelity();
+            }
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.yamblz.hardoperations.ui;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.support.annotation.NonNull;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Sizes the memory caches of the app from the memory class of the device and trims them
+ * when the system is short of memory. Caches register themselves with {@link #register(Trimmable)}.
+ * <p>
+ * On low-RAM devices image budgets are halved and posters, which are opaque, are decoded as RGB_565.
+ */
+public class MemoryBudget implements ComponentCallbacks2
+{
+    private static final int BYTES_IN_MB = 1024 * 1024;
+    // Parts of the memory class given to decoded posters and to card snapshots
+    private static final int POSTERS_FRACTION = 7;
+    private static final int SNAPSHOTS_FRACTION = 8;
+    // Part of the memory class a feed read whole into chars may take
+    private static final int PARSE_BUFFER_FRACTION = 8;
+    private static final int PALETTES_PER_MB = 8;
+    private static final int MIN_PALETTES = 128;
+    private static final int MAX_PALETTES = 1024;
+    private static final int MB_PER_LAYOUT = 2;
+    private static final int MIN_LAYOUTS = 32;
+    private static final int MAX_LAYOUTS = 128;
+
+    public interface Trimmable
+    {
+        /**
+         * @param fraction part of the max size to keep, 0 to clear the cache
+         */
+        void trimToFraction(float fraction);
+    }
+
+    private static MemoryBudget instance;
+    private static Context registeredContext;
+
+    private final int memoryClass;
+    private final boolean lowRamDevice;
+    private final List<Trimmable> caches = new CopyOnWriteArrayList<Trimmable>();
+
+    @NonNull
+    public static synchronized MemoryBudget with(@NonNull Context context)
+    {
+        Context appContext = context.getApplicationContext();
+        if (instance == null)
+        {
+            ActivityManager activityManager = (ActivityManager) appContext.getSystemService(Context.ACTIVITY_SERVICE);
+            boolean lowRamDevice = Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT
+                    && activityManager.isLowRamDevice();
+            instance = new MemoryBudget(activityManager.getMemoryClass(), lowRamDevice);
+        }
+        if (registeredContext != appContext)
+        {
+            // The same application for the whole process, except for unit tests that create one per test
+            appContext.registerComponentCallbacks(instance);
+            registeredContext = appContext;
+        }
+        return instance;
+    }
+
+    /**
+     * @param memoryClass memory class in megabytes, see {@link ActivityManager#getMemoryClass()}
+     */
+    MemoryBudget(int memoryClass, boolean lowRamDevice)
+    {
+        this.memoryClass = memoryClass;
+        this.lowRamDevice = lowRamDevice;
+    }
+
+    public int getPosterCacheBytes()
+    {
+        return imageBudget(POSTERS_FRACTION);
+    }
+
+    public int getSnapshotCacheBytes()
+    {
+        return imageBudget(SNAPSHOTS_FRACTION);
+    }
+
+    private int imageBudget(int fraction)
+    {
+        int bytes = memoryClass * BYTES_IN_MB / fraction;
+        return lowRamDevice ? bytes / 2 : bytes;
+    }
+
+    /**
+     * @return bytes a feed may take as chars to be parsed in parallel, larger feeds are streamed
+     */
+    public int getParseBufferBytes()
+    {
+        int bytes = memoryClass * BYTES_IN_MB / PARSE_BUFFER_FRACTION;
+        return lowRamDevice ? bytes / 2 : bytes;
+    }
+
+    public int getPaletteCacheSize()
+    {
+        return clamp(memoryClass * PALETTES_PER_MB, MIN_PALETTES, MAX_PALETTES);
+    }
+
+    public int getLayoutCacheSize()
+    {
+        return clamp(memoryClass / MB_PER_LAYOUT, MIN_LAYOUTS, MAX_LAYOUTS);
+    }
+
+    @NonNull
+    public Bitmap.Config getPosterConfig()
+    {
+        return lowRamDevice ? Bitmap.Config.RGB_565 : Bitmap.Config.ARGB_8888;
+    }
+
+    private static int clamp(int value, int min, int max)
+    {
+        return Math.max(min, Math.min(max, value));
+    }
+
+    public void register(@NonNull Trimmable cache)
+    {
+        caches.add(cache);
+    }
+
+    @Override
+    public void onTrimMemory(int level)
+    {
+        float fraction = keepFraction(level);
+        if (fraction < 1)
+        {
+            trimToFraction(fraction);
+        }
+    }
+
+    @Override
+    public void onLowMemory()
+    {
+        trimToFraction(0);
+    }
+
+    @Override
+    public void onConfigurationChanged(Configuration newConfig)
+    {
+    }
+
+    private void trimToFraction(float fraction)
+    {
+        for (Trimmable cache : caches)
+        {
+            cache.trimToFraction(fraction);
+        }
+    }
+
+    /**
+     * Part of the caches to keep at a trim level: the worse the memory state, the less is kept;
+     * everything is dropped once the app is in the LRU list of background processes.
+     */
+    static float keepFraction(int level)
+    {
+        if (level >= TRIM_MEMORY_BACKGROUND)
+        {
+            return 0;
+        }
+        switch (level)
+        {
+            case TRIM_MEMORY_UI_HIDDEN:
+                return 0.5f;
+            case TRIM_MEMORY_RUNNING_CRITICAL:
+                return 0.25f;
+            case TRIM_MEMORY_RUNNING_LOW:
+                return 0.5f;
+            case TRIM_MEMORY_RUNNING_MODERATE:
+                return 0.75f;
+            default:
+                return 1;
+        }
+    }
+}
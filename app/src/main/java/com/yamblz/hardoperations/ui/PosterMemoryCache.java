@@ -0,0 +1,89 @@
+package com.yamblz.hardoperations.ui;
+
+import android.graphics.Bitmap;
+import android.support.v4.util.LruCache;
+
+import com.squareup.picasso.Cache;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Memory tier of {@link Posters}: decoded posters in a LRU sized in bytes, trimmed by {@link MemoryBudget}.
+ */
+final class PosterMemoryCache implements Cache, MemoryBudget.Trimmable
+{
+    // Picasso keys start with the uri followed by this char and the transformations
+    private static final char KEY_SEPARATOR = '\n';
+
+    private final LruCache<String, Bitmap> bitmaps;
+
+    PosterMemoryCache(int maxBytes)
+    {
+        bitmaps = new LruCache<String, Bitmap>(maxBytes)
+        {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap)
+            {
+                return bitmap.getRowBytes() * bitmap.getHeight();
+            }
+        };
+    }
+
+    @Override
+    public Bitmap get(String key)
+    {
+        return bitmaps.get(key);
+    }
+
+    @Override
+    public void set(String key, Bitmap bitmap)
+    {
+        bitmaps.put(key, bitmap);
+    }
+
+    @Override
+    public int size()
+    {
+        return bitmaps.size();
+    }
+
+    @Override
+    public int maxSize()
+    {
+        return bitmaps.maxSize();
+    }
+
+    @Override
+    public void clear()
+    {
+        bitmaps.evictAll();
+    }
+
+    @Override
+    public void clearKeyUri(String keyPrefix)
+    {
+        List<String> keys = new ArrayList<String>();
+        for (Map.Entry<String, Bitmap> entry : bitmaps.snapshot().entrySet())
+        {
+            String key = entry.getKey();
+            int separator = key.indexOf(KEY_SEPARATOR);
+            String uri = separator == -1 ? key : key.substring(0, separator);
+            if (uri.equals(keyPrefix))
+            {
+                keys.add(key);
+            }
+        }
+        for (String key : keys)
+        {
+            bitmaps.remove(key);
+        }
+    }
+
+    @Override
+    public void trimToFraction(float fraction)
+    {
+        bitmaps.trimToSize((int) (bitmaps.maxSize() * fraction));
+    }
+}
@@ -0,0 +1,57 @@
+package com.yamblz.hardoperations.ui;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Matrix;
+import android.graphics.Paint;
+import android.support.annotation.NonNull;
+
+/**
+ * Draws a poster the same way as {@link com.yamblz.hardoperations.utils.BitmapUtils#fitToCenterBitmap}
+ * followed by drawing its result, but straight from the source bitmap: the poster is scaled to the width
+ * of the target rect, centered vertically and clipped by the rect.
+ * <p>
+ * The matrix is recalculated only when the poster or the rect changes, so drawing doesn't allocate.
+ */
+final class PosterRenderer
+{
+    private final Matrix matrix = new Matrix();
+    private final Paint paint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    private Bitmap poster;
+    private int left;
+    private int top;
+    private int width;
+    private int height;
+
+    void draw(@NonNull Canvas canvas, @NonNull Bitmap poster, int left, int top, int width, int height)
+    {
+        if (poster != this.poster
+                || left != this.left
+                || top != this.top
+                || width != this.width
+                || height != this.height)
+        {
+            updateMatrix(poster, left, top, width, height);
+        }
+
+        canvas.save();
+        canvas.clipRect(left, top, left + width, top + height);
+        canvas.drawBitmap(poster, matrix, paint);
+        canvas.restore();
+    }
+
+    private void updateMatrix(@NonNull Bitmap poster, int left, int top, int width, int height)
+    {
+        this.poster = poster;
+        this.left = left;
+        this.top = top;
+        this.width = width;
+        this.height = height;
+
+        float scale = width / (float) poster.getWidth();
+        float yTranslation = (height - poster.getHeight() * scale) / 2.0f;
+        matrix.setScale(scale, scale);
+        matrix.postTranslate(left, top + yTranslation);
+    }
+}
@@ -0,0 +1,106 @@
+package com.yamblz.hardoperations.ui;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.support.annotation.NonNull;
+
+import com.squareup.picasso.Picasso;
+import com.squareup.picasso.Request;
+import com.squareup.picasso.RequestHandler;
+import com.yamblz.hardoperations.communication.ThumbnailDiskCache;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Loads {@code poster:} uris made by {@link #createUri(String, int, int)} from the thumbnail disk cache,
+ * which downloads and scales covers missing on disk.
+ */
+final class PosterRequestHandler extends RequestHandler
+{
+    private static final String SCHEME = "poster";
+    private static final String PARAM_URL = "url";
+    private static final String PARAM_WIDTH = "w";
+    private static final String PARAM_HEIGHT = "h";
+
+    @NonNull
+    private final File directory;
+    private final long maxDiskBytes;
+    // Created on the first load, listing the directory is disk IO
+    private ThumbnailDiskCache diskCache;
+
+    PosterRequestHandler(@NonNull File directory, long maxDiskBytes)
+    {
+        this.directory = directory;
+        this.maxDiskBytes = maxDiskBytes;
+    }
+
+    @NonNull
+    static Uri createUri(@NonNull String url, int width, int height)
+    {
+        return new Uri.Builder().scheme(SCHEME)
+                                .authority("thumbnail")
+                                .appendQueryParameter(PARAM_URL, url)
+                                .appendQueryParameter(PARAM_WIDTH, Integer.toString(width))
+                                .appendQueryParameter(PARAM_HEIGHT, Integer.toString(height))
+                                .build();
+    }
+
+    @Override
+    public boolean canHandleRequest(Request data)
+    {
+        return data.uri != null && SCHEME.equals(data.uri.getScheme());
+    }
+
+    @Override
+    public Result load(Request request, int networkPolicy) throws IOException
+    {
+        String url = request.uri.getQueryParameter(PARAM_URL);
+        int width;
+        int height;
+        try
+        {
+            width = Integer.parseInt(request.uri.getQueryParameter(PARAM_WIDTH));
+            height = Integer.parseInt(request.uri.getQueryParameter(PARAM_HEIGHT));
+        }
+        catch (NumberFormatException e)
+        {
+            throw new IOException("Bad poster uri " + request.uri);
+        }
+        if (url == null)
+        {
+            throw new IOException("Bad poster uri " + request.uri);
+        }
+
+        ThumbnailDiskCache cache = getDiskCache();
+        File file = cache.peek(url, width, height);
+        Picasso.LoadedFrom loadedFrom = Picasso.LoadedFrom.DISK;
+        if (file == null)
+        {
+            file = cache.get(url, width, height);
+            loadedFrom = Picasso.LoadedFrom.NETWORK;
+        }
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inPreferredConfig = request.config != null ? request.config : Bitmap.Config.ARGB_8888;
+        Bitmap bitmap = BitmapFactory.decodeFile(file.getPath(), options);
+        if (bitmap == null)
+        {
+            // A truncated or otherwise broken thumbnail is downloaded again by the next load
+            cache.remove(url, width, height);
+            throw new IOException("Can't decode " + file);
+        }
+        return new Result(bitmap, loadedFrom);
+    }
+
+    @NonNull
+    private synchronized ThumbnailDiskCache getDiskCache()
+    {
+        if (diskCache == null)
+        {
+            diskCache = new ThumbnailDiskCache(directory, maxDiskBytes, new PosterTranscoder());
+        }
+        return diskCache;
+    }
+}
@@ -0,0 +1,294 @@
+package com.yamblz.hardoperations.ui;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+
+import com.squareup.picasso.Picasso;
+import com.squareup.picasso.Target;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Orders poster loads in front of Picasso. Posters of visible rows are loaded right away with the highest
+ * priority, the rest wait until fewer than {@link #MAX_IN_FLIGHT} loads are running and go nearest
+ * to the viewport first; rows too far from the viewport are dropped. Requests for the same poster
+ * share one load, a load is cancelled once nobody waits for it.
+ */
+@MainThread
+public class PosterScheduler
+{
+    /**
+     * Position of a request for a row on screen.
+     */
+    public static final int VISIBLE = -1;
+
+    static final int MAX_IN_FLIGHT = 3;
+    // Rows farther from the viewport are not worth loading
+    static final int MAX_DISTANCE = 12;
+
+    interface Loader
+    {
+        void load(@NonNull String uri, @NonNull Picasso.Priority priority, @NonNull Target target);
+
+        void cancel(@NonNull Target target);
+    }
+
+    private static PosterScheduler instance;
+
+    @NonNull
+    private final Loader loader;
+    // Loads by poster uri
+    private final Map<String, Load> loads = new HashMap<String, Load>();
+    private final Map<Target, Load> loadsByTarget = new HashMap<Target, Load>();
+    private int inFlight;
+    private int firstVisible = 0;
+    private int lastVisible = 0;
+    private boolean dispatching;
+
+    @NonNull
+    public static synchronized PosterScheduler with(@NonNull Context context)
+    {
+        if (instance == null)
+        {
+            final Picasso picasso = Posters.with(context);
+            instance = new PosterScheduler(new Loader()
+            {
+                @Override
+                public void load(@NonNull String uri, @NonNull Picasso.Priority priority, @NonNull Target target)
+                {
+                    picasso.load(uri).priority(priority).into(target);
+                }
+
+                @Override
+                public void cancel(@NonNull Target target)
+                {
+                    picasso.cancelRequest(target);
+                }
+            });
+        }
+        return instance;
+    }
+
+    PosterScheduler(@NonNull Loader loader)
+    {
+        this.loader = loader;
+    }
+
+    /**
+     * Requests the poster for the target, replacing the previous request of the target.
+     *
+     * @param position adapter position of the row or {@link #VISIBLE}
+     */
+    public void load(@NonNull String uri, @NonNull Target target, int position)
+    {
+        cancel(target);
+
+        Load load = loads.get(uri);
+        if (load == null)
+        {
+            load = new Load(uri);
+            loads.put(uri, load);
+        }
+        load.targets.add(target);
+        loadsByTarget.put(target, load);
+        if (position == VISIBLE || distance(position) < distance(load.position))
+        {
+            load.position = position;
+        }
+
+        if (!load.started && load.position == VISIBLE)
+        {
+            start(load);
+        }
+        dispatch();
+    }
+
+    /**
+     * Cancels the request of the target, e.g. when its view is recycled or detached.
+     */
+    public void cancel(@NonNull Target target)
+    {
+        Load load = loadsByTarget.remove(target);
+        if (load == null)
+        {
+            return;
+        }
+        load.targets.remove(target);
+        if (load.targets.isEmpty())
+        {
+            loads.remove(load.uri);
+            if (load.started)
+            {
+                loader.cancel(load);
+                inFlight--;
+                dispatch();
+            }
+        }
+    }
+
+    /**
+     * Sets the adapter positions on screen, pending loads are ranked by the distance from them.
+     */
+    public void setViewport(int firstVisible, int lastVisible)
+    {
+        this.firstVisible = firstVisible;
+        this.lastVisible = lastVisible;
+        dispatch();
+    }
+
+    private int distance(int position)
+    {
+        if (position == VISIBLE)
+        {
+            return 0;
+        }
+        if (position < firstVisible)
+        {
+            return firstVisible - position;
+        }
+        return position > lastVisible ? position - lastVisible : 0;
+    }
+
+    private void dispatch()
+    {
+        if (dispatching)
+        {
+            return;
+        }
+        dispatching = true;
+        try
+        {
+            dropFarLoads();
+            while (inFlight < MAX_IN_FLIGHT)
+            {
+                Load nearest = null;
+                for (Load load : loads.values())
+                {
+                    if (!load.started && (nearest == null || distance(load.position) < distance(nearest.position)))
+                    {
+                        nearest = load;
+                    }
+                }
+                if (nearest == null)
+                {
+                    break;
+                }
+                start(nearest);
+            }
+        }
+        finally
+        {
+            dispatching = false;
+        }
+    }
+
+    private void dropFarLoads()
+    {
+        List<Load> far = null;
+        for (Load load : loads.values())
+        {
+            if (!load.started && distance(load.position) > MAX_DISTANCE)
+            {
+                if (far == null)
+                {
+                    far = new ArrayList<Load>();
+                }
+                far.add(load);
+            }
+        }
+        if (far == null)
+        {
+            return;
+        }
+        for (Load load : far)
+        {
+            loads.remove(load.uri);
+            for (Target target : load.targets)
+            {
+                loadsByTarget.remove(target);
+                target.onBitmapFailed(null);
+            }
+        }
+    }
+
+    private void start(@NonNull Load load)
+    {
+        load.started = true;
+        inFlight++;
+        // A poster in the memory cache is delivered before this returns
+        loader.load(load.uri, load.position == VISIBLE ? Picasso.Priority.HIGH : Picasso.Priority.LOW, load);
+    }
+
+    private void finish(@NonNull Load load)
+    {
+        if (loads.get(load.uri) == load)
+        {
+            loads.remove(load.uri);
+        }
+        for (Target target : load.targets)
+        {
+            loadsByTarget.remove(target);
+        }
+        inFlight--;
+    }
+
+    int getInFlightCount()
+    {
+        return inFlight;
+    }
+
+    int getPendingCount()
+    {
+        return loads.size() - inFlight;
+    }
+
+    /**
+     * One load of a poster, delivers the result to all targets waiting for it.
+     */
+    private final class Load implements Target
+    {
+        @NonNull
+        final String uri;
+        final List<Target> targets = new ArrayList<Target>(1);
+        int position = Integer.MAX_VALUE;
+        boolean started;
+
+        Load(@NonNull String uri)
+        {
+            this.uri = uri;
+        }
+
+        @Override
+        public void onBitmapLoaded(Bitmap bitmap, Picasso.LoadedFrom from)
+        {
+            finish(this);
+            for (Target target : targets)
+            {
+                target.onBitmapLoaded(bitmap, from);
+            }
+            dispatch();
+        }
+
+        @Override
+        public void onBitmapFailed(Drawable errorDrawable)
+        {
+            finish(this);
+            for (Target target : targets)
+            {
+                target.onBitmapFailed(errorDrawable);
+            }
+            dispatch();
+        }
+
+        @Override
+        public void onPrepareLoad(Drawable placeHolderDrawable)
+        {
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.yamblz.hardoperations.ui;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.support.annotation.NonNull;
+
+import com.yamblz.hardoperations.communication.ThumbnailDiskCache;
+import com.yamblz.hardoperations.utils.BitmapUtils;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Turns a downloaded cover into a poster thumbnail: the cover is decoded subsampled, but not below
+ * the poster width, then scaled to the width and cropped to the height the same way
+ * {@link PosterRenderer} draws it.
+ */
+final class PosterTranscoder implements ThumbnailDiskCache.Transcoder
+{
+    private static final int JPEG_QUALITY = 85;
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    @NonNull
+    @Override
+    public byte[] transcode(@NonNull InputStream source, int width, int height) throws IOException
+    {
+        byte[] encoded = readFully(source);
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(encoded, 0, encoded.length, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0)
+        {
+            throw new IOException("Not an image");
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize(options.outWidth, width);
+
+        Bitmap cover = BitmapFactory.decodeByteArray(encoded, 0, encoded.length, options);
+        if (cover == null)
+        {
+            throw new IOException("Can't decode the image");
+        }
+        Bitmap poster = BitmapUtils.fitToCenterBitmap(cover, width, height);
+        cover.recycle();
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(width * height / 4);
+        poster.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, out);
+        poster.recycle();
+        return out.toByteArray();
+    }
+
+    /**
+     * Largest power of two that keeps the decoded width not less than the target one.
+     */
+    private static int sampleSize(int sourceWidth, int targetWidth)
+    {
+        int sampleSize = 1;
+        while (sourceWidth / (sampleSize * 2) >= targetWidth)
+        {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    @NonNull
+    private static byte[] readFully(@NonNull InputStream in) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(BUFFER_SIZE);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = in.read(buffer)) != -1)
+        {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,44 @@
+package com.yamblz.hardoperations.ui;
+
+import android.content.Context;
+import android.support.annotation.NonNull;
+
+import com.squareup.picasso.Picasso;
+
+import java.io.File;
+
+/**
+ * Picasso for posters. Decoded posters are kept in a memory LRU sized in bytes by {@link MemoryBudget},
+ * under it is a disk tier of covers already scaled to the poster size, see {@link PosterRequestHandler}.
+ */
+public final class Posters
+{
+    private static final String DISK_CACHE_DIR_NAME = "posters";
+    private static final long DISK_CACHE_SIZE = 32 * 1024 * 1024;
+
+    private static Picasso instance;
+
+    private Posters()
+    {
+    }
+
+    @NonNull
+    public static synchronized Picasso with(@NonNull Context context)
+    {
+        if (instance == null)
+        {
+            Context appContext = context.getApplicationContext();
+            MemoryBudget memoryBudget = MemoryBudget.with(appContext);
+            PosterMemoryCache memoryCache = new PosterMemoryCache(memoryBudget.getPosterCacheBytes());
+            memoryBudget.register(memoryCache);
+            instance = new Picasso.Builder(appContext)
+                    .memoryCache(memoryCache)
+                    .defaultBitmapConfig(memoryBudget.getPosterConfig())
+                    .addRequestHandler(new PosterRequestHandler(new File(appContext.getCacheDir(),
+                                                                         DISK_CACHE_DIR_NAME),
+                                                                DISK_CACHE_SIZE))
+                    .build();
+        }
+        return instance;
+    }
+}
@@ -0,0 +1,35 @@
+package com.yamblz.hardoperations.ui;
+
+import android.content.res.Resources;
+import android.support.annotation.NonNull;
+
+import com.yamblz.hardoperations.R;
+import com.yamblz.hardoperations.model.ArtistDescriptions;
+
+/**
+ * Albums and tracks counts taken from plurals resources.
+ */
+public class ResourcesQuantityStrings implements ArtistDescriptions.QuantityStrings
+{
+    @NonNull
+    private final Resources resources;
+
+    public ResourcesQuantityStrings(@NonNull Resources resources)
+    {
+        this.resources = resources;
+    }
+
+    @NonNull
+    @Override
+    public String getAlbums(int count)
+    {
+        return resources.getQuantityString(R.plurals.artistAlbums, count, count);
+    }
+
+    @NonNull
+    @Override
+    public String getTracks(int count)
+    {
+        return resources.getQuantityString(R.plurals.artistTracks, count, count);
+    }
+}
@@ -0,0 +1,249 @@
+package com.yamblz.hardoperations.ui;
+
+import android.content.Context;
+import android.content.res.Resources;
+import android.graphics.Paint;
+import android.graphics.Typeface;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import android.text.Layout;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+import android.text.TextUtils;
+import android.support.v4.util.LruCache;
+
+import com.yamblz.hardoperations.R;
+
+/**
+ * Text layouts of artist cards keyed by (artist id, text kind, width, paint config).
+ * Layouts may be built on any thread, see {@link TextPreLayouter}.
+ * <p>
+ * Cached layouts share the paints of this cache. Cards set the paint color right before drawing a layout,
+ * the color doesn't take part in building layouts.
+ */
+public class TextLayoutCache implements MemoryBudget.Trimmable
+{
+    public static final int KIND_TITLE = 0;
+    public static final int KIND_DESCRIPTION = 1;
+    // First lines of the description, the last of them ellipsized if the description is longer
+    public static final int KIND_DESCRIPTION_COLLAPSED = 2;
+
+    private static final String ELLIPSIS = "\u2026";
+
+    private static TextLayoutCache instance;
+
+    private final LruCache<Key, StaticLayout> layouts;
+    private volatile TextPaint titlePaint;
+    private volatile TextPaint descriptionPaint;
+    private volatile int lastTextWidth;
+    private volatile int collapsedLines;
+
+    @NonNull
+    public static synchronized TextLayoutCache with(@NonNull Context context)
+    {
+        if (instance == null)
+        {
+            MemoryBudget memoryBudget = MemoryBudget.with(context);
+            instance = new TextLayoutCache(memoryBudget.getLayoutCacheSize());
+            memoryBudget.register(instance);
+        }
+        instance.updatePaints(context.getResources());
+        return instance;
+    }
+
+    TextLayoutCache(int cacheSize)
+    {
+        layouts = new LruCache<Key, StaticLayout>(cacheSize);
+    }
+
+    /**
+     * Recreates paints if font sizes have changed, e.g. after the user changed the font scale.
+     * Layouts for old paints are not found anymore as the paint config is a part of the key.
+     */
+    void updatePaints(@NonNull Resources resources)
+    {
+        collapsedLines = resources.getInteger(R.integer.artist_card_collapsed_description_lines);
+
+        float titleFontSize = resources.getDimensionPixelSize(R.dimen.artist_card_title_font_size);
+        if (titlePaint == null || titlePaint.getTextSize() != titleFontSize)
+        {
+            TextPaint paint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+            paint.setTypeface(Typeface.DEFAULT_BOLD);
+            paint.setTextSize(titleFontSize);
+            titlePaint = paint;
+        }
+
+        float descriptionFontSize = resources.getDimensionPixelSize(R.dimen.artist_card_font_size);
+        if (descriptionPaint == null || descriptionPaint.getTextSize() != descriptionFontSize)
+        {
+            TextPaint paint = new TextPaint(Paint.ANTI_ALIAS_FLAG);
+            paint.setTextSize(descriptionFontSize);
+            descriptionPaint = paint;
+        }
+    }
+
+    @NonNull
+    public TextPaint getPaint(int kind)
+    {
+        return kind == KIND_TITLE ? titlePaint : descriptionPaint;
+    }
+
+    /**
+     * Text width of the last measured card, pre-layout is done for this width.
+     */
+    public int getLastTextWidth()
+    {
+        return lastTextWidth;
+    }
+
+    public void setLastTextWidth(int textWidth)
+    {
+        lastTextWidth = textWidth;
+    }
+
+    /**
+     * Height of a collapsed description of all {@code artist_card_collapsed_description_lines} lines,
+     * for cards measured before the description is laid out.
+     */
+    public int getCollapsedDescriptionHeight()
+    {
+        // Lines of build() are the font spacing plus the spacing added
+        return collapsedLines * (descriptionPaint.getFontMetricsInt(null) + 1);
+    }
+
+    @NonNull
+    public StaticLayout get(@NonNull String artistId, int kind, @Nullable CharSequence text, int width)
+    {
+        TextPaint paint = getPaint(kind);
+        Key key = new Key(artistId, kind, width, paint);
+        StaticLayout layout = layouts.get(key);
+        if (layout == null)
+        {
+            CharSequence source = text != null ? text : "";
+            layout = kind == KIND_DESCRIPTION_COLLAPSED
+                    ? buildCollapsed(source, paint, width, collapsedLines)
+                    : build(source, paint, width);
+            layouts.put(key, layout);
+        }
+        return layout;
+    }
+
+    /**
+     * @return the layout if it is built already, null otherwise
+     */
+    @Nullable
+    public StaticLayout peek(@NonNull String artistId, int kind, int width)
+    {
+        return layouts.get(new Key(artistId, kind, width, getPaint(kind)));
+    }
+
+    @NonNull
+    private static StaticLayout build(@NonNull CharSequence text, @NonNull TextPaint paint, int width)
+    {
+        return new StaticLayout(text, paint, width, Layout.Alignment.ALIGN_NORMAL, 1, 1, false);
+    }
+
+    /**
+     * Lays out only the first {@code maxLines} lines of the text, with an ellipsis at the end of the last one
+     * if the text doesn't fit. The cost is bounded by the number of lines, not by the length of the text.
+     */
+    @NonNull
+    static StaticLayout buildCollapsed(@NonNull CharSequence text, @NonNull TextPaint paint, int width, int maxLines)
+    {
+        // No line holds more chars than fit at the width of a char narrower than any real one,
+        // so this prefix fills all the lines unless the text ends earlier
+        float narrowChar = Math.max(1, Math.min(paint.measureText("i"), paint.measureText(" ")) / 2);
+        long prefixLength = (long) maxLines * ((long) Math.ceil(width / narrowChar) + 1);
+        CharSequence prefix = prefixLength < text.length() ? text.subSequence(0, (int) prefixLength) : text;
+
+        StaticLayout layout = build(prefix, paint, width);
+        if (prefix == text && layout.getLineCount() <= maxLines)
+        {
+            return layout;
+        }
+
+        int lastLine = Math.min(layout.getLineCount(), maxLines) - 1;
+        int lastLineStart = layout.getLineStart(lastLine);
+        int lastLineEnd = lastLineStart;
+        while (lastLineEnd < prefix.length() && prefix.charAt(lastLineEnd) != '\n')
+        {
+            lastLineEnd++;
+        }
+        while (lastLineEnd > lastLineStart && Character.isWhitespace(prefix.charAt(lastLineEnd - 1)))
+        {
+            lastLineEnd--;
+        }
+        // The rest of the paragraph is cut to the width, the ellipsis is added even if the paragraph fits
+        CharSequence lastLineText = TextUtils.ellipsize(
+                TextUtils.concat(prefix.subSequence(lastLineStart, lastLineEnd), ELLIPSIS),
+                paint,
+                width,
+                TextUtils.TruncateAt.END);
+        return build(TextUtils.concat(prefix.subSequence(0, lastLineStart), lastLineText), paint, width);
+    }
+
+    @Override
+    public void trimToFraction(float fraction)
+    {
+        layouts.trimToSize((int) (layouts.maxSize() * fraction));
+    }
+
+    int size()
+    {
+        return layouts.size();
+    }
+
+    private static final class Key
+    {
+        @NonNull
+        private final String artistId;
+        private final int kind;
+        private final int width;
+        private final float textSize;
+        @Nullable
+        private final Typeface typeface;
+        private final int flags;
+
+        Key(@NonNull String artistId, int kind, int width, @NonNull TextPaint paint)
+        {
+            this.artistId = artistId;
+            this.kind = kind;
+            this.width = width;
+            this.textSize = paint.getTextSize();
+            this.typeface = paint.getTypeface();
+            this.flags = paint.getFlags();
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o)
+            {
+                return true;
+            }
+            if (!(o instanceof Key))
+            {
+                return false;
+            }
+            Key key = (Key) o;
+            return kind == key.kind
+                    && width == key.width
+                    && textSize == key.textSize
+                    && flags == key.flags
+                    && artistId.equals(key.artistId)
+                    && (typeface == null ? key.typeface == null : typeface.equals(key.typeface));
+        }
+
+        @Override
+        public int hashCode()
+        {
+            int result = artistId.hashCode();
+            result = 31 * result + kind;
+            result = 31 * result + width;
+            result = 31 * result + Float.floatToIntBits(textSize);
+            result = 31 * result + (typeface != null ? typeface.hashCode() : 0);
+            result = 31 * result + flags;
+            return result;
+        }
+    }
+}
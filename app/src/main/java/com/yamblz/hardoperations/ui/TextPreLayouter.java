@@ -0,0 +1,118 @@
+package com.yamblz.hardoperations.ui;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.MainThread;
+import android.support.annotation.NonNull;
+
+import com.yamblz.hardoperations.model.ArtistCardModel;
+import com.yamblz.hardoperations.utils.BackgroundThreadFactory;
+
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Builds text layouts of cards that are about to be shown on a background thread,
+ * so that cards only take ready layouts from {@link TextLayoutCache} when they are measured.
+ * <p>
+ * Cards ahead get only collapsed descriptions, the full description of a card is laid out
+ * when the user expands the card.
+ */
+public class TextPreLayouter
+{
+    private static TextPreLayouter instance;
+
+    @NonNull
+    private final TextLayoutCache layoutCache;
+    private final ExecutorService executor =
+            Executors.newSingleThreadExecutor(new BackgroundThreadFactory("pre-layout"));
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private Future<?> pendingWork;
+    // Bumped by every preLayout call, running work of an older generation stops
+    private volatile int generation;
+
+    @NonNull
+    public static synchronized TextPreLayouter with(@NonNull Context context)
+    {
+        if (instance == null)
+        {
+            instance = new TextPreLayouter(TextLayoutCache.with(context));
+        }
+        return instance;
+    }
+
+    TextPreLayouter(@NonNull TextLayoutCache layoutCache)
+    {
+        this.layoutCache = layoutCache;
+    }
+
+    /**
+     * Replaces pre-layout work, started or not, with models and layouts for the given store rows.
+     */
+    @MainThread
+    public void preLayout(@NonNull final ArtistCards cards, @NonNull int[] rows, int count)
+    {
+        final int workGeneration = ++generation;
+        if (pendingWork != null)
+        {
+            pendingWork.cancel(false);
+            pendingWork = null;
+        }
+
+        // Until a card is measured the width is not known and only models are built
+        final int textWidth = layoutCache.getLastTextWidth();
+        if (count == 0)
+        {
+            return;
+        }
+
+        final int[] toLayout = Arrays.copyOf(rows, count);
+        pendingWork = executor.submit(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                for (int row : toLayout)
+                {
+                    if (generation != workGeneration)
+                    {
+                        return;
+                    }
+                    ArtistCardModel card = cards.get(row);
+                    if (textWidth <= 0)
+                    {
+                        continue;
+                    }
+                    layoutCache.get(card.getId(), TextLayoutCache.KIND_TITLE, card.getTitle(), textWidth);
+                    layoutCache.get(card.getId(),
+                                    TextLayoutCache.KIND_DESCRIPTION_COLLAPSED,
+                                    card.getDescription(),
+                                    textWidth);
+                }
+            }
+        });
+    }
+
+    /**
+     * Builds the full description layout of an expanded card, {@code onReady} is posted to the main thread
+     * when {@link TextLayoutCache#peek(String, int, int)} returns it. Runs before pre-layout work submitted later.
+     */
+    @MainThread
+    public void layoutFullDescription(@NonNull final ArtistCardModel card,
+                                      final int textWidth,
+                                      @NonNull final Runnable onReady)
+    {
+        executor.execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                layoutCache.get(card.getId(), TextLayoutCache.KIND_DESCRIPTION, card.getDescription(), textWidth);
+                mainHandler.post(onReady);
+            }
+        });
+    }
+}
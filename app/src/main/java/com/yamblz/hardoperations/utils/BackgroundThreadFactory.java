@@ -0,0 +1,39 @@
+package com.yamblz.hardoperations.utils;
+
+import android.os.Process;
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates named threads with background priority, so work done on them doesn't compete
+ * with the UI thread for the CPU.
+ */
+public class BackgroundThreadFactory implements ThreadFactory
+{
+    @NonNull
+    private final String name;
+    private final AtomicInteger threadsCount = new AtomicInteger();
+
+    public BackgroundThreadFactory(@NonNull String name)
+    {
+        this.name = name;
+    }
+
+    @Override
+    public Thread newThread(@NonNull final Runnable runnable)
+    {
+        Thread thread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                runnable.run();
+            }
+        }, name + "-" + threadsCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    }
+}
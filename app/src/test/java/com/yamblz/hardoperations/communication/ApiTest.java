@@ -0,0 +1,113 @@
+package com.yamblz.hardoperations.communication;
+
+import android.app.Application;
+import android.os.Build;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.yamblz.hardoperations.BuildConfig;
+import com.yamblz.hardoperations.model.Artist;
+import com.yamblz.hardoperations.model.ArtistStore;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = Build.VERSION_CODES.M)
+public class ApiTest
+{
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final SyntheticCatalogue catalogue = new SyntheticCatalogue(1);
+    private Application application;
+    private HttpServer server;
+    private byte[] body;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        application = RuntimeEnvironment.application;
+        body = catalogue.json(500).getBytes(UTF_8);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/artists.json", new HttpHandler()
+        {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException
+            {
+                ArtistsFeedTest.cut(exchange, body, body.length / 2);
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown()
+    {
+        server.stop(0);
+    }
+
+    @Test
+    public void firstDownloadBrokenOffFallsBackToBundledArtists()
+    {
+        Api api = new Api(application, "http://127.0.0.1:" + server.getAddress().getPort() + "/artists.json");
+        CollectingListener listener = new CollectingListener();
+
+        api.getArtists(listener);
+
+        Artist[] bundled = new Api(application).getArtists();
+        assertEquals(1, listener.resetCount);
+        assertTrue(listener.droppedCount > 0);
+        assertEquals(bundled.length, listener.batched.size());
+        assertEquals(bundled[0].getId(), listener.batched.get(0).getId());
+        assertEquals(bundled[bundled.length - 1].getId(), listener.batched.get(bundled.length - 1).getId());
+        // Nothing of the feed is kept, the next Api downloads it again
+        assertFalse(new File(application.getFilesDir(), "artists.json").exists());
+    }
+
+    private static class CollectingListener implements Api.ArtistsListener
+    {
+        final List<Artist> batched = new ArrayList<Artist>();
+        int droppedCount;
+        int resetCount;
+
+        @Override
+        public void onBatchParsed(List<Artist> batch)
+        {
+            batched.addAll(batch);
+        }
+
+        @Override
+        public void onArtistsReset()
+        {
+            droppedCount += batched.size();
+            batched.clear();
+            resetCount++;
+        }
+
+        @Override
+        public void onSnapshotLoaded(ArtistStore store)
+        {
+            for (int row = 0; row < store.size(); row++)
+            {
+                batched.add(store.getArtist(row));
+            }
+        }
+    }
+}
@@ -0,0 +1,295 @@
+package com.yamblz.hardoperations.communication;
+
+import com.google.gson.Gson;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.yamblz.hardoperations.model.Artist;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ArtistsFeedTest
+{
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final String LAST_MODIFIED = "Tue, 06 Sep 2016 10:00:00 GMT";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final SyntheticCatalogue catalogue = new SyntheticCatalogue(1);
+    private final List<Headers> requests = new ArrayList<Headers>();
+    private HttpServer server;
+    private File file;
+    private ArtistsFeed feed;
+
+    // What the server responds with
+    private volatile String body;
+    private volatile String eTag = "\"v1\"";
+    private volatile int errorCode;
+    // Number of body bytes sent before the connection is dropped, -1 to send all of them
+    private volatile int cutAfter = -1;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/artists.json", new HttpHandler()
+        {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException
+            {
+                Headers requestHeaders = exchange.getRequestHeaders();
+                synchronized (requests)
+                {
+                    requests.add(requestHeaders);
+                }
+                if (errorCode != 0)
+                {
+                    exchange.sendResponseHeaders(errorCode, -1);
+                    exchange.close();
+                    return;
+                }
+                exchange.getResponseHeaders().set("ETag", eTag);
+                exchange.getResponseHeaders().set("Last-Modified", LAST_MODIFIED);
+                if (eTag.equals(requestHeaders.getFirst("If-None-Match")))
+                {
+                    exchange.sendResponseHeaders(304, -1);
+                    exchange.close();
+                    return;
+                }
+                if (cutAfter >= 0)
+                {
+                    cut(exchange, body.getBytes(UTF_8), cutAfter);
+                    return;
+                }
+                boolean gzip = "gzip".equals(requestHeaders.getFirst("Accept-Encoding"));
+                if (gzip)
+                {
+                    exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                }
+                // Chunked, the feed is streamed
+                exchange.sendResponseHeaders(200, 0);
+                OutputStream out = exchange.getResponseBody();
+                if (gzip)
+                {
+                    out = new GZIPOutputStream(out);
+                }
+                out.write(body.getBytes(UTF_8));
+                out.close();
+            }
+        });
+        server.start();
+
+        file = new File(temporaryFolder.newFolder("feed"), "artists.json");
+        URL url = new URL("http://127.0.0.1:" + server.getAddress().getPort() + "/artists.json");
+        feed = new ArtistsFeed(url, file, new ArtistsStreamParser(new Gson()));
+    }
+
+    @After
+    public void tearDown()
+    {
+        server.stop(0);
+    }
+
+    @Test
+    public void firstDownloadIsGzippedStreamedAndSaved() throws IOException
+    {
+        body = catalogue.json(500);
+        assertNull(feed.getCachedFile());
+
+        CollectingListener listener = new CollectingListener();
+        List<Artist> artists = feed.download(listener);
+
+        assertNotNull(artists);
+        assertEquals(500, artists.size());
+        assertEquals(artists, listener.batched);
+        assertTrue(listener.batchCount > 1);
+        assertEquals("gzip", requests.get(0).getFirst("Accept-Encoding"));
+        assertNull(requests.get(0).getFirst("If-None-Match"));
+        assertEquals(file, feed.getCachedFile());
+        assertEquals(body, read(file));
+    }
+
+    @Test
+    public void unchangedFeedIsNotDownloadedAgain() throws IOException
+    {
+        body = catalogue.json(10);
+        feed.download(new CollectingListener());
+        long savedAt = file.lastModified();
+
+        CollectingListener listener = new CollectingListener();
+        assertNull(feed.download(listener));
+
+        Headers conditional = requests.get(1);
+        assertEquals("\"v1\"", conditional.getFirst("If-None-Match"));
+        assertEquals(LAST_MODIFIED, conditional.getFirst("If-Modified-Since"));
+        assertEquals(0, listener.batchCount);
+        assertEquals(body, read(file));
+        assertEquals(savedAt, file.lastModified());
+    }
+
+    @Test
+    public void changedFeedReplacesCopy() throws IOException
+    {
+        body = catalogue.json(10);
+        feed.download(new CollectingListener());
+
+        body = catalogue.json(20);
+        eTag = "\"v2\"";
+        List<Artist> artists = feed.download(new CollectingListener());
+
+        assertNotNull(artists);
+        assertEquals(20, artists.size());
+        assertEquals(body, read(file));
+        assertNull(feed.download(new CollectingListener()));
+        assertEquals("\"v2\"", requests.get(2).getFirst("If-None-Match"));
+    }
+
+    @Test
+    public void failedDownloadKeepsCopy() throws IOException
+    {
+        String saved = catalogue.json(10);
+        body = saved;
+        feed.download(new CollectingListener());
+
+        eTag = "\"v2\"";
+        body = saved.substring(0, saved.length() / 2);
+        assertDownloadFails();
+
+        body = "{\"artists\": []}";
+        assertDownloadFails();
+
+        errorCode = 500;
+        assertDownloadFails();
+
+        assertEquals(saved, read(file));
+        // The copy and its validators, no temp files
+        assertEquals(2, file.getParentFile().list().length);
+    }
+
+    @Test
+    public void droppedConnectionFailsAfterBatchesAndSavesNothing() throws IOException
+    {
+        body = catalogue.json(500);
+        cutAfter = body.length() / 2;
+
+        CollectingListener listener = new CollectingListener();
+        try
+        {
+            feed.download(listener);
+            fail();
+        }
+        catch (IOException expected)
+        {
+            // The body broke off
+        }
+
+        assertTrue(listener.batchCount > 0);
+        assertNull(feed.getCachedFile());
+        assertEquals(0, file.getParentFile().list().length);
+    }
+
+    @Test
+    public void feedWithNonNumericIdFailsAndSavesNothing() throws IOException
+    {
+        body = catalogue.json(100).replace("\"id\":\"1000050\"", "\"id\":\"a1000050\"");
+
+        CollectingListener listener = new CollectingListener();
+        try
+        {
+            feed.download(listener);
+            fail();
+        }
+        catch (IOException expected)
+        {
+            // The store keeps ids as numbers
+        }
+
+        assertTrue(listener.batched.size() <= 50);
+        assertNull(feed.getCachedFile());
+        assertEquals(0, file.getParentFile().list().length);
+    }
+
+    /**
+     * Announces the whole body but drops the connection after {@code count} bytes of it.
+     */
+    static void cut(HttpExchange exchange, byte[] body, int count) throws IOException
+    {
+        exchange.sendResponseHeaders(200, body.length);
+        OutputStream out = exchange.getResponseBody();
+        out.write(body, 0, count);
+        out.flush();
+        // Fewer bytes than announced, the server closes the connection
+        exchange.close();
+    }
+
+    private void assertDownloadFails()
+    {
+        try
+        {
+            feed.download(new CollectingListener());
+            fail();
+        }
+        catch (IOException expected)
+        {
+            // expected
+        }
+    }
+
+    private static String read(File file) throws IOException
+    {
+        InputStream in = new FileInputStream(file);
+        try
+        {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1)
+            {
+                out.write(buffer, 0, read);
+            }
+            return new String(out.toByteArray(), UTF_8);
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    private static class CollectingListener implements ArtistsStreamParser.BatchListener
+    {
+        final List<Artist> batched = new ArrayList<Artist>();
+        int batchCount;
+
+        @Override
+        public void onBatchParsed(List<Artist> batch)
+        {
+            batched.addAll(batch);
+            batchCount++;
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.yamblz.hardoperations.communication;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.yamblz.hardoperations.model.Artist;
+import com.yamblz.hardoperations.model.GeneratedTypeAdapterFactory;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ArtistsParallelParserTest
+{
+    private final Gson gson = new GsonBuilder().registerTypeAdapterFactory(new GeneratedTypeAdapterFactory()).create();
+    private final SyntheticCatalogue catalogue = new SyntheticCatalogue(1);
+
+    @Test
+    public void parsesLikeStreamParserAtAnyParallelism() throws Exception
+    {
+        String feed = catalogue.json(3000);
+        List<Artist> expected = new ArtistsStreamParser(gson).parse(new StringReader(feed), new CollectingListener());
+
+        for (int parallelism : new int[]{1, 2, 3, 8})
+        {
+            CollectingListener listener = new CollectingListener();
+            List<Artist> artists = parse(feed, parallelism, listener);
+
+            assertEquals(gson.toJson(expected), gson.toJson(artists));
+            assertEquals(artists, listener.batched);
+            assertEquals(ArtistsStreamParser.FIRST_BATCH_SIZE, listener.batchSizes.get(0).intValue());
+        }
+    }
+
+    @Test
+    public void handsOutBatchesOfStreamParserSizes() throws Exception
+    {
+        String feed = catalogue.json(3000);
+        CollectingListener expected = new CollectingListener();
+        new ArtistsStreamParser(gson).parse(new StringReader(feed), expected);
+
+        CollectingListener listener = new CollectingListener();
+        parse(feed, 4, listener);
+
+        assertEquals(expected.batchSizes, listener.batchSizes);
+    }
+
+    @Test
+    public void chunksBeforeBrokenOneAreHandedOut() throws Exception
+    {
+        String feed = catalogue.json(3000);
+        int lastTracks = feed.lastIndexOf("\"tracks\":");
+        String broken = feed.substring(0, lastTracks) + "\"tracks\"" + feed.substring(lastTracks + 9);
+        CollectingListener listener = new CollectingListener();
+        try
+        {
+            parse(broken, 2, listener);
+            throw new AssertionError("Parsed a broken feed");
+        }
+        catch (IOException expected)
+        {
+            // expected
+        }
+
+        // More than the serial first screen, fewer than all of them
+        int handedOut = listener.batched.size();
+        assertTrue(handedOut + " handed out", handedOut > ArtistsParallelParser.MIN_SERIAL_COUNT);
+        assertTrue(handedOut + " handed out", handedOut < 3000);
+    }
+
+    @Test
+    public void splitsOnlyBetweenRecords() throws Exception
+    {
+        StringBuilder feed = new StringBuilder(" [\n");
+        for (int i = 0; i < 200; i++)
+        {
+            feed.append(i > 0 ? " ,\n " : "")
+                .append("{\"id\": \"").append(i).append("\", \"name\": \"},{\\\"[,]\\\\\", \"genres\": [\"a]\", \"{\"],")
+                .append(" \"tracks\": ").append(i).append(", \"cover\": null, \"unknown\": [[{}], -1.5E3, true]}");
+        }
+        feed.append("\n] ");
+
+        List<Artist> artists = parse(feed.toString(), 4, new CollectingListener());
+
+        assertEquals(200, artists.size());
+        for (int i = 0; i < 200; i++)
+        {
+            assertEquals(String.valueOf(i), artists.get(i).getId());
+            assertEquals("},{\"[,]\\", artists.get(i).getName());
+            assertEquals(i, artists.get(i).getTracksCount());
+        }
+    }
+
+    @Test
+    public void emptyArrayHasNoBatches() throws Exception
+    {
+        CollectingListener listener = new CollectingListener();
+
+        assertTrue(parse(" [ ] ", 4, listener).isEmpty());
+        assertTrue(listener.batchSizes.isEmpty());
+    }
+
+    @Test
+    public void malformedFeedIsIOException() throws Exception
+    {
+        String feed = catalogue.json(500);
+        String[] malformed = {"", "{}", "[", "[{}", "[{},]", "[{},,{}]", "[{} {}]",
+                feed.substring(0, feed.length() - 1),
+                feed.replace("\"tracks\":", "\"tracks\"")};
+        for (String json : malformed)
+        {
+            try
+            {
+                parse(json, 4, new CollectingListener());
+                throw new AssertionError("Parsed " + (json.length() > 20 ? json.substring(0, 20) : json));
+            }
+            catch (IOException expected)
+            {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void onlyLargeFeedsAreWorthParallel()
+    {
+        int length = ArtistsParallelParser.MIN_PARALLEL_LENGTH;
+        long bufferBytes = ArtistsParallelParser.getBufferBytes(length);
+
+        assertTrue(ArtistsParallelParser.isWorthParallel(length, 2, bufferBytes));
+        assertFalse(ArtistsParallelParser.isWorthParallel(length - 1, 8, Long.MAX_VALUE));
+        assertFalse(ArtistsParallelParser.isWorthParallel(Integer.MAX_VALUE, 1, Long.MAX_VALUE));
+        // Chars that don't fit into the memory budget are streamed
+        assertFalse(ArtistsParallelParser.isWorthParallel(length, 8, bufferBytes - 1));
+    }
+
+    private List<Artist> parse(String json, int parallelism, CollectingListener listener) throws IOException
+    {
+        char[] chars = (json + "garbage").toCharArray();
+        return new ArtistsParallelParser(gson, parallelism).parse(chars, json.length(), listener);
+    }
+
+    private static class CollectingListener implements ArtistsStreamParser.BatchListener
+    {
+        final List<Artist> batched = new ArrayList<Artist>();
+        final List<Integer> batchSizes = new ArrayList<Integer>();
+
+        @Override
+        public void onBatchParsed(List<Artist> batch)
+        {
+            batched.addAll(batch);
+            batchSizes.add(batch.size());
+        }
+    }
+}
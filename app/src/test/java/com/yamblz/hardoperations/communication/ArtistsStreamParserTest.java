@@ -0,0 +1,80 @@
+package com.yamblz.hardoperations.communication;
+
+import com.google.gson.Gson;
+import com.yamblz.hardoperations.model.Artist;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ArtistsStreamParserTest
+{
+    private static final int LARGE_FEED_SIZE = 50000;
+
+    private final ArtistsStreamParser parser = new ArtistsStreamParser(new Gson());
+    private final SyntheticCatalogue catalogue = new SyntheticCatalogue(1);
+
+    @Test
+    public void batchesKeepFeedOrder() throws Exception
+    {
+        final List<Artist> batched = new ArrayList<Artist>();
+        List<Artist> artists = parser.parse(new StringReader(catalogue.json(1000)),
+                                            new ArtistsStreamParser.BatchListener()
+                                            {
+                                                @Override
+                                                public void onBatchParsed(List<Artist> batch)
+                                                {
+                                                    batched.addAll(batch);
+                                                }
+                                            });
+
+        assertEquals(1000, artists.size());
+        assertEquals(artists, batched);
+        assertEquals("1000000", artists.get(0).getId());
+        assertEquals(catalogue.artist(999).getCover().getBigImageUrl(), artists.get(999).getCover().getBigImageUrl());
+    }
+
+    @Test
+    public void firstBatchArrivesLongBeforeFullParse() throws Exception
+    {
+        // Warm up the Gson adapters so the first batch is not charged for reflection
+        parser.parse(new StringReader(catalogue.json(100)), new CountingListener());
+
+        String feed = catalogue.json(LARGE_FEED_SIZE);
+        CountingListener listener = new CountingListener();
+
+        long startNanos = System.nanoTime();
+        List<Artist> artists = parser.parse(new StringReader(feed), listener);
+        long fullParseNanos = System.nanoTime() - startNanos;
+        long firstBatchNanos = listener.firstBatchNanos - startNanos;
+
+        assertEquals(LARGE_FEED_SIZE, artists.size());
+        assertEquals(LARGE_FEED_SIZE, listener.parsedCount);
+        assertEquals(ArtistsStreamParser.FIRST_BATCH_SIZE, listener.firstBatchSize);
+        assertTrue("first batch took " + firstBatchNanos + "ns of " + fullParseNanos + "ns",
+                   firstBatchNanos * 20 < fullParseNanos);
+    }
+
+    private static class CountingListener implements ArtistsStreamParser.BatchListener
+    {
+        long firstBatchNanos;
+        int firstBatchSize;
+        int parsedCount;
+
+        @Override
+        public void onBatchParsed(List<Artist> batch)
+        {
+            if (parsedCount == 0)
+            {
+                firstBatchNanos = System.nanoTime();
+                firstBatchSize = batch.size();
+            }
+            parsedCount += batch.size();
+        }
+    }
+}
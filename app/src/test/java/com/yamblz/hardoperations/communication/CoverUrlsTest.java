@@ -0,0 +1,102 @@
+package com.yamblz.hardoperations.communication;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.yamblz.hardoperations.model.Cover;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class CoverUrlsTest
+{
+    private HttpServer server;
+    private final List<String> requestedSizes = Collections.synchronizedList(new ArrayList<String>());
+    private Cover cover;
+
+    @Before
+    public void setUp() throws Exception
+    {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/covers/", new HttpHandler()
+        {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException
+            {
+                String path = exchange.getRequestURI().getPath();
+                requestedSizes.add(path.substring(path.lastIndexOf('/') + 1));
+                exchange.sendResponseHeaders(200, -1);
+                exchange.close();
+            }
+        });
+        server.start();
+
+        String baseUrl = "http://127.0.0.1:" + server.getAddress().getPort() + "/covers/dfc531f5.p.1080505/";
+        cover = new Cover(baseUrl + "300x300", baseUrl + "1000x1000");
+    }
+
+    @After
+    public void tearDown()
+    {
+        server.stop(0);
+    }
+
+    @Test
+    public void nearestBiggerVariantIsRequested() throws Exception
+    {
+        for (int width : new int[]{200, 300, 720, 1080})
+        {
+            fetch(CoverUrls.forWidth(cover, width, false));
+        }
+
+        assertEquals(Arrays.asList("300x300", "300x300", "1000x1000", "1000x1000"), requestedSizes);
+    }
+
+    @Test
+    public void exactSizeIsRequested() throws Exception
+    {
+        for (int width : new int[]{200, 300, 720, 1080})
+        {
+            fetch(CoverUrls.forWidth(cover, width, true));
+        }
+
+        assertEquals(Arrays.asList("200x200", "300x300", "720x720", "1000x1000"), requestedSizes);
+    }
+
+    @Test
+    public void urlWithoutSizeIsUsedAsIs()
+    {
+        Cover unsized = new Cover(null, "http://example.com/cover.jpg");
+
+        assertEquals("http://example.com/cover.jpg", CoverUrls.forWidth(unsized, 720, true));
+        assertEquals(0, CoverUrls.getWidth(unsized.getBigImageUrl()));
+    }
+
+    private static void fetch(String url) throws IOException
+    {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        try
+        {
+            InputStream in = connection.getInputStream();
+            in.close();
+            assertEquals(200, connection.getResponseCode());
+        }
+        finally
+        {
+            connection.disconnect();
+        }
+    }
+}
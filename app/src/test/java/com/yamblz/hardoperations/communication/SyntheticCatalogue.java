@@ -0,0 +1,266 @@
+package com.yamblz.hardoperations.communication;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonWriter;
+import com.yamblz.hardoperations.model.Artist;
+import com.yamblz.hardoperations.model.Cover;
+import com.yamblz.hardoperations.model.GeneratedTypeAdapterFactory;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Generates catalogues of any size that look like {@code R.raw.artists}: genres with the frequencies of the
+ * bundled feed, 0 to 3 of them per artist, Russian descriptions with the length distribution of the bundled
+ * ones and a long tail, Latin and Cyrillic names, quotes that need escaping.
+ * <p>
+ * Every artist depends only on the seed and its index, so a catalogue is the same on every run and
+ * any artist of it can be generated again to check what was loaded.
+ */
+public final class SyntheticCatalogue
+{
+    // Genres of artists.json with the number of artists of each
+    private static final String[] GENRES = {"pop", "rock", "dance", "alternative", "rap", "electronics",
+            "rusrock", "metal", "rusrap", "rnb", "local-indie", "jazz", "soundtrack", "indie", "folk", "punk",
+            "house", "classical", "relax", "blues", "trance", "soul", "country", "latinfolk", "estrada", "bard",
+            "videogame", "urban", "dnb", "ukrrock", "newwave", "african", "lounge", "rusfolk", "dubstep",
+            "disco", "prog", "reggae", "industrial", "conjazz", "dub"};
+    private static final int[] GENRE_WEIGHTS = {136, 69, 41, 40, 32, 30, 28, 24, 21, 20, 11, 10, 10, 9, 5, 4,
+            4, 3, 3, 3, 3, 2, 2, 2, 2, 2, 2, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1, 1};
+    // Artists of artists.json with 0, 1, 2 and 3 genres
+    private static final int[] GENRE_COUNT_WEIGHTS = {2, 173, 67, 75};
+
+    // Descriptions of artists.json are 16 to 728 chars long, 224 chars the median
+    private static final int MEDIAN_DESCRIPTION_LENGTH = 224;
+    private static final double DESCRIPTION_LENGTH_SIGMA = 0.6;
+    private static final int MIN_DESCRIPTION_LENGTH = 16;
+    private static final int MAX_DESCRIPTION_LENGTH = 4000;
+
+    private static final String[] CYRILLIC_SYLLABLES = {"ка", "ро", "ми", "ст", "на", "ве", "ль", "то", "пр",
+            "да", "ск", "ии", "ле", "ор", "ан", "го", "ны", "ри", "ба", "зо", "шо", "же", "чу", "ще", "лю", "эй"};
+    private static final String[] LATIN_SYLLABLES = {"lo", "ve", "ta", "mi", "kor", "sun", "el", "ra", "dio",
+            "na", "bee", "the", "ston", "x", "am", "ber", "ly", "qu", "io", "zz"};
+    // Words of descriptions are drawn from a vocabulary by Zipf's law, like the words of a real text
+    private static final int VOCABULARY_SIZE = 20000;
+    private static final String[] DESCRIPTION_PHRASES = {"выпустил альбом", "получил премию", "отправился в тур",
+            "записал сингл", "сотрудничал с группой", "занял первое место в чарте", "основал лейбл"};
+
+    private final long seed;
+    private final TypeAdapter<Artist> artistAdapter;
+    private final String[] vocabulary = new String[VOCABULARY_SIZE];
+    // Cumulative Zipf weights of the vocabulary, the word of rank k has the weight 1 / (k + 1)
+    private final double[] vocabularyWeights = new double[VOCABULARY_SIZE];
+
+    public SyntheticCatalogue(long seed)
+    {
+        this.seed = seed;
+        Random random = new Random(seed);
+        StringBuilder word = new StringBuilder();
+        double total = 0;
+        for (int i = 0; i < VOCABULARY_SIZE; i++)
+        {
+            word.setLength(0);
+            appendWord(word, random, CYRILLIC_SYLLABLES, false);
+            vocabulary[i] = word.toString();
+            total += 1.0 / (i + 1);
+            vocabularyWeights[i] = total;
+        }
+        Gson gson = new GsonBuilder().registerTypeAdapterFactory(new GeneratedTypeAdapterFactory()).create();
+        artistAdapter = gson.getAdapter(Artist.class);
+    }
+
+    /**
+     * Writes the first {@code count} artists as a feed in the format of {@code R.raw.artists}.
+     */
+    public void writeJson(int count, Writer out) throws IOException
+    {
+        JsonWriter writer = new JsonWriter(out);
+        writer.beginArray();
+        for (int i = 0; i < count; i++)
+        {
+            artistAdapter.write(writer, artist(i));
+        }
+        writer.endArray();
+        writer.flush();
+    }
+
+    /**
+     * @return the first {@code count} artists as a feed in the format of {@code R.raw.artists}
+     */
+    public String json(int count)
+    {
+        StringWriter out = new StringWriter(count * 600);
+        try
+        {
+            writeJson(count, out);
+        }
+        catch (IOException e)
+        {
+            throw new AssertionError(e);
+        }
+        return out.toString();
+    }
+
+    public Artist artist(int index)
+    {
+        Random random = new Random(seed * 1000003L + index);
+        long id = 1000000L + index;
+
+        boolean cyrillicName = random.nextInt(5) < 2;
+        StringBuilder name = new StringBuilder();
+        int nameWords = 1 + random.nextInt(3);
+        for (int w = 0; w < nameWords; w++)
+        {
+            if (w > 0)
+            {
+                name.append(random.nextInt(10) == 0 ? " & " : " ");
+            }
+            appendWord(name, random, cyrillicName ? CYRILLIC_SYLLABLES : LATIN_SYLLABLES, true);
+        }
+
+        String[] genres = new String[pick(random, GENRE_COUNT_WEIGHTS)];
+        for (int g = 0; g < genres.length; g++)
+        {
+            // An artist has no genre twice
+            do
+            {
+                genres[g] = GENRES[pick(random, GENRE_WEIGHTS)];
+            }
+            while (contains(genres, g, genres[g]));
+        }
+
+        // Log-normal: most descriptions are short, a few are many times the median
+        int descriptionLength = (int) Math.round(MEDIAN_DESCRIPTION_LENGTH
+                                                 * Math.exp(random.nextGaussian() * DESCRIPTION_LENGTH_SIGMA));
+        descriptionLength = Math.max(MIN_DESCRIPTION_LENGTH, Math.min(MAX_DESCRIPTION_LENGTH, descriptionLength));
+
+        int tracks = (int) Math.min(5000, Math.exp(3.5 + random.nextGaussian() * 1.2));
+        int albums = tracks / (4 + random.nextInt(9)) + (tracks > 0 ? 1 : 0);
+        String link = random.nextInt(10) < 7 ? "http://www." + latinWord(random) + ".com/" : null;
+        String coverUrl = "http://avatars.example.com/get-music-content/" + Long.toHexString(random.nextLong())
+                + ".p." + id + "/";
+        return new Artist(String.valueOf(id),
+                          name.toString(),
+                          genres,
+                          tracks,
+                          albums,
+                          link,
+                          description(random, name, descriptionLength),
+                          new Cover(coverUrl + "300x300", coverUrl + "1000x1000"));
+    }
+
+    private String description(Random random, CharSequence name, int length)
+    {
+        StringBuilder description = new StringBuilder(length + 100);
+        while (description.length() < length)
+        {
+            if (description.length() > 0)
+            {
+                description.append(' ');
+            }
+            switch (random.nextInt(4))
+            {
+                case 0:
+                    description.append("В ").append(1950 + random.nextInt(67)).append(" году ").append(name)
+                            .append(' ').append(DESCRIPTION_PHRASES[random.nextInt(DESCRIPTION_PHRASES.length)])
+                            .append(" «");
+                    appendWord(description, random, LATIN_SYLLABLES, true);
+                    description.append("».");
+                    break;
+                case 1:
+                    // Straight quotes and backslashes have to be escaped in the feed
+                    description.append("Критики назвали его \"");
+                    appendWord(description, random, CYRILLIC_SYLLABLES, false);
+                    description.append("\\");
+                    appendWord(description, random, LATIN_SYLLABLES, false);
+                    description.append("\".");
+                    break;
+                default:
+                    int words = 5 + random.nextInt(10);
+                    for (int w = 0; w < words; w++)
+                    {
+                        if (w > 0)
+                        {
+                            description.append(random.nextInt(8) == 0 ? ", " : " ");
+                        }
+                        int start = description.length();
+                        description.append(vocabularyWord(random));
+                        if (w == 0)
+                        {
+                            description.setCharAt(start, Character.toUpperCase(description.charAt(start)));
+                        }
+                    }
+                    description.append('.');
+                    break;
+            }
+        }
+        return description.toString();
+    }
+
+    private String vocabularyWord(Random random)
+    {
+        double value = random.nextDouble() * vocabularyWeights[VOCABULARY_SIZE - 1];
+        int index = Arrays.binarySearch(vocabularyWeights, value);
+        return vocabulary[index >= 0 ? index : -index - 1];
+    }
+
+    private static String latinWord(Random random)
+    {
+        StringBuilder word = new StringBuilder();
+        appendWord(word, random, LATIN_SYLLABLES, false);
+        return word.toString();
+    }
+
+    private static void appendWord(StringBuilder out, Random random, String[] syllables, boolean capitalized)
+    {
+        int start = out.length();
+        int count = 1 + random.nextInt(4);
+        for (int s = 0; s < count; s++)
+        {
+            out.append(syllables[random.nextInt(syllables.length)]);
+        }
+        if (capitalized)
+        {
+            out.setCharAt(start, Character.toUpperCase(out.charAt(start)));
+        }
+    }
+
+    private static boolean contains(String[] values, int count, String value)
+    {
+        for (int i = 0; i < count; i++)
+        {
+            if (values[i].equals(value))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return an index of the weights, each index with the probability proportional to its weight
+     */
+    private static int pick(Random random, int[] weights)
+    {
+        int total = 0;
+        for (int weight : weights)
+        {
+            total += weight;
+        }
+        int value = random.nextInt(total);
+        for (int i = 0; i < weights.length; i++)
+        {
+            value -= weights[i];
+            if (value < 0)
+            {
+                return i;
+            }
+        }
+        throw new AssertionError();
+    }
+}
@@ -0,0 +1,93 @@
+package com.yamblz.hardoperations.communication;
+
+import com.google.gson.Gson;
+import com.yamblz.hardoperations.model.Artist;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SyntheticCatalogueTest
+{
+    private static final int SIZE = 10000;
+
+    @Test
+    public void sameSeedMakesSameFeed()
+    {
+        assertEquals(new SyntheticCatalogue(7).json(500), new SyntheticCatalogue(7).json(500));
+        assertNotEquals(new SyntheticCatalogue(7).json(500), new SyntheticCatalogue(8).json(500));
+    }
+
+    @Test
+    public void feedParsesIntoTheGeneratedArtists() throws Exception
+    {
+        SyntheticCatalogue catalogue = new SyntheticCatalogue(1);
+        List<Artist> artists = new ArtistsStreamParser(new Gson())
+                .parse(new StringReader(catalogue.json(1000)), new ArtistsStreamParser.BatchListener()
+                {
+                    @Override
+                    public void onBatchParsed(List<Artist> batch)
+                    {
+                    }
+                });
+
+        assertEquals(1000, artists.size());
+        Gson gson = new Gson();
+        for (int i = 0; i < artists.size(); i += 97)
+        {
+            assertEquals(gson.toJson(catalogue.artist(i)), gson.toJson(artists.get(i)));
+        }
+    }
+
+    @Test
+    public void catalogueLooksLikeBundledFeed()
+    {
+        SyntheticCatalogue catalogue = new SyntheticCatalogue(1);
+        int[] descriptionLengths = new int[SIZE];
+        Map<String, Integer> genreCounts = new HashMap<String, Integer>();
+        int cyrillicChars = 0;
+        int letters = 0;
+        for (int i = 0; i < SIZE; i++)
+        {
+            Artist artist = catalogue.artist(i);
+            String description = artist.getDescription();
+            descriptionLengths[i] = description.length();
+            for (int c = 0; c < description.length(); c++)
+            {
+                char ch = description.charAt(c);
+                if (Character.isLetter(ch))
+                {
+                    letters++;
+                    if (Character.UnicodeBlock.of(ch) == Character.UnicodeBlock.CYRILLIC)
+                    {
+                        cyrillicChars++;
+                    }
+                }
+            }
+            for (String genre : artist.getGenres())
+            {
+                Integer count = genreCounts.get(genre);
+                genreCounts.put(genre, count == null ? 1 : count + 1);
+            }
+        }
+        Arrays.sort(descriptionLengths);
+
+        int median = descriptionLengths[SIZE / 2];
+        assertTrue("median description length " + median, median > 180 && median < 300);
+        assertTrue(descriptionLengths[SIZE - 1] > 3 * median);
+        assertTrue("cyrillic letters " + cyrillicChars + " of " + letters, cyrillicChars > letters * 3 / 4);
+        // The bundled feed has twice as much pop as rock
+        int pop = genreCounts.get("pop");
+        int rock = genreCounts.get("rock");
+        assertTrue("pop " + pop + ", rock " + rock, pop > rock * 3 / 2 && pop < rock * 5 / 2);
+        assertTrue(genreCounts.size() > 35);
+    }
+}
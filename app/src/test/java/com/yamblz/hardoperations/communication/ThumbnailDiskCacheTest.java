@@ -0,0 +1,229 @@
+package com.yamblz.hardoperations.communication;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ThumbnailDiskCacheTest
+{
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final long MAX_BYTES = 1024 * 1024;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final AtomicInteger networkHits = new AtomicInteger();
+    private HttpServer server;
+    private File directory;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new HttpHandler()
+        {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException
+            {
+                networkHits.incrementAndGet();
+                String path = exchange.getRequestURI().getPath();
+                byte[] body = ("cover " + path).getBytes(UTF_8);
+                exchange.sendResponseHeaders(path.startsWith("/missing") ? 404 : 200, body.length);
+                OutputStream out = exchange.getResponseBody();
+                out.write(body);
+                out.close();
+            }
+        });
+        server.start();
+        directory = temporaryFolder.newFolder("posters");
+    }
+
+    @After
+    public void tearDown()
+    {
+        server.stop(0);
+    }
+
+    @Test
+    public void downloadsEveryThumbnailOnce() throws IOException
+    {
+        ThumbnailDiskCache cache = newCache(MAX_BYTES);
+        assertNull(cache.peek(url("a"), 100, 50));
+
+        File first = cache.get(url("a"), 100, 50);
+        File second = cache.get(url("a"), 100, 50);
+
+        assertEquals(1, networkHits.get());
+        assertEquals(first, second);
+        assertEquals("cover /a 100x50", read(first));
+        assertEquals(first, cache.peek(url("a"), 100, 50));
+    }
+
+    @Test
+    public void everySizeIsSeparateThumbnail() throws IOException
+    {
+        ThumbnailDiskCache cache = newCache(MAX_BYTES);
+
+        File small = cache.get(url("a"), 100, 50);
+        File big = cache.get(url("a"), 200, 100);
+        cache.get(url("b"), 100, 50);
+
+        assertEquals(3, networkHits.get());
+        assertEquals("cover /a 100x50", read(small));
+        assertEquals("cover /a 200x100", read(big));
+    }
+
+    @Test
+    public void warmStartReadsThumbnailsFromDisk() throws IOException
+    {
+        ThumbnailDiskCache cache = newCache(MAX_BYTES);
+        cache.get(url("a"), 100, 50);
+        cache.get(url("b"), 100, 50);
+        assertEquals(2, networkHits.get());
+
+        ThumbnailDiskCache restarted = newCache(MAX_BYTES);
+        assertEquals(cache.getSize(), restarted.getSize());
+        assertNotNull(restarted.peek(url("a"), 100, 50));
+        assertEquals("cover /b 100x50", read(restarted.get(url("b"), 100, 50)));
+        assertEquals(2, networkHits.get());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedBeyondBudget() throws IOException
+    {
+        // Every thumbnail below is 15 bytes, two fit into the budget
+        ThumbnailDiskCache cache = newCache(30);
+        cache.get(url("a"), 100, 50);
+        cache.get(url("b"), 100, 50);
+        cache.get(url("a"), 100, 50);
+        cache.get(url("c"), 100, 50);
+
+        assertEquals(30, cache.getSize());
+        assertNotNull(cache.peek(url("a"), 100, 50));
+        assertNull(cache.peek(url("b"), 100, 50));
+        assertNotNull(cache.peek(url("c"), 100, 50));
+        assertEquals(2, directory.list().length);
+
+        cache.get(url("b"), 100, 50);
+        assertEquals(4, networkHits.get());
+    }
+
+    @Test
+    public void failedDownloadIsNotCached() throws IOException
+    {
+        ThumbnailDiskCache cache = newCache(MAX_BYTES);
+        try
+        {
+            cache.get(url("missing"), 100, 50);
+            fail();
+        }
+        catch (IOException expected)
+        {
+            // 404
+        }
+        assertNull(cache.peek(url("missing"), 100, 50));
+        assertEquals(0, directory.list().length);
+        assertEquals(1, networkHits.get());
+    }
+
+    @Test
+    public void corruptThumbnailIsDownloadedAgain() throws IOException
+    {
+        ThumbnailDiskCache cache = newCache(MAX_BYTES);
+        File file = cache.get(url("a"), 100, 50);
+        cache.get(url("b"), 100, 50);
+        long sizeOfB = cache.getSize() - file.length();
+        OutputStream out = new FileOutputStream(file);
+        out.write(new byte[]{(byte) 0xff, (byte) 0xd8});
+        out.close();
+
+        // What the poster loader does when the file can't be decoded
+        cache.remove(url("a"), 100, 50);
+        assertNull(cache.peek(url("a"), 100, 50));
+        assertEquals(sizeOfB, cache.getSize());
+
+        assertEquals("cover /a 100x50", read(cache.get(url("a"), 100, 50)));
+        assertEquals(3, networkHits.get());
+        assertEquals(sizeOfB + file.length(), cache.getSize());
+    }
+
+    @Test
+    public void thumbnailDeletedBySystemIsDownloadedAgain() throws IOException
+    {
+        ThumbnailDiskCache cache = newCache(MAX_BYTES);
+        File file = cache.get(url("a"), 100, 50);
+        long size = cache.getSize();
+        assertTrue(file.delete());
+
+        assertNull(cache.peek(url("a"), 100, 50));
+        assertEquals(0, cache.getSize());
+        assertEquals("cover /a 100x50", read(cache.get(url("a"), 100, 50)));
+        assertEquals(2, networkHits.get());
+        assertEquals(size, cache.getSize());
+    }
+
+    private ThumbnailDiskCache newCache(long maxBytes)
+    {
+        return new ThumbnailDiskCache(directory, maxBytes, new ThumbnailDiskCache.Transcoder()
+        {
+            @Override
+            public byte[] transcode(InputStream source, int width, int height) throws IOException
+            {
+                return (readFully(source) + " " + width + "x" + height).getBytes(UTF_8);
+            }
+        });
+    }
+
+    private String url(String path)
+    {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/" + path;
+    }
+
+    private static String read(File file) throws IOException
+    {
+        InputStream in = new FileInputStream(file);
+        try
+        {
+            return readFully(in);
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    private static String readFully(InputStream in) throws IOException
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[1024];
+        int read;
+        while ((read = in.read(buffer)) != -1)
+        {
+            out.write(buffer, 0, read);
+        }
+        return new String(out.toByteArray(), UTF_8);
+    }
+}
@@ -0,0 +1,110 @@
+package com.yamblz.hardoperations.model;
+
+import com.google.gson.Gson;
+import com.yamblz.hardoperations.communication.SyntheticCatalogue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+
+public class ArtistIndexTest
+{
+    private static final int FEED_SIZE = 5000;
+
+    private final SyntheticCatalogue catalogue = new SyntheticCatalogue(1);
+    private List<Artist> artists;
+    private ArtistStore store;
+    private ArtistIndex index;
+
+    @Before
+    public void setUp()
+    {
+        artists = Arrays.asList(new Gson().fromJson(catalogue.json(FEED_SIZE), Artist[].class));
+        store = new ArtistStore();
+        store.addAll(artists);
+        index = ArtistIndex.build(store);
+    }
+
+    @Test
+    public void queriesMatchLinearScan()
+    {
+        Random random = new Random(7);
+        int[] orders = {ArtistIndex.ORDER_DEFAULT, ArtistIndex.ORDER_TRACKS, ArtistIndex.ORDER_ALBUMS};
+        for (int i = 0; i < 50; i++)
+        {
+            int[] genreOrdinals = new int[random.nextInt(4)];
+            for (int g = 0; g < genreOrdinals.length; g++)
+            {
+                genreOrdinals[g] = random.nextInt(store.getGenreOrdinalsCount());
+            }
+            boolean matchAll = random.nextBoolean();
+            int order = orders[random.nextInt(orders.length)];
+
+            assertArrayEquals(Arrays.toString(genreOrdinals) + " all " + matchAll + " order " + order,
+                              linearScan(genreOrdinals, matchAll, order),
+                              index.query(genreOrdinals, matchAll, order));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownGenreIsRejected()
+    {
+        index.query(new int[]{store.getGenreOrdinalsCount()}, false, ArtistIndex.ORDER_DEFAULT);
+    }
+
+    private int[] linearScan(int[] genreOrdinals, boolean matchAll, final int order)
+    {
+        List<Integer> rows = new ArrayList<Integer>();
+        for (int row = 0; row < artists.size(); row++)
+        {
+            List<String> genres = Arrays.asList(artists.get(row).getGenres());
+            boolean matches = genreOrdinals.length == 0 || matchAll;
+            for (int ordinal : genreOrdinals)
+            {
+                boolean hasGenre = genres.contains(store.getGenreName(ordinal));
+                matches = matchAll ? matches && hasGenre : matches || hasGenre;
+            }
+            if (matches)
+            {
+                rows.add(row);
+            }
+        }
+
+        if (order != ArtistIndex.ORDER_DEFAULT)
+        {
+            // Stable sort keeps the store order of equal counts
+            Collections.sort(rows, new Comparator<Integer>()
+            {
+                @Override
+                public int compare(Integer lhs, Integer rhs)
+                {
+                    Artist left = artists.get(lhs);
+                    Artist right = artists.get(rhs);
+                    return order == ArtistIndex.ORDER_TRACKS
+                            ? compareDescending(left.getTracksCount(), right.getTracksCount())
+                            : compareDescending(left.getAlbumsCount(), right.getAlbumsCount());
+                }
+            });
+        }
+
+        int[] result = new int[rows.size()];
+        for (int i = 0; i < result.length; i++)
+        {
+            result[i] = rows.get(i);
+        }
+        return result;
+    }
+
+    private static int compareDescending(int lhs, int rhs)
+    {
+        return lhs > rhs ? -1 : (lhs == rhs ? 0 : 1);
+    }
+}
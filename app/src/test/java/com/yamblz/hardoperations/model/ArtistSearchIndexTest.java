@@ -0,0 +1,166 @@
+package com.yamblz.hardoperations.model;
+
+import com.google.gson.Gson;
+import com.yamblz.hardoperations.communication.SyntheticCatalogue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ArtistSearchIndexTest
+{
+    private static final int FEED_SIZE = 3000;
+
+    private final SyntheticCatalogue catalogue = new SyntheticCatalogue(1);
+    private List<Artist> artists;
+    private ArtistSearchIndex index;
+
+    @Before
+    public void setUp()
+    {
+        artists = new ArrayList<Artist>(Arrays.asList(new Gson().fromJson(catalogue.json(FEED_SIZE),
+                                                                          Artist[].class)));
+        artists.add(new Artist("1", "Земфира", new String[]{"rusrock"}, 100, 10, null,
+                               "Её песни — «Ромашки», «Искала».", null));
+        artists.add(new Artist("2", "ДДТ", new String[]{"rusrock"}, 200, 20, null, null, null));
+        ArtistStore store = new ArtistStore();
+        store.addAll(artists);
+        index = ArtistSearchIndex.build(store);
+    }
+
+    @Test
+    public void matchesWordPrefixesIgnoringCase()
+    {
+        assertRows(new int[]{FEED_SIZE}, "земф");
+        assertRows(new int[]{FEED_SIZE}, "ЗЕМФИРА");
+        assertRows(new int[]{FEED_SIZE + 1}, "ддт");
+        assertRows(new int[]{FEED_SIZE}, "ромашки иск");
+        assertRows(new int[0], "ромашки ддт");
+    }
+
+    @Test
+    public void yoIsFoldedIntoYe()
+    {
+        assertRows(new int[]{FEED_SIZE}, "ее");
+        assertRows(new int[]{FEED_SIZE}, "ЕЁ");
+    }
+
+    @Test
+    public void emptyQueryMatchesEverything()
+    {
+        assertNull(index.query(""));
+        assertNull(index.query(" ,. "));
+    }
+
+    @Test
+    public void tokenizesLikeArtists()
+    {
+        assertEquals(Arrays.asList("хип", "хоп", "2016"), ArtistSearchIndex.tokenize("Хип-хоп, 2016!"));
+    }
+
+    @Test
+    public void typedQueriesMatchScan()
+    {
+        String typed = "критики назвали его в 19";
+        ArtistSearchIndex.Search search = index.newSearch();
+        for (int i = 1; i <= typed.length(); i++)
+        {
+            assertSearch(search, typed.substring(0, i));
+        }
+        // Erasing and retyping the last word
+        for (int i = typed.length(); i > typed.length() - 8; i--)
+        {
+            assertSearch(search, typed.substring(0, i));
+        }
+        assertSearch(search, "критики назвали году");
+        assertSearch(search, "кри 19");
+    }
+
+    private void assertSearch(ArtistSearchIndex.Search search, String query)
+    {
+        int[] expected = scan(query);
+        long[] found = search.update(query);
+        assertArrayEquals(query, expected, rows(found));
+        assertArrayEquals(query, expected, rows(index.query(query)));
+    }
+
+    private void assertRows(int[] expected, String query)
+    {
+        assertArrayEquals(query, expected, rows(index.query(query)));
+        assertArrayEquals(query, expected, scan(query));
+    }
+
+    private int[] rows(long[] bits)
+    {
+        if (bits == null)
+        {
+            return scan("");
+        }
+        List<Integer> rows = new ArrayList<Integer>();
+        for (int row = 0; row < artists.size(); row++)
+        {
+            if ((bits[row >>> 6] & (1L << row)) != 0)
+            {
+                rows.add(row);
+            }
+        }
+        return toArray(rows);
+    }
+
+    private int[] scan(String query)
+    {
+        List<String> queryWords = words(query);
+        List<Integer> rows = new ArrayList<Integer>();
+        for (int row = 0; row < artists.size(); row++)
+        {
+            Artist artist = artists.get(row);
+            List<String> artistWords = words(artist.getName() + " " + artist.getDescription());
+            boolean matches = true;
+            for (String queryWord : queryWords)
+            {
+                boolean found = false;
+                for (String artistWord : artistWords)
+                {
+                    found |= artistWord.startsWith(queryWord);
+                }
+                matches &= found;
+            }
+            if (matches)
+            {
+                rows.add(row);
+            }
+        }
+        return toArray(rows);
+    }
+
+    private static List<String> words(String text)
+    {
+        List<String> words = new ArrayList<String>();
+        for (String word : text.toLowerCase(new Locale("ru")).replace('ё', 'е').split("[^\\p{L}\\p{Nd}]+"))
+        {
+            if (word.length() > 0)
+            {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+
+    private static int[] toArray(List<Integer> list)
+    {
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++)
+        {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+}
@@ -0,0 +1,178 @@
+package com.yamblz.hardoperations.model;
+
+import com.google.gson.Gson;
+import com.yamblz.hardoperations.communication.SyntheticCatalogue;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ArtistStoreTest
+{
+    private static final int FEED_SIZE = 100000;
+
+    private final SyntheticCatalogue catalogue = new SyntheticCatalogue(1);
+    private final Gson gson = new Gson();
+
+    @Test
+    public void storeKeepsAllFields()
+    {
+        List<Artist> artists = mixedArtists();
+
+        ArtistStore store = new ArtistStore();
+        store.addAll(artists.subList(0, 1));
+        store.addAll(artists.subList(1, artists.size()));
+
+        assertSameArtists(artists, store);
+    }
+
+    @Test
+    public void readStoreKeepsAllFields() throws Exception
+    {
+        List<Artist> artists = mixedArtists();
+        ArtistStore store = new ArtistStore();
+        store.addAll(artists);
+        byte[] columns = write(store);
+
+        ArtistStore read = ArtistStore.read(ByteBuffer.wrap(columns));
+
+        assertSameArtists(artists, read);
+        assertEquals(store.getGenreOrdinalsCount(), read.getGenreOrdinalsCount());
+        // Written again as they were read
+        assertArrayEquals(columns, write(read));
+    }
+
+    @Test(expected = BufferUnderflowException.class)
+    public void truncatedColumnsAreNotRead() throws Exception
+    {
+        ArtistStore store = new ArtistStore();
+        store.addAll(mixedArtists());
+        byte[] columns = write(store);
+
+        ArtistStore.read(ByteBuffer.wrap(columns, 0, columns.length - 1));
+    }
+
+    private List<Artist> mixedArtists()
+    {
+        List<Artist> artists = new ArrayList<Artist>(Arrays.asList(gson.fromJson(catalogue.json(100),
+                                                                                 Artist[].class)));
+        artists.add(new Artist("2915", "Ne-Yo", new String[]{"rnb", "pop"}, 256, 152, "http://neyo.com/", "певец",
+                               new Cover("http://avatars.yandex.net/get-music-content/05ae00fc.p.2915/300x300",
+                                         "http://avatars.yandex.net/get-music-content/05ae00fc.p.2915/1000x1000")));
+        artists.add(new Artist("7", "Other", new String[0], 1, 1, null, null,
+                               new Cover("http://covers.example.com/7.jpg", null)));
+        artists.add(new Artist("8", null, null, 0, 0, null, "", null));
+        return artists;
+    }
+
+    private static byte[] write(ArtistStore store) throws Exception
+    {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        store.writeTo(out);
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    private static void assertSameArtists(List<Artist> artists, ArtistStore store)
+    {
+        assertEquals(artists.size(), store.size());
+        for (int row = 0; row < artists.size(); row++)
+        {
+            Artist expected = artists.get(row);
+            Artist actual = store.getArtist(row);
+            assertEquals(expected.getId(), actual.getId());
+            assertEquals(expected.getName(), actual.getName());
+            assertArrayEquals(expected.getGenres() != null ? expected.getGenres() : new String[0], actual.getGenres());
+            assertEquals(expected.getTracksCount(), actual.getTracksCount());
+            assertEquals(expected.getAlbumsCount(), actual.getAlbumsCount());
+            assertEquals(expected.getWebCite(), actual.getWebCite());
+            assertEquals(expected.getDescription(), actual.getDescription());
+            if (expected.getCover() == null)
+            {
+                assertNull(actual.getCover());
+            }
+            else
+            {
+                assertEquals(expected.getCover().getSmallImageUrl(), actual.getCover().getSmallImageUrl());
+                assertEquals(expected.getCover().getBigImageUrl(), actual.getCover().getBigImageUrl());
+            }
+        }
+    }
+
+    @Test
+    public void genresAreInterned()
+    {
+        List<Artist> artists = Arrays.asList(gson.fromJson(catalogue.json(1000), Artist[].class));
+        Set<String> genres = new HashSet<String>();
+        for (Artist artist : artists)
+        {
+            genres.addAll(Arrays.asList(artist.getGenres()));
+        }
+        ArtistStore store = new ArtistStore();
+        store.addAll(artists);
+
+        assertEquals(genres.size(), store.getGenreOrdinalsCount());
+        for (int row = 0; row < store.size(); row++)
+        {
+            for (int i = 0; i < store.getGenresCount(row); i++)
+            {
+                int ordinal = store.getGenreOrdinal(row, i);
+                assertTrue(ordinal >= 0 && ordinal < store.getGenreOrdinalsCount());
+            }
+        }
+    }
+
+    @Test
+    public void storeRetainsLessThanArtistObjects() throws Exception
+    {
+        String feed = catalogue.json(FEED_SIZE);
+
+        long heapBefore = usedHeap();
+        ArtistStore store = buildStore(feed);
+        long storeRetained = usedHeap() - heapBefore;
+
+        heapBefore = usedHeap();
+        Artist[] artists = gson.fromJson(feed, Artist[].class);
+        long objectsRetained = usedHeap() - heapBefore;
+
+        assertEquals(artists.length, store.size());
+        assertEquals(artists[FEED_SIZE / 2].getDescription(), store.getDescription(FEED_SIZE / 2));
+        // Cyrillic descriptions take as many bytes in UTF-8 as in strings, the rest of an artist shrinks
+        assertTrue("objects " + objectsRetained + "b, store " + storeRetained + "b",
+                   storeRetained * 5 < objectsRetained * 4);
+    }
+
+    // Parsed artists must not stay reachable from the test's frame while the store is measured
+    private ArtistStore buildStore(String feed)
+    {
+        ArtistStore store = new ArtistStore();
+        store.addAll(Arrays.asList(gson.fromJson(feed, Artist[].class)));
+        store.trimToSize();
+        return store;
+    }
+
+    private static long usedHeap() throws InterruptedException
+    {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++)
+        {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,103 @@
+package com.yamblz.hardoperations.model;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonSyntaxException;
+import com.yamblz.hardoperations.communication.SyntheticCatalogue;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class GeneratedTypeAdaptersTest
+{
+    private final Gson reflective = new Gson();
+    private final SyntheticCatalogue catalogue = new SyntheticCatalogue(1);
+    private final Gson generated = new GsonBuilder()
+            .registerTypeAdapterFactory(new GeneratedTypeAdapterFactory())
+            .create();
+
+    @Test
+    public void modelClassesGetGeneratedAdapters()
+    {
+        assertTrue(generated.getAdapter(Artist.class) instanceof Artist$$TypeAdapter);
+        assertTrue(generated.getAdapter(Cover.class) instanceof Cover$$TypeAdapter);
+    }
+
+    @Test
+    public void readsFeedLikeReflectiveAdapters()
+    {
+        String feed = catalogue.json(500);
+        assertSameArtists(reflective.fromJson(feed, Artist[].class), generated.fromJson(feed, Artist[].class));
+    }
+
+    @Test
+    public void readsNullsAndUnknownNamesLikeReflectiveAdapters()
+    {
+        String json = "[null, {\"id\": 7, \"name\": true, \"genres\": null, \"tracks\": null, \"albums\": \"3\","
+                + " \"unknown\": {\"nested\": [1, {\"a\": null}]}, \"cover\": {\"small\": null, \"extra\": 1}},"
+                + " {\"genres\": [\"rock\", null, 1]}]";
+        Artist[] expected = reflective.fromJson(json, Artist[].class);
+        Artist[] artists = generated.fromJson(json, Artist[].class);
+
+        assertSameArtists(expected, artists);
+        assertNull(artists[0]);
+        assertEquals("7", artists[1].getId());
+        assertEquals("true", artists[1].getName());
+        assertEquals(3, artists[1].getAlbumsCount());
+        assertArrayEquals(new String[]{"rock", null, "1"}, artists[2].getGenres());
+    }
+
+    @Test(expected = JsonSyntaxException.class)
+    public void malformedNumberIsSyntaxError()
+    {
+        generated.fromJson("{\"tracks\": \"many\"}", Artist.class);
+    }
+
+    @Test
+    public void writesLikeReflectiveAdapters()
+    {
+        Artist[] artists = reflective.fromJson(catalogue.json(100), Artist[].class);
+        Artist[] withNulls = Arrays.copyOf(artists, artists.length + 2);
+        withNulls[artists.length + 1] = new Artist("1", null, null, 0, 0, null, null, new Cover(null, "big"));
+
+        assertEquals(reflective.toJson(withNulls), generated.toJson(withNulls));
+        assertEquals(new GsonBuilder().serializeNulls().create().toJson(withNulls),
+                     new GsonBuilder().serializeNulls()
+                             .registerTypeAdapterFactory(new GeneratedTypeAdapterFactory())
+                             .create()
+                             .toJson(withNulls));
+    }
+
+    private static void assertSameArtists(Artist[] expected, Artist[] actual)
+    {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++)
+        {
+            if (expected[i] == null)
+            {
+                assertNull(actual[i]);
+                continue;
+            }
+            assertEquals(expected[i].getId(), actual[i].getId());
+            assertEquals(expected[i].getName(), actual[i].getName());
+            assertArrayEquals(expected[i].getGenres(), actual[i].getGenres());
+            assertEquals(expected[i].getTracksCount(), actual[i].getTracksCount());
+            assertEquals(expected[i].getAlbumsCount(), actual[i].getAlbumsCount());
+            assertEquals(expected[i].getWebCite(), actual[i].getWebCite());
+            assertEquals(expected[i].getDescription(), actual[i].getDescription());
+            if (expected[i].getCover() == null)
+            {
+                assertNull(actual[i].getCover());
+                continue;
+            }
+            assertEquals(expected[i].getCover().getSmallImageUrl(), actual[i].getCover().getSmallImageUrl());
+            assertEquals(expected[i].getCover().getBigImageUrl(), actual[i].getCover().getBigImageUrl());
+        }
+    }
+}
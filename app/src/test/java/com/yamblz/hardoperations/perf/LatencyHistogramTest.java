@@ -0,0 +1,78 @@
+package com.yamblz.hardoperations.perf;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest
+{
+    @Test
+    public void percentilesFallIntoBuckets()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 90; i++)
+        {
+            histogram.record(3000000);
+        }
+        for (int i = 0; i < 10; i++)
+        {
+            histogram.record(40000000);
+        }
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(40000000, histogram.getMaxNanos());
+        assertEquals(6700000, histogram.getMeanNanos());
+        // 3ms falls into [2048us, 4096us), 40ms is the max
+        assertEquals(4096000, histogram.getPercentileNanos(50));
+        assertEquals(4096000, histogram.getPercentileNanos(90));
+        assertEquals(40000000, histogram.getPercentileNanos(99));
+    }
+
+    @Test
+    public void resetClearsEverything()
+    {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(1000);
+        histogram.reset();
+
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMaxNanos());
+        assertEquals(0, histogram.getPercentileNanos(50));
+    }
+
+    @Test
+    public void hugeDurationsGoToLastBucket()
+    {
+        assertEquals(0, LatencyHistogram.bucketOf(999));
+        assertEquals(1, LatencyHistogram.bucketOf(1000));
+        assertEquals(LatencyHistogram.BUCKETS_COUNT - 1, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void recordingDoesNotAllocate()
+    {
+        com.sun.management.ThreadMXBean threadBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        // Warm up so the measured loop runs compiled code
+        for (int i = 0; i < 100000; i++)
+        {
+            FrameTimings.record(FrameTimings.PHASE_DRAW, System.nanoTime() - i);
+        }
+
+        long allocatedBefore = threadBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 100000; i++)
+        {
+            FrameTimings.record(FrameTimings.PHASE_DRAW, System.nanoTime() - i);
+        }
+        long allocated = threadBean.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        assertTrue(FrameTimings.getHistogram(FrameTimings.PHASE_DRAW).getCount() >= 200000);
+        // Reading the counter itself may allocate a little
+        assertTrue("allocated " + allocated + " bytes", allocated < 1024);
+        FrameTimings.reset();
+    }
+}
@@ -0,0 +1,92 @@
+package com.yamblz.hardoperations.ui;
+
+import com.yamblz.hardoperations.communication.SyntheticCatalogue;
+import com.yamblz.hardoperations.model.Artist;
+import com.yamblz.hardoperations.model.ArtistCardModel;
+import com.yamblz.hardoperations.model.ArtistDescriptions;
+import com.yamblz.hardoperations.model.ArtistStore;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class ArtistCardsTest
+{
+    private static final int ARTISTS_COUNT = 200;
+
+    private final CountingQuantityStrings quantityStrings = new CountingQuantityStrings();
+    private ArtistStore store;
+    private ArtistCards cards;
+
+    @Before
+    public void setUp()
+    {
+        SyntheticCatalogue catalogue = new SyntheticCatalogue(11);
+        List<Artist> artists = new ArrayList<Artist>();
+        for (int i = 0; i < ARTISTS_COUNT; i++)
+        {
+            artists.add(catalogue.artist(i));
+        }
+        store = new ArtistStore();
+        store.addAll(artists);
+        cards = new ArtistCards(store, quantityStrings);
+    }
+
+    @Test
+    public void recentlyUsedModelsAreKept()
+    {
+        ArtistCardModel first = cards.get(150);
+        assertEquals(Long.toString(store.getId(150)), first.getId());
+
+        // Row 150 stays the most recently used one while the rest of the cache is refilled twice
+        for (int row = 0; row < 128; row++)
+        {
+            cards.get(row);
+            assertSame(first, cards.get(150));
+        }
+        assertEquals(129, quantityStrings.built);
+
+        ArtistCardModel evicted = cards.get(0);
+        assertEquals(130, quantityStrings.built);
+        assertSame(evicted, cards.get(0));
+    }
+
+    @Test
+    public void prebuildBuildsCardsAtPositions()
+    {
+        int[] rows = {199, 3, 42, 7};
+        cards.prebuild(rows, 1, 8);
+        assertEquals(3, quantityStrings.built);
+
+        cards.get(3);
+        cards.get(42);
+        cards.get(7);
+        assertEquals(3, quantityStrings.built);
+
+        cards.prebuild(null, ARTISTS_COUNT - 2, 8);
+        assertEquals(5, quantityStrings.built);
+    }
+
+    private static final class CountingQuantityStrings implements ArtistDescriptions.QuantityStrings
+    {
+        int built;
+
+        @Override
+        public String getAlbums(int count)
+        {
+            built++;
+            return count + " albums";
+        }
+
+        @Override
+        public String getTracks(int count)
+        {
+            return count + " tracks";
+        }
+    }
+}
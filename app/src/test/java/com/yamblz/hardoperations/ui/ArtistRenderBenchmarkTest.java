@@ -0,0 +1,198 @@
+package com.yamblz.hardoperations.ui;
+
+import android.app.Application;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Build;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import com.yamblz.hardoperations.BuildConfig;
+import com.yamblz.hardoperations.communication.Api;
+import com.yamblz.hardoperations.model.ArtistStore;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Locale;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drives the cards of the whole {@code artists.json} through bind, measure and draw into a software canvas,
+ * the way a list scrolled from top to bottom does, and reports time and allocated bytes per card.
+ * <p>
+ * Fails when the main thread allocates more than the gate per card on average or in the 99th percentile
+ * of the cards, a few heavy frames fail the test as well as many moderate ones. The percentile rather than
+ * the maximum: now and then the thread allocation counter of the JVM charges a whole TLAB to a single card.
+ * Gates are set by the {@code render.*} system properties of the unit tests in {@code app/build.gradle};
+ * they include what Robolectric's shadows allocate, so they are only comparable between runs of this test.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = Build.VERSION_CODES.M)
+public class ArtistRenderBenchmarkTest
+{
+    private static final int WIDTH = 1080;
+    // The last cards are bound before measuring the others, so that class loading doesn't count
+    // while the caches of the measured cards stay cold
+    private static final int WARM_UP_CARDS = 50;
+
+    private static final long DEFAULT_MAX_FRAME_BYTES = 32 * 1024;
+    private static final long DEFAULT_MAX_REDRAW_BYTES = 2 * 1024;
+    private static final long DEFAULT_MAX_FRAME_BYTES_P99 = 48 * 1024;
+    private static final long DEFAULT_MAX_REDRAW_BYTES_P99 = 8 * 1024;
+    private static final int GATED_PERCENTILE = 99;
+
+    private ArtistsAdapter adapter;
+    private ArtistsAdapter.ArtistVH holder;
+    private Canvas canvas;
+    private com.sun.management.ThreadMXBean threads;
+
+    @Before
+    public void setUp()
+    {
+        Application application = RuntimeEnvironment.application;
+        ArtistStore store = new ArtistStore();
+        store.addAll(Arrays.asList(new Api(application).getArtists()));
+        adapter = new ArtistsAdapter();
+        adapter.setCards(new ArtistCards(store, new ResourcesQuantityStrings(application.getResources())),
+                         store.size());
+        holder = adapter.onCreateViewHolder(new FrameLayout(application), 0);
+        canvas = new Canvas(Bitmap.createBitmap(WIDTH, WIDTH, Bitmap.Config.ARGB_8888));
+        threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    }
+
+    @Test
+    public void framesStayUnderAllocationGates()
+    {
+        int measuredCards = adapter.getItemCount() - WARM_UP_CARDS;
+        for (int position = measuredCards; position < adapter.getItemCount(); position++)
+        {
+            frame(position);
+            redraw();
+        }
+
+        long threadId = Thread.currentThread().getId();
+        Phase frames = new Phase("bind+measure+draw", measuredCards);
+        Phase redraws = new Phase("redraw", measuredCards);
+        for (int position = 0; position < measuredCards; position++)
+        {
+            long startBytes = threads.getThreadAllocatedBytes(threadId);
+            long startNanos = System.nanoTime();
+            frame(position);
+            long frameBytes = threads.getThreadAllocatedBytes(threadId);
+            long frameNanos = System.nanoTime();
+            redraw();
+            frames.add(frameNanos - startNanos, frameBytes - startBytes);
+            redraws.add(System.nanoTime() - frameNanos, threads.getThreadAllocatedBytes(threadId) - frameBytes);
+        }
+        frames.report();
+        redraws.report();
+
+        frames.assertUnder(Long.getLong("render.maxFrameAllocatedBytes", DEFAULT_MAX_FRAME_BYTES),
+                           Long.getLong("render.maxFrameAllocatedBytesP99", DEFAULT_MAX_FRAME_BYTES_P99));
+        redraws.assertUnder(Long.getLong("render.maxRedrawAllocatedBytes", DEFAULT_MAX_REDRAW_BYTES),
+                            Long.getLong("render.maxRedrawAllocatedBytesP99", DEFAULT_MAX_REDRAW_BYTES_P99));
+    }
+
+    /**
+     * A card scrolled into the list: bound to the recycled view, measured, laid out and drawn.
+     */
+    private void frame(int position)
+    {
+        adapter.onBindViewHolder(holder, position);
+        View view = holder.itemView;
+        view.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                     View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED));
+        view.layout(0, 0, view.getMeasuredWidth(), view.getMeasuredHeight());
+        draw();
+    }
+
+    /**
+     * A card drawn again as is, e.g. while the list scrolls.
+     */
+    private void redraw()
+    {
+        draw();
+    }
+
+    /**
+     * Robolectric's {@link View#draw(Canvas)} draws only the background, the card itself is drawn in onDraw.
+     */
+    private void draw()
+    {
+        holder.artistView.onDraw(canvas);
+    }
+
+    private static final class Phase
+    {
+        private final String name;
+        private final long[] bytesPerCard;
+        private int count;
+        private long totalNanos;
+        private long totalBytes;
+        private long maxBytes;
+        private int maxBytesPosition;
+
+        Phase(String name, int cards)
+        {
+            this.name = name;
+            this.bytesPerCard = new long[cards];
+        }
+
+        void add(long nanos, long bytes)
+        {
+            if (bytes > maxBytes)
+            {
+                maxBytes = bytes;
+                maxBytesPosition = count;
+            }
+            bytesPerCard[count++] = bytes;
+            totalNanos += nanos;
+            totalBytes += bytes;
+        }
+
+        void report()
+        {
+            System.out.println(String.format(Locale.US,
+                                             "%s: %d cards, %.1f us and %d bytes per card,"
+                                                     + " %dth percentile %d bytes, max %d bytes at %d",
+                                             name,
+                                             count,
+                                             totalNanos / 1000.0 / count,
+                                             totalBytes / count,
+                                             GATED_PERCENTILE,
+                                             percentile(GATED_PERCENTILE),
+                                             maxBytes,
+                                             maxBytesPosition));
+        }
+
+        private long percentile(int percent)
+        {
+            long[] sorted = Arrays.copyOf(bytesPerCard, count);
+            Arrays.sort(sorted);
+            return sorted[Math.min(count - 1, count * percent / 100)];
+        }
+
+        /**
+         * @param maxAverageBytes    gate of the bytes per card on average
+         * @param maxPercentileBytes gate of the bytes per card in the {@link #GATED_PERCENTILE}th percentile
+         */
+        void assertUnder(long maxAverageBytes, long maxPercentileBytes)
+        {
+            long averageBytes = totalBytes / count;
+            assertTrue(name + " allocates " + averageBytes + " bytes per card, the gate is " + maxAverageBytes,
+                       averageBytes <= maxAverageBytes);
+            long percentileBytes = percentile(GATED_PERCENTILE);
+            assertTrue(name + " allocates " + percentileBytes + " bytes per card in the " + GATED_PERCENTILE
+                               + "th percentile, the gate is " + maxPercentileBytes,
+                       percentileBytes <= maxPercentileBytes);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.yamblz.hardoperations.ui;
+
+import android.app.Application;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Build;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import com.yamblz.hardoperations.BuildConfig;
+import com.yamblz.hardoperations.R;
+import com.yamblz.hardoperations.model.Artist;
+import com.yamblz.hardoperations.model.ArtistStore;
+import com.yamblz.hardoperations.model.Cover;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = Build.VERSION_CODES.M)
+public class ArtistViewFidelityTest
+{
+    private static final int WIDTH = 1080;
+    // Not in artists.json and one per test, layouts of the cards are cached by no other test
+    private static final String LOW_FIDELITY_ID = "987654321";
+    private static final String FULL_FIDELITY_ID = "987654322";
+
+    private ArtistsAdapter adapter;
+    private ArtistsAdapter.ArtistVH holder;
+    private PosterScheduler posterScheduler;
+    private TextLayoutCache textLayoutCache;
+    private int textWidth;
+
+    @Before
+    public void setUp()
+    {
+        Application application = RuntimeEnvironment.application;
+        // StaticLayout of Robolectric breaks lines only at '\n'
+        String description = "1\n2\n3\n4\n5\n6\n7\n8\n9\n10";
+        ArtistStore store = new ArtistStore();
+        store.addAll(Arrays.asList(newArtist(LOW_FIDELITY_ID, description), newArtist(FULL_FIDELITY_ID, description)));
+        adapter = new ArtistsAdapter();
+        adapter.setCards(new ArtistCards(store, new ResourcesQuantityStrings(application.getResources())), 2);
+        holder = adapter.onCreateViewHolder(new FrameLayout(application), 0);
+        posterScheduler = PosterScheduler.with(application);
+        textLayoutCache = TextLayoutCache.with(application);
+        textWidth = WIDTH - 2 * application.getResources().getDimensionPixelOffset(R.dimen.artist_card_lr_text_padding);
+    }
+
+    @Test
+    public void lowFidelityCardLoadsNothingUntilUpgraded()
+    {
+        int loadsBefore = loads();
+        adapter.setLowFidelity(true);
+        adapter.onBindViewHolder(holder, 0);
+        int lowFidelityHeight = frame();
+
+        assertEquals(loadsBefore, loads());
+        assertNull(textLayoutCache.peek(LOW_FIDELITY_ID, TextLayoutCache.KIND_DESCRIPTION_COLLAPSED, textWidth));
+
+        adapter.setLowFidelity(false);
+        holder.artistView.showFullFidelity();
+        int fullHeight = frame();
+
+        assertEquals(loadsBefore + 1, loads());
+        assertNotNull(textLayoutCache.peek(LOW_FIDELITY_ID, TextLayoutCache.KIND_DESCRIPTION_COLLAPSED, textWidth));
+        // The place of the collapsed description was kept
+        assertEquals(fullHeight, lowFidelityHeight);
+        holder.artistView.cancelPoster();
+    }
+
+    @Test
+    public void fullFidelityCardLoadsPosterOnBind()
+    {
+        int loadsBefore = loads();
+        adapter.onBindViewHolder(holder, 1);
+        frame();
+
+        assertEquals(loadsBefore + 1, loads());
+        holder.artistView.cancelPoster();
+    }
+
+    private static Artist newArtist(String id, String description)
+    {
+        return new Artist(id, "Artist " + id, new String[]{"rock"}, 10, 2, null, description,
+                          new Cover("http://example.com/" + id + "/small", "http://example.com/" + id + "/big"));
+    }
+
+    private int loads()
+    {
+        return posterScheduler.getInFlightCount() + posterScheduler.getPendingCount();
+    }
+
+    /**
+     * @return the measured height of the card
+     */
+    private int frame()
+    {
+        View view = holder.itemView;
+        view.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                     View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED));
+        view.layout(0, 0, view.getMeasuredWidth(), view.getMeasuredHeight());
+        holder.artistView.onDraw(new Canvas(Bitmap.createBitmap(WIDTH, WIDTH, Bitmap.Config.ARGB_8888)));
+        return view.getMeasuredHeight();
+    }
+}
@@ -0,0 +1,133 @@
+package com.yamblz.hardoperations.ui;
+
+import com.yamblz.hardoperations.model.Artist;
+import com.yamblz.hardoperations.model.ArtistStore;
+import com.yamblz.hardoperations.model.Cover;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ArtistsDiffCallbackTest
+{
+    @Test
+    public void editDistanceMatchesLongestCommonSubsequence()
+    {
+        Random random = new Random(17);
+        for (int i = 0; i < 200; i++)
+        {
+            long[] oldIds = randomIds(random);
+            long[] newIds = randomIds(random);
+            assertEquals(oldIds.length + newIds.length - 2 * lcs(oldIds, newIds),
+                         ArtistsDiffCallback.editDistance(oldIds, newIds));
+        }
+        assertEquals(0, ArtistsDiffCallback.editDistance(new long[]{1, 2, 3}, new long[]{1, 2, 3}));
+        assertEquals(4, ArtistsDiffCallback.editDistance(new long[]{1, 2, 3}, new long[]{3, 2, 1}));
+    }
+
+    @Test
+    public void cardsOfReloadAreMatchedById()
+    {
+        ArtistStore oldStore = store(artist("1", "Земфира", 100), artist("2", "ДДТ", 200), artist("3", "Кино", 50));
+        ArtistStore newStore = store(artist("3", "Кино", 50), artist("1", "Земфира", 101), artist("4", "Сплин", 70));
+        ArtistsDiffCallback diff = new ArtistsDiffCallback(oldStore, null, 3, newStore, null, 3);
+
+        assertTrue(diff.areItemsTheSame(0, 1));
+        assertFalse(diff.areContentsTheSame(0, 1));
+        assertTrue(diff.areItemsTheSame(2, 0));
+        assertTrue(diff.areContentsTheSame(2, 0));
+        assertFalse(diff.areItemsTheSame(1, 2));
+    }
+
+    @Test
+    public void rowsOfSameStoreAreComparedByRow()
+    {
+        ArtistStore store = store(artist("1", "a", 1), artist("2", "b", 2), artist("3", "c", 3));
+        ArtistsDiffCallback diff = new ArtistsDiffCallback(store, null, 2, store, new int[]{2, 0}, 3);
+
+        assertEquals(2, diff.getOldListSize());
+        assertEquals(2, diff.getNewListSize());
+        assertTrue(diff.areItemsTheSame(0, 1));
+        assertTrue(diff.areContentsTheSame(0, 1));
+        assertFalse(diff.areItemsTheSame(1, 0));
+    }
+
+    @Test
+    public void reorderingLongListIsNotDiffed()
+    {
+        int size = 20000;
+        Artist[] artists = new Artist[size];
+        int[] reversed = new int[size];
+        // Every 20th artist filtered out
+        int[] filtered = new int[size - size / 20];
+        for (int row = 0; row < size; row++)
+        {
+            artists[row] = artist(Integer.toString(row), "artist " + row, row);
+            reversed[row] = size - 1 - row;
+        }
+        for (int i = 0; i < filtered.length; i++)
+        {
+            filtered[i] = i + i / 19 + 1;
+        }
+        ArtistStore store = store(artists);
+
+        assertTrue(new ArtistsDiffCallback(store, null, size, store, filtered, size).isWorthCalculating());
+        assertFalse(new ArtistsDiffCallback(store, null, size, store, reversed, size).isWorthCalculating());
+    }
+
+    private static long[] randomIds(Random random)
+    {
+        List<Long> ids = new ArrayList<Long>();
+        for (long id = 0; id < 30; id++)
+        {
+            if (random.nextBoolean())
+            {
+                ids.add(id);
+            }
+        }
+        Collections.shuffle(ids, random);
+        long[] array = new long[ids.size()];
+        for (int i = 0; i < array.length; i++)
+        {
+            array[i] = ids.get(i);
+        }
+        return array;
+    }
+
+    private static int lcs(long[] a, long[] b)
+    {
+        int[][] lengths = new int[a.length + 1][b.length + 1];
+        for (int i = 1; i <= a.length; i++)
+        {
+            for (int j = 1; j <= b.length; j++)
+            {
+                lengths[i][j] = a[i - 1] == b[j - 1]
+                        ? lengths[i - 1][j - 1] + 1
+                        : Math.max(lengths[i - 1][j], lengths[i][j - 1]);
+            }
+        }
+        return lengths[a.length][b.length];
+    }
+
+    private static Artist artist(String id, String name, int tracks)
+    {
+        return new Artist(id, name, new String[]{"rock"}, tracks, 1, null, "description " + name,
+                          new Cover("http://covers.example.com/" + id + "/300x300",
+                                    "http://covers.example.com/" + id + "/1000x1000"));
+    }
+
+    private static ArtistStore store(Artist... artists)
+    {
+        ArtistStore store = new ArtistStore();
+        store.addAll(Arrays.asList(artists));
+        return store;
+    }
+}
@@ -0,0 +1,301 @@
+package com.yamblz.hardoperations.ui;
+
+import android.app.Application;
+import android.os.Build;
+import android.support.annotation.NonNull;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import com.yamblz.hardoperations.BuildConfig;
+import com.yamblz.hardoperations.communication.Api;
+import com.yamblz.hardoperations.communication.SyntheticCatalogue;
+import com.yamblz.hardoperations.model.Artist;
+import com.yamblz.hardoperations.model.ArtistStore;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.net.InetSocketAddress;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Loads synthetic catalogues of {@code scale.artists} sizes through {@link ArtistsLoader} and a remote {@link Api}
+ * served by a local server, the way a launch does:
+ * <ul>
+ * <li>cold: the feed is downloaded gzipped and parsed while it streams in;</li>
+ * <li>copy: the local copy of the feed is parsed, in parallel on a multi-core machine;</li>
+ * <li>snapshot: the snapshot of the copy is read.</li>
+ * </ul>
+ * Fails when the load time per artist, the time to the first batch or the peak heap per artist exceeds its gate.
+ * Gates and sizes are set by the {@code scale.*} system properties of the unit tests in {@code app/build.gradle},
+ * 1M artists are loaded with {@code -PscaleArtists=10000,100000,1000000 -PtestMaxHeap=4g}.
+ * <p>
+ * The peak heap is the peak of the heap pools other than eden above the heap used before the load, that is
+ * what survived at least one collection. Eden is left out: its peak is its size, not the size of the catalogue.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = Build.VERSION_CODES.M)
+public class ArtistsLoaderScaleTest
+{
+    private static final long SEED = 25;
+    private static final String FEED_PATH = "/artists.json";
+    private static final String E_TAG = "\"synthetic\"";
+    // Files of Api in the files dir
+    private static final String[] API_FILES = {"artists.json", "artists.json.validators", "artists.snapshot"};
+    private static final String SNAPSHOT_FILE = "artists.snapshot";
+
+    private static final String DEFAULT_SIZES = "10000,100000";
+    private static final long DEFAULT_MAX_LOAD_MICROS_PER_ARTIST = 500;
+    private static final long DEFAULT_MAX_FIRST_BATCH_MILLIS = 500;
+    private static final long DEFAULT_MAX_PEAK_HEAP_BYTES_PER_ARTIST = 6 * 1024;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final SyntheticCatalogue catalogue = new SyntheticCatalogue(SEED);
+    private Application application;
+    private HttpServer server;
+    private volatile File feedFile;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        application = RuntimeEnvironment.application;
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext(FEED_PATH, new HttpHandler()
+        {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException
+            {
+                exchange.getResponseHeaders().set("ETag", E_TAG);
+                if (E_TAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match")))
+                {
+                    exchange.sendResponseHeaders(304, -1);
+                    exchange.close();
+                    return;
+                }
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+                exchange.sendResponseHeaders(200, 0);
+                OutputStream out = new GZIPOutputStream(exchange.getResponseBody());
+                copy(feedFile, out);
+                out.close();
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown()
+    {
+        server.stop(0);
+    }
+
+    @Test
+    public void cataloguesLoadWithinGates() throws IOException
+    {
+        String url = "http://127.0.0.1:" + server.getAddress().getPort() + FEED_PATH;
+        // Warms up the classes and adapters of the whole path
+        load("warm-up", 1000, url);
+        for (String size : System.getProperty("scale.artists", DEFAULT_SIZES).split(","))
+        {
+            int count = Integer.parseInt(size.trim());
+            load("cold", count, url).assertWithinGates();
+
+            new File(application.getFilesDir(), SNAPSHOT_FILE).delete();
+            load("copy", count, url).assertWithinGates();
+
+            load("snapshot", count, url).assertWithinGates();
+        }
+    }
+
+    @NonNull
+    private Load load(@NonNull String name, int count, @NonNull String url) throws IOException
+    {
+        if (!name.equals("copy") && !name.equals("snapshot"))
+        {
+            for (String fileName : API_FILES)
+            {
+                new File(application.getFilesDir(), fileName).delete();
+            }
+            feedFile = writeFeed(count);
+        }
+
+        final Load load = new Load(name, count);
+        ArtistsLoader loader = new ArtistsLoader(application, new Api(application, url));
+        // Batches are published on the main thread, Robolectric runs them right away as the test is on it
+        loader.setOnBatchLoadedListener(new ArtistsLoader.OnBatchLoadedListener()
+        {
+            @Override
+            public void onBatchLoaded(@NonNull ArtistCards loaded, int from, int count)
+            {
+                if (load.firstBatchNanos == 0)
+                {
+                    load.firstBatchNanos = System.nanoTime();
+                }
+            }
+        });
+
+        long baselineHeap = usedHeapAfterGc();
+        resetHeapPeaks();
+        load.startNanos = System.nanoTime();
+        ArtistCards cards = loader.loadInBackground();
+        load.endNanos = System.nanoTime();
+        load.peakHeapBytes = heapPeaksWithoutEden() - baselineHeap;
+
+        ArtistStore store = cards.getStore();
+        assertEquals(count, store.size());
+        assertSameArtist(catalogue.artist(count - 1), store, count - 1);
+        load.report();
+        return load;
+    }
+
+    private static void assertSameArtist(@NonNull Artist expected, @NonNull ArtistStore store, int row)
+    {
+        Artist actual = store.getArtist(row);
+        assertEquals(expected.getId(), actual.getId());
+        assertEquals(expected.getName(), actual.getName());
+        assertArrayEquals(expected.getGenres(), actual.getGenres());
+        assertEquals(expected.getDescription(), actual.getDescription());
+    }
+
+    @NonNull
+    private File writeFeed(int count) throws IOException
+    {
+        File file = temporaryFolder.newFile();
+        Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+        try
+        {
+            catalogue.writeJson(count, out);
+        }
+        finally
+        {
+            out.close();
+        }
+        return file;
+    }
+
+    private static void copy(@NonNull File file, @NonNull OutputStream out) throws IOException
+    {
+        InputStream in = new FileInputStream(file);
+        try
+        {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1)
+            {
+                out.write(buffer, 0, read);
+            }
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    private static long usedHeapAfterGc()
+    {
+        System.gc();
+        Runtime runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void resetHeapPeaks()
+    {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+        {
+            if (pool.getType() == MemoryType.HEAP)
+            {
+                pool.resetPeakUsage();
+            }
+        }
+    }
+
+    private static long heapPeaksWithoutEden()
+    {
+        long peak = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+        {
+            if (pool.getType() == MemoryType.HEAP && !pool.getName().contains("Eden"))
+            {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    private static final class Load
+    {
+        private final String name;
+        private final int count;
+        long startNanos;
+        long firstBatchNanos;
+        long endNanos;
+        long peakHeapBytes;
+
+        Load(String name, int count)
+        {
+            this.name = name;
+            this.count = count;
+        }
+
+        void report()
+        {
+            System.out.println(String.format(Locale.US,
+                                             "%s %d artists: %.1f ms, first batch %.1f ms, %.2f us and"
+                                                     + " %d peak heap bytes per artist",
+                                             name,
+                                             count,
+                                             (endNanos - startNanos) / 1e6,
+                                             (firstBatchNanos - startNanos) / 1e6,
+                                             (endNanos - startNanos) / 1e3 / count,
+                                             peakHeapBytes / count));
+        }
+
+        void assertWithinGates()
+        {
+            long loadMicrosPerArtist = (endNanos - startNanos) / 1000 / count;
+            long maxLoadMicros = Long.getLong("scale.maxLoadMicrosPerArtist", DEFAULT_MAX_LOAD_MICROS_PER_ARTIST);
+            assertTrue(name + " load of " + count + " artists takes " + loadMicrosPerArtist
+                               + " us per artist, the gate is " + maxLoadMicros,
+                       loadMicrosPerArtist <= maxLoadMicros);
+
+            long firstBatchMillis = (firstBatchNanos - startNanos) / 1000000;
+            long maxFirstBatchMillis = Long.getLong("scale.maxFirstBatchMillis", DEFAULT_MAX_FIRST_BATCH_MILLIS);
+            assertTrue(firstBatchNanos != 0);
+            assertTrue(name + " load of " + count + " artists shows the first batch in " + firstBatchMillis
+                               + " ms, the gate is " + maxFirstBatchMillis,
+                       firstBatchMillis <= maxFirstBatchMillis);
+
+            long heapBytesPerArtist = peakHeapBytes / count;
+            long maxHeapBytes = Long.getLong("scale.maxPeakHeapBytesPerArtist", DEFAULT_MAX_PEAK_HEAP_BYTES_PER_ARTIST);
+            assertTrue(name + " load of " + count + " artists peaks at " + heapBytesPerArtist
+                               + " heap bytes per artist, the gate is " + maxHeapBytes,
+                       heapBytesPerArtist <= maxHeapBytes);
+        }
+    }
+}
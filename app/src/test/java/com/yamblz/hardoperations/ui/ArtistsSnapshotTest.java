@@ -0,0 +1,181 @@
+package com.yamblz.hardoperations.ui;
+
+import android.app.Application;
+import android.os.Build;
+
+import com.google.gson.Gson;
+import com.yamblz.hardoperations.BuildConfig;
+import com.yamblz.hardoperations.communication.Api;
+import com.yamblz.hardoperations.communication.ArtistsSnapshot;
+import com.yamblz.hardoperations.communication.SyntheticCatalogue;
+import com.yamblz.hardoperations.model.Artist;
+import com.yamblz.hardoperations.model.ArtistStore;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = Build.VERSION_CODES.M)
+public class ArtistsSnapshotTest
+{
+    private static final int FEED_SIZE = 20000;
+    private static final int WARM_UP_FEED_SIZE = 1000;
+    private static final long SOURCE_STAMP = 42;
+    // Nothing listens there: the background refresh fails and the local copy of the feed stays
+    private static final String FEED_URL = "http://127.0.0.1:1/artists.json";
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final SyntheticCatalogue catalogue = new SyntheticCatalogue(1);
+    private final Gson gson = new Gson();
+    private Application application;
+
+    @Before
+    public void setUp()
+    {
+        application = RuntimeEnvironment.application;
+    }
+
+    @Test
+    public void snapshotKeepsAllFields() throws Exception
+    {
+        List<Artist> artists = Arrays.asList(gson.fromJson(catalogue.json(100), Artist[].class));
+        File file = temporaryFolder.newFile();
+        ArtistsSnapshot.write(file, newStore(artists), SOURCE_STAMP);
+
+        ArtistStore snapshot = ArtistsSnapshot.open(file, SOURCE_STAMP);
+
+        assertEquals(artists.size(), snapshot.size());
+        for (int i = artists.size() - 1; i >= 0; i--)
+        {
+            Artist expected = artists.get(i);
+            Artist actual = snapshot.getArtist(i);
+            assertEquals(expected.getId(), actual.getId());
+            assertEquals(expected.getName(), actual.getName());
+            assertArrayEquals(expected.getGenres(), actual.getGenres());
+            assertEquals(expected.getTracksCount(), actual.getTracksCount());
+            assertEquals(expected.getAlbumsCount(), actual.getAlbumsCount());
+            assertEquals(expected.getWebCite(), actual.getWebCite());
+            assertEquals(expected.getDescription(), actual.getDescription());
+            assertEquals(expected.getCover().getSmallImageUrl(), actual.getCover().getSmallImageUrl());
+            assertEquals(expected.getCover().getBigImageUrl(), actual.getCover().getBigImageUrl());
+        }
+    }
+
+    @Test
+    public void staleOrBrokenSnapshotIsNotOpened() throws Exception
+    {
+        List<Artist> artists = Arrays.asList(gson.fromJson(catalogue.json(10), Artist[].class));
+        File file = temporaryFolder.newFile();
+        ArtistsSnapshot.write(file, newStore(artists), SOURCE_STAMP);
+
+        assertNull(ArtistsSnapshot.open(file, SOURCE_STAMP + 1));
+        assertNull(ArtistsSnapshot.open(new File(temporaryFolder.getRoot(), "missing"), SOURCE_STAMP));
+
+        RandomAccessFile truncated = new RandomAccessFile(file, "rw");
+        truncated.setLength(truncated.length() - 1);
+        truncated.close();
+        assertNull(ArtistsSnapshot.open(file, SOURCE_STAMP));
+    }
+
+    /**
+     * Both loads go through {@link ArtistsLoader}, the first one parses the local copy of the feed
+     * and saves the snapshot, the second one maps it.
+     */
+    @Test
+    public void snapshotLoadsFasterAndRetainsLessThanJson() throws Exception
+    {
+        // Warms up the classes and adapters of both paths
+        writeFeed(WARM_UP_FEED_SIZE);
+        load();
+        load();
+
+        writeFeed(FEED_SIZE);
+        long heapBefore = usedHeap();
+        long jsonStartNanos = System.nanoTime();
+        ArtistCards parsed = load();
+        long jsonNanos = System.nanoTime() - jsonStartNanos;
+        long jsonRetained = usedHeap() - heapBefore;
+
+        heapBefore = usedHeap();
+        long snapshotStartNanos = System.nanoTime();
+        ArtistCards mapped = load();
+        long snapshotNanos = System.nanoTime() - snapshotStartNanos;
+        long snapshotRetained = usedHeap() - heapBefore;
+
+        ArtistStore parsedStore = parsed.getStore();
+        ArtistStore mappedStore = mapped.getStore();
+        assertEquals(FEED_SIZE, parsedStore.size());
+        assertEquals(FEED_SIZE, mappedStore.size());
+        assertEquals(parsedStore.getDescription(FEED_SIZE / 2), mappedStore.getDescription(FEED_SIZE / 2));
+        assertEquals(parsed.getSearchIndex().size(), mapped.getSearchIndex().size());
+        assertTrue("json " + jsonNanos + "ns, snapshot " + snapshotNanos + "ns", snapshotNanos < jsonNanos);
+        // Both keep the same indexes, the snapshot leaves the texts in the mapping
+        assertTrue("json " + jsonRetained + "b, snapshot " + snapshotRetained + "b",
+                   snapshotRetained * 5 < jsonRetained * 4);
+    }
+
+    private static ArtistStore newStore(List<Artist> artists)
+    {
+        ArtistStore store = new ArtistStore();
+        store.addAll(artists);
+        return store;
+    }
+
+    private ArtistCards load()
+    {
+        return new ArtistsLoader(application, new Api(application, FEED_URL)).loadInBackground();
+    }
+
+    /**
+     * Writes the local copy of the remote feed the way a finished download leaves it, drops its snapshot.
+     */
+    private void writeFeed(int count) throws IOException
+    {
+        //noinspection ResultOfMethodCallIgnored
+        new File(application.getFilesDir(), "artists.snapshot").delete();
+        Writer out = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(new File(application.getFilesDir(), "artists.json")), "UTF-8"));
+        try
+        {
+            catalogue.writeJson(count, out);
+        }
+        finally
+        {
+            out.close();
+        }
+    }
+
+    private static long usedHeap() throws InterruptedException
+    {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++)
+        {
+            System.gc();
+            Thread.sleep(50);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
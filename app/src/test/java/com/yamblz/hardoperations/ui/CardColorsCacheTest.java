@@ -0,0 +1,136 @@
+package com.yamblz.hardoperations.ui;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.support.annotation.NonNull;
+
+import com.yamblz.hardoperations.BuildConfig;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = Build.VERSION_CODES.M)
+public class CardColorsCacheTest
+{
+    private static final int MEMORY_CACHE_SIZE = 16;
+    private static final int MAX_DISK_ENTRIES = 10;
+    // Of the ids "artist0" to "artist99"
+    private static final int MAX_RECORD_BYTES = 2 + 8 + 3 * 4;
+
+    @Rule
+    public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private File file;
+    private Bitmap poster;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        file = new File(temporaryFolder.getRoot(), "card_colors");
+        poster = Bitmap.createBitmap(10, 10, Bitmap.Config.ARGB_8888);
+    }
+
+    @Test
+    public void colorsAreReadFromDiskInBackground() throws Exception
+    {
+        CardColorsCache written = newCache();
+        written.put("artist1", colors(1));
+        assertEquals(1, written.getDiskIndexSize());
+
+        CardColorsCache cache = newCache();
+        assertNull(cache.get("artist1"));
+        assertSameColors(colors(1), extract(cache, "artist1"));
+        assertSameColors(colors(1), cache.get("artist1"));
+    }
+
+    @Test
+    public void diskTierKeepsRecentlyUsedArtistsAndIsCompacted() throws Exception
+    {
+        CardColorsCache written = newCache();
+        for (int i = 0; i < 100; i++)
+        {
+            written.put("artist" + i, colors(i));
+        }
+        assertEquals(MAX_DISK_ENTRIES, written.getDiskIndexSize());
+        assertTrue(file.length() + " bytes", file.length() <= 2 * MAX_DISK_ENTRIES * MAX_RECORD_BYTES);
+
+        CardColorsCache cache = newCache();
+        assertSameColors(colors(99), extract(cache, "artist99"));
+        assertSameColors(colors(90), extract(cache, "artist90"));
+        // The 10 most recent ones only
+        assertEquals(MAX_DISK_ENTRIES, cache.getDiskIndexSize());
+    }
+
+    @Test
+    public void trimToZeroDropsDiskIndexUntilNeeded() throws Exception
+    {
+        CardColorsCache cache = newCache();
+        for (int i = 0; i < 5; i++)
+        {
+            cache.put("artist" + i, colors(i));
+        }
+        assertEquals(5, cache.getDiskIndexSize());
+
+        cache.trimToFraction(0);
+        assertEquals(0, cache.getMemoryCacheSize());
+        assertEquals(0, cache.getDiskIndexSize());
+
+        assertSameColors(colors(3), extract(cache, "artist3"));
+        assertEquals(5, cache.getDiskIndexSize());
+    }
+
+    @NonNull
+    private CardColorsCache newCache()
+    {
+        return new CardColorsCache(RuntimeEnvironment.application.getResources(),
+                                   MEMORY_CACHE_SIZE,
+                                   file,
+                                   MAX_DISK_ENTRIES);
+    }
+
+    @NonNull
+    private CardColors extract(@NonNull CardColorsCache cache, @NonNull String artistId) throws Exception
+    {
+        final CardColors[] extracted = new CardColors[1];
+        cache.extract(artistId, poster, new CardColorsCache.OnColorsReadyListener()
+        {
+            @Override
+            public void onColorsReady(@NonNull String artistId, @NonNull CardColors colors)
+            {
+                extracted[0] = colors;
+            }
+        });
+        // Waits for the background work, then delivers its result
+        cache.getDiskIndexSize();
+        ShadowLooper.runUiThreadTasks();
+        return extracted[0];
+    }
+
+    @NonNull
+    private static CardColors colors(int index)
+    {
+        return new CardColors(0x01000000 + index, 0x02000000 + index, 0x03000000 + index);
+    }
+
+    private static void assertSameColors(@NonNull CardColors expected, @NonNull CardColors actual)
+    {
+        assertEquals(expected.getBackgroundColor(), actual.getBackgroundColor());
+        assertEquals(expected.getTitleColor(), actual.getTitleColor());
+        assertEquals(expected.getTextColor(), actual.getTextColor());
+    }
+}
@@ -0,0 +1,68 @@
+package com.yamblz.hardoperations.ui;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import com.yamblz.hardoperations.BuildConfig;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = Build.VERSION_CODES.M)
+public class CardSnapshotCacheTest
+{
+    private static final int WIDTH = 100;
+    private static final int HEIGHT = 50;
+    // Two snapshots of WIDTH x HEIGHT fit
+    private static final int MAX_BYTES = 2 * WIDTH * HEIGHT * 4;
+
+    @Test
+    public void onlySmallCardsAreSnapshotted()
+    {
+        // At most 5MB per snapshot
+        CardSnapshotCache cache = new CardSnapshotCache(40 * 1024 * 1024);
+        assertTrue(cache.fits(1080, 1200));
+        // An expanded card
+        assertFalse(cache.fits(1080, 1300));
+        assertFalse(cache.fits(64, 4096));
+        assertFalse(cache.fits(0, 100));
+    }
+
+    @Test
+    public void evictedSnapshotsAreReused()
+    {
+        CardSnapshotCache cache = new CardSnapshotCache(MAX_BYTES);
+        Bitmap first = cache.obtain(WIDTH, HEIGHT);
+        cache.put("1", first);
+        cache.put("2", cache.obtain(WIDTH, HEIGHT));
+        cache.put("3", cache.obtain(WIDTH, HEIGHT));
+        assertNull(cache.get("1", WIDTH));
+
+        assertNotSame(first, cache.obtain(WIDTH, HEIGHT + 1));
+        assertSame(first, cache.obtain(WIDTH, HEIGHT));
+        assertNotSame(first, cache.obtain(WIDTH, HEIGHT));
+    }
+
+    @Test
+    public void drawnSnapshotsAreReusedOnceNotDrawn()
+    {
+        CardSnapshotCache cache = new CardSnapshotCache(MAX_BYTES);
+        Bitmap first = cache.obtain(WIDTH, HEIGHT);
+        cache.put("1", first);
+        cache.onDrawnChanged(null, first);
+        cache.invalidate("1");
+
+        assertNotSame(first, cache.obtain(WIDTH, HEIGHT));
+        cache.onDrawnChanged(first, null);
+        assertSame(first, cache.obtain(WIDTH, HEIGHT));
+    }
+}
@@ -0,0 +1,158 @@
+package com.yamblz.hardoperations.ui;
+
+import android.app.Application;
+import android.content.ComponentCallbacks2;
+import android.graphics.Bitmap;
+import android.os.Build;
+
+import com.yamblz.hardoperations.BuildConfig;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = Build.VERSION_CODES.M)
+public class MemoryBudgetTest
+{
+    private static final int MEMORY_CLASS = 64;
+    private static final int BITMAP_SIZE = 100;
+    private static final int BITMAP_BYTES = BITMAP_SIZE * BITMAP_SIZE * 4;
+
+    private MemoryBudget budget;
+    private PosterMemoryCache posters;
+    private CardSnapshotCache snapshots;
+    private CardColorsCache colors;
+    private TextLayoutCache layouts;
+
+    @Before
+    public void setUp()
+    {
+        Application application = RuntimeEnvironment.application;
+        budget = new MemoryBudget(MEMORY_CLASS, false);
+        posters = new PosterMemoryCache(budget.getPosterCacheBytes());
+        snapshots = new CardSnapshotCache(budget.getSnapshotCacheBytes());
+        colors = new CardColorsCache(application.getResources(), budget.getPaletteCacheSize(), null, 0);
+        layouts = new TextLayoutCache(budget.getLayoutCacheSize());
+        layouts.updatePaints(application.getResources());
+        budget.register(posters);
+        budget.register(snapshots);
+        budget.register(colors);
+        budget.register(layouts);
+    }
+
+    @Test
+    public void sizesCachesFromMemoryClass()
+    {
+        assertEquals(MEMORY_CLASS * 1024 * 1024 / 7, budget.getPosterCacheBytes());
+        assertEquals(MEMORY_CLASS * 1024 * 1024 / 8, budget.getSnapshotCacheBytes());
+        assertEquals(MEMORY_CLASS * 1024 * 1024 / 8, budget.getParseBufferBytes());
+        assertEquals(512, budget.getPaletteCacheSize());
+        assertEquals(32, budget.getLayoutCacheSize());
+        assertEquals(Bitmap.Config.ARGB_8888, budget.getPosterConfig());
+
+        MemoryBudget lowRam = new MemoryBudget(MEMORY_CLASS, true);
+        assertEquals(budget.getPosterCacheBytes() / 2, lowRam.getPosterCacheBytes());
+        assertEquals(budget.getSnapshotCacheBytes() / 2, lowRam.getSnapshotCacheBytes());
+        assertEquals(budget.getParseBufferBytes() / 2, lowRam.getParseBufferBytes());
+        assertEquals(Bitmap.Config.RGB_565, lowRam.getPosterConfig());
+    }
+
+    @Test
+    public void trimLevelsShrinkCaches()
+    {
+        fillCaches();
+        assertShrunkTo(1);
+
+        budget.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE);
+        assertShrunkTo(0.75f);
+
+        budget.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW);
+        assertShrunkTo(0.5f);
+
+        budget.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL);
+        assertShrunkTo(0.25f);
+
+        budget.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND);
+        assertShrunkTo(0);
+    }
+
+    @Test
+    public void lowMemoryFlushesCaches()
+    {
+        fillCaches();
+        budget.onLowMemory();
+        assertShrunkTo(0);
+    }
+
+    @Test
+    public void cachesRegrowAfterTrim()
+    {
+        fillCaches();
+        budget.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+        fillCaches();
+        assertTrue(posters.size() > posters.maxSize() - BITMAP_BYTES);
+    }
+
+    @Test
+    public void appMemoryCallbacksReachRegisteredCaches()
+    {
+        final float[] trimmedTo = {1};
+        MemoryBudget.with(RuntimeEnvironment.application).register(new MemoryBudget.Trimmable()
+        {
+            @Override
+            public void trimToFraction(float fraction)
+            {
+                trimmedTo[0] = fraction;
+            }
+        });
+
+        RuntimeEnvironment.application.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN);
+        assertEquals(0.5f, trimmedTo[0], 0);
+        RuntimeEnvironment.application.onLowMemory();
+        assertEquals(0, trimmedTo[0], 0);
+    }
+
+    private void fillCaches()
+    {
+        for (int i = 0; posters.size() + BITMAP_BYTES <= posters.maxSize(); i++)
+        {
+            posters.set("poster" + i, Bitmap.createBitmap(BITMAP_SIZE, BITMAP_SIZE, Bitmap.Config.ARGB_8888));
+        }
+        for (int i = 0; snapshots.getSizeBytes() + BITMAP_BYTES <= budget.getSnapshotCacheBytes(); i++)
+        {
+            snapshots.put("card" + i, Bitmap.createBitmap(BITMAP_SIZE, BITMAP_SIZE, Bitmap.Config.ARGB_8888));
+        }
+        for (int i = 0; i < budget.getPaletteCacheSize(); i++)
+        {
+            colors.put("artist" + i, new CardColors(0, 0, 0));
+        }
+        for (int i = 0; i < budget.getLayoutCacheSize(); i++)
+        {
+            layouts.get("artist" + i, TextLayoutCache.KIND_TITLE, "Artist " + i, 500);
+        }
+    }
+
+    /**
+     * Asserts the caches are full up to the fraction of their max sizes, give or take one entry.
+     */
+    private void assertShrunkTo(float fraction)
+    {
+        assertFilledTo(fraction, posters.size(), posters.maxSize(), BITMAP_BYTES);
+        assertFilledTo(fraction, snapshots.getSizeBytes(), budget.getSnapshotCacheBytes(), BITMAP_BYTES);
+        assertFilledTo(fraction, colors.getMemoryCacheSize(), budget.getPaletteCacheSize(), 1);
+        assertFilledTo(fraction, layouts.size(), budget.getLayoutCacheSize(), 1);
+    }
+
+    private static void assertFilledTo(float fraction, int size, int maxSize, int entrySize)
+    {
+        assertTrue(size + " of " + maxSize, size <= maxSize * fraction);
+        assertTrue(size + " of " + maxSize, size > maxSize * fraction - entrySize);
+    }
+}
@@ -0,0 +1,228 @@
+package com.yamblz.hardoperations.ui;
+
+import android.graphics.Bitmap;
+import android.graphics.drawable.Drawable;
+import android.support.annotation.NonNull;
+
+import com.squareup.picasso.Picasso;
+import com.squareup.picasso.Target;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PosterSchedulerTest
+{
+    private FakeLoader loader;
+    private PosterScheduler scheduler;
+
+    @Before
+    public void setUp()
+    {
+        loader = new FakeLoader();
+        scheduler = new PosterScheduler(loader);
+        scheduler.setViewport(10, 12);
+    }
+
+    @Test
+    public void visibleRowsStartRightAwayWithHighPriority()
+    {
+        for (int i = 0; i < PosterScheduler.MAX_IN_FLIGHT + 2; i++)
+        {
+            scheduler.load("visible" + i, new RecordingTarget(), PosterScheduler.VISIBLE);
+        }
+        scheduler.load("ahead", new RecordingTarget(), 13);
+
+        assertEquals(PosterScheduler.MAX_IN_FLIGHT + 2, loader.started.size());
+        assertEquals(Picasso.Priority.HIGH, loader.started.get("visible0"));
+        assertEquals(1, scheduler.getPendingCount());
+    }
+
+    @Test
+    public void restStartNearestToViewportFirst()
+    {
+        scheduler.load("far", new RecordingTarget(), 20);
+        scheduler.load("a", new RecordingTarget(), 15);
+        scheduler.load("b", new RecordingTarget(), 16);
+        scheduler.load("c", new RecordingTarget(), 17);
+        scheduler.load("near", new RecordingTarget(), 8);
+
+        // "far" was alone when it came, the next two slots went to the nearest ones afterwards
+        assertEquals(Arrays.asList("far", "a", "b"), new ArrayList<String>(loader.started.keySet()));
+        loader.complete("far");
+        loader.complete("a");
+        assertEquals(Arrays.asList("b", "near", "c"), new ArrayList<String>(loader.started.keySet()));
+        assertEquals(Picasso.Priority.LOW, loader.started.get("near"));
+    }
+
+    @Test
+    public void duplicateRequestsShareOneLoad()
+    {
+        RecordingTarget prefetch = new RecordingTarget();
+        RecordingTarget view = new RecordingTarget();
+        scheduler.load("poster", prefetch, 13);
+        scheduler.load("poster", view, PosterScheduler.VISIBLE);
+
+        assertEquals(1, loader.startCount);
+        loader.complete("poster");
+        assertEquals(1, prefetch.loaded);
+        assertEquals(1, view.loaded);
+        assertEquals(0, scheduler.getInFlightCount());
+    }
+
+    @Test
+    public void loadIsCancelledWhenNobodyWaits()
+    {
+        RecordingTarget first = new RecordingTarget();
+        RecordingTarget second = new RecordingTarget();
+        scheduler.load("poster", first, PosterScheduler.VISIBLE);
+        scheduler.load("poster", second, PosterScheduler.VISIBLE);
+
+        scheduler.cancel(first);
+        assertTrue(loader.cancelled.isEmpty());
+        scheduler.cancel(second);
+        assertEquals(Arrays.asList("poster"), loader.cancelled);
+        assertEquals(0, scheduler.getInFlightCount());
+
+        loader.complete("poster");
+        assertEquals(0, first.loaded + second.loaded);
+    }
+
+    @Test
+    public void cancelFreesSlotForPendingLoad()
+    {
+        List<RecordingTarget> targets = new ArrayList<RecordingTarget>();
+        for (int i = 0; i < PosterScheduler.MAX_IN_FLIGHT + 1; i++)
+        {
+            RecordingTarget target = new RecordingTarget();
+            targets.add(target);
+            scheduler.load("poster" + i, target, 13 + i);
+        }
+        assertEquals(1, scheduler.getPendingCount());
+
+        scheduler.cancel(targets.get(0));
+        assertEquals(PosterScheduler.MAX_IN_FLIGHT, scheduler.getInFlightCount());
+        assertEquals(0, scheduler.getPendingCount());
+    }
+
+    @Test
+    public void pendingLoadsFarFromViewportAreDropped()
+    {
+        for (int i = 0; i < PosterScheduler.MAX_IN_FLIGHT; i++)
+        {
+            scheduler.load("visible" + i, new RecordingTarget(), PosterScheduler.VISIBLE);
+        }
+        RecordingTarget ahead = new RecordingTarget();
+        scheduler.load("ahead", ahead, 14);
+
+        scheduler.setViewport(100, 102);
+        assertEquals(1, ahead.failed);
+        assertEquals(0, scheduler.getPendingCount());
+        // Dropped target is forgotten
+        scheduler.cancel(ahead);
+        assertEquals(PosterScheduler.MAX_IN_FLIGHT, scheduler.getInFlightCount());
+    }
+
+    @Test
+    public void memoryCacheHitsAreDeliveredSynchronously()
+    {
+        loader.synchronous = true;
+        RecordingTarget target = new RecordingTarget();
+        scheduler.load("cached", target, PosterScheduler.VISIBLE);
+        scheduler.load("cached too", new RecordingTarget(), 13);
+
+        assertEquals(1, target.loaded);
+        assertEquals(0, scheduler.getInFlightCount());
+        assertEquals(0, scheduler.getPendingCount());
+    }
+
+    @Test
+    public void newRequestOfTargetReplacesOldOne()
+    {
+        RecordingTarget target = new RecordingTarget();
+        scheduler.load("old", target, PosterScheduler.VISIBLE);
+        scheduler.load("new", target, PosterScheduler.VISIBLE);
+
+        assertEquals(Arrays.asList("old"), loader.cancelled);
+        loader.complete("new");
+        assertEquals(1, target.loaded);
+    }
+
+    private static final class FakeLoader implements PosterScheduler.Loader
+    {
+        final Map<String, Picasso.Priority> started = new LinkedHashMap<String, Picasso.Priority>();
+        final Map<String, Target> targets = new LinkedHashMap<String, Target>();
+        final List<String> cancelled = new ArrayList<String>();
+        int startCount;
+        boolean synchronous;
+
+        @Override
+        public void load(@NonNull String uri, @NonNull Picasso.Priority priority, @NonNull Target target)
+        {
+            startCount++;
+            if (synchronous)
+            {
+                target.onBitmapLoaded(null, Picasso.LoadedFrom.MEMORY);
+                return;
+            }
+            started.put(uri, priority);
+            targets.put(uri, target);
+        }
+
+        @Override
+        public void cancel(@NonNull Target target)
+        {
+            for (Map.Entry<String, Target> entry : targets.entrySet())
+            {
+                if (entry.getValue() == target)
+                {
+                    cancelled.add(entry.getKey());
+                    started.remove(entry.getKey());
+                    targets.remove(entry.getKey());
+                    return;
+                }
+            }
+        }
+
+        void complete(String uri)
+        {
+            started.remove(uri);
+            Target target = targets.remove(uri);
+            if (target != null)
+            {
+                target.onBitmapLoaded(null, Picasso.LoadedFrom.NETWORK);
+            }
+        }
+    }
+
+    private static final class RecordingTarget implements Target
+    {
+        int loaded;
+        int failed;
+
+        @Override
+        public void onBitmapLoaded(Bitmap bitmap, Picasso.LoadedFrom from)
+        {
+            loaded++;
+        }
+
+        @Override
+        public void onBitmapFailed(Drawable errorDrawable)
+        {
+            failed++;
+        }
+
+        @Override
+        public void onPrepareLoad(Drawable placeHolderDrawable)
+        {
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.yamblz.hardoperations.ui;
+
+import android.os.Build;
+import android.text.StaticLayout;
+import android.text.TextPaint;
+
+import com.yamblz.hardoperations.BuildConfig;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = Build.VERSION_CODES.M)
+public class TextLayoutCacheTest
+{
+    private static final int WIDTH = 400;
+    private static final int MAX_LINES = 3;
+    private static final String WORDS = "Исполнитель выпустил альбом в девяносто восьмом году и отправился в тур. ";
+
+    private TextPaint paint;
+
+    @Before
+    public void setUp()
+    {
+        paint = new TextPaint();
+        paint.setTextSize(20);
+    }
+
+    @Test
+    public void shortTextIsLaidOutWhole()
+    {
+        String text = "Земфира";
+        StaticLayout layout = TextLayoutCache.buildCollapsed(text, paint, WIDTH, MAX_LINES);
+        assertEquals(text, layout.getText().toString());
+    }
+
+    @Test
+    public void longTextIsLaidOutOnlyUpToLastLine()
+    {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 10000; i++)
+        {
+            text.append(WORDS).append('\n');
+        }
+        StaticLayout collapsed = TextLayoutCache.buildCollapsed(text, paint, WIDTH, MAX_LINES);
+
+        assertEquals(MAX_LINES, collapsed.getLineCount());
+        String shown = collapsed.getText().toString();
+        assertTrue(shown, shown.endsWith("…"));
+        assertTrue(shown, shown.length() <= WORDS.length() * MAX_LINES + MAX_LINES);
+    }
+
+    @Test
+    public void paragraphsBeyondLastLineAreEllipsized()
+    {
+        String text = "Первый\nВторой\nТретий\nЧетвёртый";
+        StaticLayout collapsed = TextLayoutCache.buildCollapsed(text, paint, WIDTH, MAX_LINES);
+
+        assertEquals(MAX_LINES, collapsed.getLineCount());
+        assertEquals("Первый\nВторой\nТретий…", collapsed.getText().toString());
+    }
+
+    @Test
+    public void fullLayoutIsOnlyPeekedUntilBuilt()
+    {
+        TextLayoutCache cache = new TextLayoutCache(16);
+        cache.updatePaints(RuntimeEnvironment.application.getResources());
+
+        assertNull(cache.peek("1", TextLayoutCache.KIND_DESCRIPTION, WIDTH));
+        StaticLayout collapsed = cache.get("1", TextLayoutCache.KIND_DESCRIPTION_COLLAPSED, WORDS, WIDTH);
+        assertNull(cache.peek("1", TextLayoutCache.KIND_DESCRIPTION, WIDTH));
+
+        StaticLayout full = cache.get("1", TextLayoutCache.KIND_DESCRIPTION, WORDS, WIDTH);
+        assertNotNull(collapsed);
+        assertSame(full, cache.peek("1", TextLayoutCache.KIND_DESCRIPTION, WIDTH));
+        assertSame(collapsed, cache.peek("1", TextLayoutCache.KIND_DESCRIPTION_COLLAPSED, WIDTH));
+    }
+}
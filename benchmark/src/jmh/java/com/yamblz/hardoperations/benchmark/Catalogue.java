@@ -0,0 +1,64 @@
+package com.yamblz.hardoperations.benchmark;
+
+import com.google.gson.Gson;
+import com.yamblz.hardoperations.model.Artist;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The bundled artists.json repeated {@code scale} times, every copy with its own artist ids.
+ */
+final class Catalogue
+{
+    private static final long ID_STEP = 100000000L;
+
+    private Catalogue()
+    {
+    }
+
+    static List<Artist> artists(int scale) throws IOException
+    {
+        Artist[] base = readBundled();
+        List<Artist> artists = new ArrayList<Artist>(base.length * scale);
+        for (int copy = 0; copy < scale; copy++)
+        {
+            for (Artist artist : base)
+            {
+                String id = String.valueOf(Long.parseLong(artist.getId()) + copy * ID_STEP);
+                artists.add(new Artist(id,
+                                       artist.getName(),
+                                       artist.getGenres(),
+                                       artist.getTracksCount(),
+                                       artist.getAlbumsCount(),
+                                       artist.getWebCite(),
+                                       artist.getDescription(),
+                                       artist.getCover()));
+            }
+        }
+        return artists;
+    }
+
+    static String json(int scale) throws IOException
+    {
+        return new Gson().toJson(artists(scale));
+    }
+
+    private static Artist[] readBundled() throws IOException
+    {
+        InputStream in = Catalogue.class.getResourceAsStream("/artists.json");
+        try
+        {
+            Reader reader = new InputStreamReader(in, "UTF-8");
+            return new Gson().fromJson(reader, Artist[].class);
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.yamblz.hardoperations.benchmark;
+
+import com.yamblz.hardoperations.model.ArtistCardModel;
+import com.yamblz.hardoperations.model.ArtistDescriptions;
+import com.yamblz.hardoperations.model.ArtistStore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building of the card models from the store rows, descriptions decoded and built, for the whole catalogue.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class DescriptionBenchmark
+{
+    // Same formatting work as Resources.getQuantityString does for the English plurals
+    private static final ArtistDescriptions.QuantityStrings QUANTITY_STRINGS =
+            new ArtistDescriptions.QuantityStrings()
+            {
+                @Override
+                public String getAlbums(int count)
+                {
+                    return String.format(Locale.US, count == 1 ? "%d album" : "%d albums", count);
+                }
+
+                @Override
+                public String getTracks(int count)
+                {
+                    return String.format(Locale.US, count == 1 ? "%d track" : "%d tracks", count);
+                }
+            };
+
+    @Param({"1", "10", "100"})
+    public int scale;
+
+    private ArtistStore store;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException
+    {
+        store = new ArtistStore();
+        store.addAll(Catalogue.artists(scale));
+        store.trimToSize();
+    }
+
+    @Benchmark
+    public void buildCardModels(Blackhole blackhole)
+    {
+        for (int row = 0, size = store.size(); row < size; row++)
+        {
+            blackhole.consume(ArtistCardModel.create(store, row, QUANTITY_STRINGS));
+        }
+    }
+}
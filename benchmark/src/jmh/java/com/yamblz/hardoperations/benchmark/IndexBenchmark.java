@@ -0,0 +1,98 @@
+package com.yamblz.hardoperations.benchmark;
+
+import com.yamblz.hardoperations.model.Artist;
+import com.yamblz.hardoperations.model.ArtistIndex;
+import com.yamblz.hardoperations.model.ArtistStore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Genre filter and sort queries against the index versus a rescan of the artists.
+ * Scale 316 is about 100k artists.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class IndexBenchmark
+{
+    @Param({"1", "10", "100", "316"})
+    public int scale;
+
+    private List<Artist> artists;
+    private ArtistIndex index;
+    private int[] popOrRock;
+    private int[] popAndDance;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException
+    {
+        artists = Catalogue.artists(scale);
+        ArtistStore store = new ArtistStore();
+        store.addAll(artists);
+        store.trimToSize();
+        index = ArtistIndex.build(store);
+
+        List<String> genres = Arrays.asList(genreNames(store));
+        popOrRock = new int[]{genres.indexOf("pop"), genres.indexOf("rock")};
+        popAndDance = new int[]{genres.indexOf("pop"), genres.indexOf("dance")};
+    }
+
+    private static String[] genreNames(ArtistStore store)
+    {
+        String[] names = new String[store.getGenreOrdinalsCount()];
+        for (int ordinal = 0; ordinal < names.length; ordinal++)
+        {
+            names[ordinal] = store.getGenreName(ordinal);
+        }
+        return names;
+    }
+
+    @Benchmark
+    public int[] anyGenreByTracks()
+    {
+        return index.query(popOrRock, false, ArtistIndex.ORDER_TRACKS);
+    }
+
+    @Benchmark
+    public int[] allGenresByAlbums()
+    {
+        return index.query(popAndDance, true, ArtistIndex.ORDER_ALBUMS);
+    }
+
+    @Benchmark
+    public int[] allArtistsByTracks()
+    {
+        return index.query(new int[0], false, ArtistIndex.ORDER_TRACKS);
+    }
+
+    @Benchmark
+    public int scanAnyGenre()
+    {
+        int count = 0;
+        for (Artist artist : artists)
+        {
+            for (String genre : artist.getGenres())
+            {
+                if ("pop".equals(genre) || "rock".equals(genre))
+                {
+                    count++;
+                    break;
+                }
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,71 @@
+package com.yamblz.hardoperations.benchmark;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.yamblz.hardoperations.communication.ArtistsParallelParser;
+import com.yamblz.hardoperations.communication.ArtistsStreamParser;
+import com.yamblz.hardoperations.model.Artist;
+import com.yamblz.hardoperations.model.GeneratedTypeAdapterFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.CharArrayReader;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scaling of {@link ArtistsParallelParser} with the number of threads against the sequential
+ * {@link ArtistsStreamParser} on the same chars.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ParallelParseBenchmark
+{
+    private static final ArtistsStreamParser.BatchListener IGNORE = new ArtistsStreamParser.BatchListener()
+    {
+        @Override
+        public void onBatchParsed(List<Artist> batch)
+        {
+        }
+    };
+
+    @Param({"10", "100"})
+    public int scale;
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private final Gson gson = new GsonBuilder().registerTypeAdapterFactory(new GeneratedTypeAdapterFactory()).create();
+    private char[] json;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException
+    {
+        json = gson.toJson(Catalogue.artists(scale)).toCharArray();
+    }
+
+    @Benchmark
+    public List<Artist> parallelParser() throws IOException
+    {
+        return new ArtistsParallelParser(gson, threads).parse(json, json.length, IGNORE);
+    }
+
+    /**
+     * The baseline, does not depend on {@link #threads}.
+     */
+    @Benchmark
+    public List<Artist> streamParser() throws IOException
+    {
+        return new ArtistsStreamParser(gson).parse(new CharArrayReader(json), IGNORE);
+    }
+}
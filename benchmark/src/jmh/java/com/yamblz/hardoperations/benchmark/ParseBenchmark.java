@@ -0,0 +1,150 @@
+package com.yamblz.hardoperations.benchmark;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.yamblz.hardoperations.communication.ArtistsSnapshot;
+import com.yamblz.hardoperations.communication.ArtistsStreamParser;
+import com.yamblz.hardoperations.model.Artist;
+import com.yamblz.hardoperations.model.ArtistStore;
+import com.yamblz.hardoperations.model.GeneratedTypeAdapterFactory;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loading of the artists list by every engine of the data path. Gson engines run with reflective adapters
+ * and with the adapters generated at compile time, see {@link GeneratedTypeAdapterFactory}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ParseBenchmark
+{
+    private static final long SOURCE_STAMP = 1;
+    private static final int FIRST_SCREEN_SIZE = ArtistsStreamParser.FIRST_BATCH_SIZE;
+
+    @Param({"1", "10", "100"})
+    public int scale;
+
+    private final Gson gson = new Gson();
+    private final Gson generatedGson = newGeneratedGson();
+    private String json;
+    private String firstArtistJson;
+    private File snapshotFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException
+    {
+        List<Artist> artists = Catalogue.artists(scale);
+        json = gson.toJson(artists);
+        firstArtistJson = gson.toJson(artists.get(0));
+        snapshotFile = File.createTempFile("artists", ".snapshot");
+        ArtistStore store = new ArtistStore();
+        store.addAll(artists);
+        ArtistsSnapshot.write(snapshotFile, store, SOURCE_STAMP);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown()
+    {
+        //noinspection ResultOfMethodCallIgnored
+        snapshotFile.delete();
+    }
+
+    @Benchmark
+    public Artist[] gsonArray()
+    {
+        return gson.fromJson(new StringReader(json), Artist[].class);
+    }
+
+    @Benchmark
+    public Artist[] gsonArrayGenerated()
+    {
+        return generatedGson.fromJson(new StringReader(json), Artist[].class);
+    }
+
+    @Benchmark
+    public List<Artist> streamParser() throws IOException
+    {
+        return streamParser(gson);
+    }
+
+    @Benchmark
+    public List<Artist> streamParserGenerated() throws IOException
+    {
+        return streamParser(generatedGson);
+    }
+
+    private List<Artist> streamParser(Gson gson) throws IOException
+    {
+        return new ArtistsStreamParser(gson).parse(new StringReader(json), new ArtistsStreamParser.BatchListener()
+        {
+            @Override
+            public void onBatchParsed(List<Artist> batch)
+            {
+            }
+        });
+    }
+
+    /**
+     * What a launch pays for the first artist with a new Gson: mostly building the reflective adapters.
+     */
+    @Benchmark
+    public Artist firstArtist()
+    {
+        return new Gson().fromJson(firstArtistJson, Artist.class);
+    }
+
+    @Benchmark
+    public Artist firstArtistGenerated()
+    {
+        return newGeneratedGson().fromJson(firstArtistJson, Artist.class);
+    }
+
+    private static Gson newGeneratedGson()
+    {
+        return new GsonBuilder().registerTypeAdapterFactory(new GeneratedTypeAdapterFactory()).create();
+    }
+
+    /**
+     * What a launch with a valid snapshot pays before the first screen is shown: the columns of the store
+     * are read in bulk, the texts of the first screen are decoded from the mapping.
+     */
+    @Benchmark
+    public Artist snapshotFirstScreen() throws IOException
+    {
+        ArtistStore snapshot = ArtistsSnapshot.open(snapshotFile, SOURCE_STAMP);
+        Artist last = null;
+        for (int i = 0; i < FIRST_SCREEN_SIZE; i++)
+        {
+            last = snapshot.getArtist(i);
+        }
+        return last;
+    }
+
+    @Benchmark
+    public Artist snapshotDecodeAll() throws IOException
+    {
+        ArtistStore snapshot = ArtistsSnapshot.open(snapshotFile, SOURCE_STAMP);
+        Artist last = null;
+        for (int i = 0; i < snapshot.size(); i++)
+        {
+            last = snapshot.getArtist(i);
+        }
+        return last;
+    }
+}
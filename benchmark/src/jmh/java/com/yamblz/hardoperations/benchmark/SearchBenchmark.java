@@ -0,0 +1,88 @@
+package com.yamblz.hardoperations.benchmark;
+
+import com.yamblz.hardoperations.model.Artist;
+import com.yamblz.hardoperations.model.ArtistSearchIndex;
+import com.yamblz.hardoperations.model.ArtistStore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Search over names and descriptions: the inverted index against a lower-cased {@code contains} scan.
+ * Scale 316 is about 100k artists.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SearchBenchmark
+{
+    private static final Locale RUSSIAN = new Locale("ru");
+    private static final String QUERY = "вокалист";
+
+    @Param({"1", "10", "316"})
+    public int scale;
+
+    private List<Artist> artists;
+    private ArtistSearchIndex index;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException
+    {
+        artists = Catalogue.artists(scale);
+        ArtistStore store = new ArtistStore();
+        store.addAll(artists);
+        store.trimToSize();
+        index = ArtistSearchIndex.build(store);
+    }
+
+    @Benchmark
+    public int containsScan()
+    {
+        int count = 0;
+        for (Artist artist : artists)
+        {
+            String name = artist.getName();
+            String description = artist.getDescription();
+            if ((name != null && name.toLowerCase(RUSSIAN).contains(QUERY))
+                    || (description != null && description.toLowerCase(RUSSIAN).contains(QUERY)))
+            {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Benchmark
+    public long[] indexQuery()
+    {
+        return index.query(QUERY);
+    }
+
+    /**
+     * The query typed char by char into one search session, time per char.
+     */
+    @Benchmark
+    @OperationsPerInvocation(8)
+    public void indexTyping(Blackhole blackhole)
+    {
+        ArtistSearchIndex.Search search = index.newSearch();
+        for (int i = 1; i <= QUERY.length(); i++)
+        {
+            blackhole.consume(search.update(QUERY.substring(0, i)));
+        }
+    }
+}
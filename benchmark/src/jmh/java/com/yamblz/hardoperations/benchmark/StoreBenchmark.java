@@ -0,0 +1,60 @@
+package com.yamblz.hardoperations.benchmark;
+
+import com.yamblz.hardoperations.communication.ArtistsStreamParser;
+import com.yamblz.hardoperations.model.Artist;
+import com.yamblz.hardoperations.model.ArtistStore;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Appending the parsed catalogue to an {@link ArtistStore}: all of it at once and in the batches of the parser.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class StoreBenchmark
+{
+    @Param({"1", "10", "100"})
+    public int scale;
+
+    private List<Artist> artists;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException
+    {
+        artists = Catalogue.artists(scale);
+    }
+
+    @Benchmark
+    public ArtistStore addAll()
+    {
+        ArtistStore store = new ArtistStore();
+        store.addAll(artists);
+        store.trimToSize();
+        return store;
+    }
+
+    @Benchmark
+    public ArtistStore addAllInBatches()
+    {
+        ArtistStore store = new ArtistStore();
+        for (int from = 0; from < artists.size(); from += ArtistsStreamParser.MAX_BATCH_SIZE)
+        {
+            store.addAll(artists.subList(from, Math.min(from + ArtistsStreamParser.MAX_BATCH_SIZE, artists.size())));
+        }
+        store.trimToSize();
+        return store;
+    }
+}
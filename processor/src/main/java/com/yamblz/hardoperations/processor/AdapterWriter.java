@@ -0,0 +1,401 @@
+package com.yamblz.hardoperations.processor;
+
+import java.util.List;
+
+import javax.lang.model.util.Types;
+
+/**
+ * Writes the source of generated classes: a streaming {@code TypeAdapter} per model class
+ * and a {@code TypeAdapterFactory} per package that hands them out.
+ */
+final class AdapterWriter
+{
+    static final String FACTORY_NAME = "GeneratedTypeAdapterFactory";
+
+    private static final String HEADER = "// Generated by " + GsonAdaptersProcessor.class.getSimpleName()
+            + ", do not edit\n";
+
+    private final Types types;
+
+    AdapterWriter(Types types)
+    {
+        this.types = types;
+    }
+
+    String writeAdapter(ModelClass model)
+    {
+        boolean readsStrings = false;
+        boolean readsStringArrays = false;
+        for (ModelClass.Property property : model.properties)
+        {
+            readsStrings |= property.kind == ModelClass.Property.Kind.STRING;
+            readsStringArrays |= property.kind == ModelClass.Property.Kind.STRING_ARRAY;
+        }
+
+        Source source = new Source();
+        source.line(HEADER + "package " + model.packageName + ";")
+              .line()
+              .line("import com.google.gson.Gson;")
+              .line("import com.google.gson.JsonSyntaxException;")
+              .line("import com.google.gson.TypeAdapter;")
+              .line("import com.google.gson.reflect.TypeToken;")
+              .line("import com.google.gson.stream.JsonReader;")
+              .line("import com.google.gson.stream.JsonToken;")
+              .line("import com.google.gson.stream.JsonWriter;")
+              .line()
+              .line("import java.io.IOException;")
+              .line()
+              .line("/**")
+              .line(" * Reads and writes {@link " + model.simpleName + "} the way Gson's reflective adapter does,")
+              .line(" * with no reflection.")
+              .line(" */")
+              .line("public final class " + model.getAdapterName() + " extends TypeAdapter<" + model.simpleName + ">")
+              .open();
+
+        for (ModelClass.Property property : model.properties)
+        {
+            if (property.kind == ModelClass.Property.Kind.DELEGATE)
+            {
+                source.line("private final TypeAdapter<" + property.type + "> " + adapterField(property) + ";");
+            }
+        }
+        source.line()
+              .line("public " + model.getAdapterName() + "(Gson gson)")
+              .open();
+        for (ModelClass.Property property : model.properties)
+        {
+            if (property.kind == ModelClass.Property.Kind.DELEGATE)
+            {
+                String type = property.isRawType()
+                        ? types.erasure(property.type) + ".class"
+                        : "new TypeToken<" + property.type + ">() {}";
+                source.line(adapterField(property) + " = gson.getAdapter(" + type + ");");
+            }
+        }
+        source.close();
+
+        writeRead(source, model);
+        writeWrite(source, model);
+        if (readsStrings || readsStringArrays)
+        {
+            writeReadString(source);
+        }
+        if (readsStringArrays)
+        {
+            writeStringArrayMethods(source);
+        }
+        return source.close().toString();
+    }
+
+    private void writeRead(Source source, ModelClass model)
+    {
+        source.line()
+              .line("@Override")
+              .line("public " + model.simpleName + " read(JsonReader in) throws IOException")
+              .open()
+              .line("if (in.peek() == JsonToken.NULL)")
+              .open()
+              .line("in.nextNull();")
+              .line("return null;")
+              .close();
+        for (ModelClass.Property property : model.properties)
+        {
+            source.line(property.type + " " + local(property) + " = " + defaultValue(property) + ";");
+        }
+        source.line("try")
+              .open()
+              .line("in.beginObject();")
+              .line("while (in.hasNext())")
+              .open()
+              .line("switch (in.nextName())")
+              .open();
+        for (ModelClass.Property property : model.properties)
+        {
+            for (String jsonName : property.jsonNames)
+            {
+                source.line("case \"" + escape(jsonName) + "\":");
+            }
+            source.indent();
+            writeReadValue(source, property);
+            source.line("break;").unindent();
+        }
+        source.line("default:")
+              .indent()
+              .line("in.skipValue();")
+              .line("break;")
+              .unindent()
+              .close()
+              .close()
+              .line("in.endObject();")
+              .close()
+              .line("catch (IllegalStateException e)")
+              .open()
+              .line("throw new JsonSyntaxException(e);")
+              .close()
+              .line("catch (NumberFormatException e)")
+              .open()
+              .line("throw new JsonSyntaxException(e);")
+              .close();
+
+        StringBuilder arguments = new StringBuilder();
+        for (ModelClass.Property property : model.properties)
+        {
+            arguments.append(arguments.length() > 0 ? ", " : "").append(local(property));
+        }
+        source.line("return new " + model.simpleName + "(" + arguments + ");")
+              .close();
+    }
+
+    private void writeReadValue(Source source, ModelClass.Property property)
+    {
+        String local = local(property);
+        switch (property.kind)
+        {
+            case STRING:
+                source.line(local + " = readString(in);");
+                return;
+            case STRING_ARRAY:
+                source.line(local + " = readStringArray(in);");
+                return;
+            case DELEGATE:
+                source.line(local + " = " + adapterField(property) + ".read(in);");
+                return;
+            default:
+                // Like Gson, null keeps the default value of a primitive
+                source.line("if (in.peek() == JsonToken.NULL)")
+                      .open()
+                      .line("in.nextNull();")
+                      .close()
+                      .line("else")
+                      .open()
+                      .line(local + " = " + readPrimitive(property.kind) + ";")
+                      .close();
+        }
+    }
+
+    private static String readPrimitive(ModelClass.Property.Kind kind)
+    {
+        switch (kind)
+        {
+            case INT:
+                return "in.nextInt()";
+            case LONG:
+                return "in.nextLong()";
+            case DOUBLE:
+                return "in.nextDouble()";
+            case FLOAT:
+                return "(float) in.nextDouble()";
+            case BOOLEAN:
+                return "in.peek() == JsonToken.STRING ? Boolean.parseBoolean(in.nextString()) : in.nextBoolean()";
+            default:
+                throw new IllegalArgumentException(kind.toString());
+        }
+    }
+
+    private void writeWrite(Source source, ModelClass model)
+    {
+        source.line()
+              .line("@Override")
+              .line("public void write(JsonWriter out, " + model.simpleName + " value) throws IOException")
+              .open()
+              .line("if (value == null)")
+              .open()
+              .line("out.nullValue();")
+              .line("return;")
+              .close()
+              .line("out.beginObject();");
+        for (ModelClass.Property property : model.properties)
+        {
+            String getter = "value." + property.getterName + "()";
+            source.line("out.name(\"" + escape(property.jsonNames.get(0)) + "\");");
+            switch (property.kind)
+            {
+                case STRING_ARRAY:
+                    source.line("writeStringArray(out, " + getter + ");");
+                    break;
+                case DELEGATE:
+                    source.line(adapterField(property) + ".write(out, " + getter + ");");
+                    break;
+                default:
+                    source.line("out.value(" + getter + ");");
+                    break;
+            }
+        }
+        source.line("out.endObject();")
+              .close();
+    }
+
+    private static void writeReadString(Source source)
+    {
+        source.line()
+              .line("private static String readString(JsonReader in) throws IOException")
+              .open()
+              .line("JsonToken token = in.peek();")
+              .line("if (token == JsonToken.NULL)")
+              .open()
+              .line("in.nextNull();")
+              .line("return null;")
+              .close()
+              .line("// Gson reads booleans into strings too")
+              .line("return token == JsonToken.BOOLEAN ? Boolean.toString(in.nextBoolean()) : in.nextString();")
+              .close();
+    }
+
+    private static void writeStringArrayMethods(Source source)
+    {
+        source.line()
+              .line("private static String[] readStringArray(JsonReader in) throws IOException")
+              .open()
+              .line("if (in.peek() == JsonToken.NULL)")
+              .open()
+              .line("in.nextNull();")
+              .line("return null;")
+              .close()
+              .line("java.util.List<String> values = new java.util.ArrayList<String>();")
+              .line("in.beginArray();")
+              .line("while (in.hasNext())")
+              .open()
+              .line("values.add(readString(in));")
+              .close()
+              .line("in.endArray();")
+              .line("return values.toArray(new String[values.size()]);")
+              .close()
+              .line()
+              .line("private static void writeStringArray(JsonWriter out, String[] values) throws IOException")
+              .open()
+              .line("if (values == null)")
+              .open()
+              .line("out.nullValue();")
+              .line("return;")
+              .close()
+              .line("out.beginArray();")
+              .line("for (String value : values)")
+              .open()
+              .line("out.value(value);")
+              .close()
+              .line("out.endArray();")
+              .close();
+    }
+
+    String writeFactory(String packageName, List<ModelClass> models)
+    {
+        Source source = new Source();
+        source.line(HEADER + "package " + packageName + ";")
+              .line()
+              .line("import com.google.gson.Gson;")
+              .line("import com.google.gson.TypeAdapter;")
+              .line("import com.google.gson.TypeAdapterFactory;")
+              .line("import com.google.gson.reflect.TypeToken;")
+              .line()
+              .line("/**")
+              .line(" * Hands generated adapters of the model classes of this package to Gson.")
+              .line(" */")
+              .line("public final class " + FACTORY_NAME + " implements TypeAdapterFactory")
+              .open()
+              .line("@Override")
+              .line("@SuppressWarnings(\"unchecked\")")
+              .line("public <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type)")
+              .open()
+              .line("Class<? super T> rawType = type.getRawType();");
+        for (ModelClass model : models)
+        {
+            source.line("if (rawType == " + model.simpleName + ".class)")
+                  .open()
+                  .line("return (TypeAdapter<T>) new " + model.getAdapterName() + "(gson);")
+                  .close();
+        }
+        return source.line("return null;")
+                     .close()
+                     .close()
+                     .toString();
+    }
+
+    private static String adapterField(ModelClass.Property property)
+    {
+        return property.fieldName + "Adapter";
+    }
+
+    /**
+     * Locals are prefixed so that they never clash with the names the generated code uses.
+     */
+    private static String local(ModelClass.Property property)
+    {
+        return "_" + property.fieldName;
+    }
+
+    private static String defaultValue(ModelClass.Property property)
+    {
+        switch (property.kind)
+        {
+            case INT:
+            case LONG:
+            case DOUBLE:
+            case FLOAT:
+                return "0";
+            case BOOLEAN:
+                return "false";
+            default:
+                return "null";
+        }
+    }
+
+    private static String escape(String value)
+    {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"");
+    }
+
+    /**
+     * Java source with Allman braces and four space indents.
+     */
+    private static final class Source
+    {
+        private final StringBuilder text = new StringBuilder();
+        private int depth;
+
+        Source line()
+        {
+            text.append('\n');
+            return this;
+        }
+
+        Source line(String line)
+        {
+            for (int i = 0; i < depth; i++)
+            {
+                text.append("    ");
+            }
+            text.append(line).append('\n');
+            return this;
+        }
+
+        Source open()
+        {
+            line("{");
+            return indent();
+        }
+
+        Source close()
+        {
+            unindent();
+            return line("}");
+        }
+
+        Source indent()
+        {
+            depth++;
+            return this;
+        }
+
+        Source unindent()
+        {
+            depth--;
+            return this;
+        }
+
+        @Override
+        public String toString()
+        {
+            return text.toString();
+        }
+    }
+}
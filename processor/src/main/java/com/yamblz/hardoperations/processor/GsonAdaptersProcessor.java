@@ -0,0 +1,126 @@
+package com.yamblz.hardoperations.processor;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.TypeElement;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Generates a streaming Gson {@code TypeAdapter} for every class with {@code @SerializedName} fields,
+ * so that Gson neither builds reflective adapters at startup nor sets fields through reflection while parsing.
+ * The adapters are registered through the {@code GeneratedTypeAdapterFactory} of the package of the models:
+ * <pre>
+ * new GsonBuilder().registerTypeAdapterFactory(new GeneratedTypeAdapterFactory()).create()
+ * </pre>
+ * A model class must be top level, have a getter for every field and a constructor taking all fields
+ * in the order they are declared.
+ */
+public class GsonAdaptersProcessor extends AbstractProcessor
+{
+    @Override
+    public Set<String> getSupportedAnnotationTypes()
+    {
+        return Collections.singleton(ModelClass.SERIALIZED_NAME);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion()
+    {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv)
+    {
+        if (annotations.isEmpty())
+        {
+            return false;
+        }
+
+        Set<TypeElement> modelTypes = new LinkedHashSet<TypeElement>();
+        for (TypeElement annotation : annotations)
+        {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation))
+            {
+                if (element.getKind() == ElementKind.FIELD)
+                {
+                    modelTypes.add((TypeElement) element.getEnclosingElement());
+                }
+            }
+        }
+
+        Map<String, List<ModelClass>> modelsByPackage = new LinkedHashMap<String, List<ModelClass>>();
+        for (TypeElement type : modelTypes)
+        {
+            try
+            {
+                ModelClass model = ModelClass.parse(type, processingEnv.getElementUtils(), processingEnv.getTypeUtils());
+                List<ModelClass> models = modelsByPackage.get(model.packageName);
+                if (models == null)
+                {
+                    models = new ArrayList<ModelClass>();
+                    modelsByPackage.put(model.packageName, models);
+                }
+                models.add(model);
+            }
+            catch (ModelClass.InvalidModelException e)
+            {
+                processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, e.getMessage(), e.element);
+            }
+        }
+
+        AdapterWriter writer = new AdapterWriter(processingEnv.getTypeUtils());
+        for (Map.Entry<String, List<ModelClass>> entry : modelsByPackage.entrySet())
+        {
+            List<ModelClass> models = entry.getValue();
+            Element[] originatingElements = new Element[models.size()];
+            for (int i = 0; i < models.size(); i++)
+            {
+                ModelClass model = models.get(i);
+                originatingElements[i] = model.element;
+                write(model.packageName + "." + model.getAdapterName(), writer.writeAdapter(model), model.element);
+            }
+            write(entry.getKey() + "." + AdapterWriter.FACTORY_NAME,
+                  writer.writeFactory(entry.getKey(), models),
+                  originatingElements);
+        }
+        return false;
+    }
+
+    private void write(String className, String source, Element... originatingElements)
+    {
+        try
+        {
+            JavaFileObject file = processingEnv.getFiler().createSourceFile(className, originatingElements);
+            Writer writer = file.openWriter();
+            try
+            {
+                writer.write(source);
+            }
+            finally
+            {
+                writer.close();
+            }
+        }
+        catch (IOException e)
+        {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                                                     "Can't write " + className + ": " + e.getMessage(),
+                                                     originatingElements[0]);
+        }
+    }
+}
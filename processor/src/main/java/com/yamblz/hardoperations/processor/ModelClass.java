@@ -0,0 +1,258 @@
+package com.yamblz.hardoperations.processor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
+
+/**
+ * A model class as its generated adapter sees it: serialized fields in declaration order, each read
+ * through its getter, and the constructor that takes all of them in the same order.
+ */
+final class ModelClass
+{
+    static final String SERIALIZED_NAME = "com.google.gson.annotations.SerializedName";
+
+    final TypeElement element;
+    final String packageName;
+    final String simpleName;
+    final List<Property> properties;
+
+    private ModelClass(TypeElement element, String packageName, List<Property> properties)
+    {
+        this.element = element;
+        this.packageName = packageName;
+        this.simpleName = element.getSimpleName().toString();
+        this.properties = properties;
+    }
+
+    String getAdapterName()
+    {
+        return simpleName + "$$TypeAdapter";
+    }
+
+    static ModelClass parse(TypeElement type, Elements elements, Types types) throws InvalidModelException
+    {
+        if (type.getNestingKind() != NestingKind.TOP_LEVEL || type.getKind() != ElementKind.CLASS)
+        {
+            throw new InvalidModelException(type, "Only top level classes get generated adapters");
+        }
+        if (type.getModifiers().contains(Modifier.PRIVATE) || type.getModifiers().contains(Modifier.ABSTRACT))
+        {
+            throw new InvalidModelException(type, "Model class must be neither private nor abstract");
+        }
+
+        List<Property> properties = new ArrayList<Property>();
+        for (VariableElement field : ElementFilter.fieldsIn(type.getEnclosedElements()))
+        {
+            if (field.getModifiers().contains(Modifier.STATIC) || field.getModifiers().contains(Modifier.TRANSIENT))
+            {
+                continue;
+            }
+            AnnotationMirror serializedName = findSerializedName(field);
+            if (serializedName == null)
+            {
+                throw new InvalidModelException(field, "All serialized fields must be annotated with @SerializedName");
+            }
+            Property.Kind kind = Property.kindOf(field.asType(), elements, types);
+            if (kind == Property.Kind.DELEGATE && field.asType().getKind().isPrimitive())
+            {
+                throw new InvalidModelException(field, "Unsupported primitive type " + field.asType());
+            }
+            properties.add(new Property(field, names(serializedName), findGetter(type, field, types), kind));
+        }
+
+        if (!hasConstructor(type, properties, types))
+        {
+            throw new InvalidModelException(type, "Model class must have a constructor taking all serialized fields"
+                    + " in the order they are declared");
+        }
+        PackageElement packageElement = elements.getPackageOf(type);
+        return new ModelClass(type, packageElement.getQualifiedName().toString(), properties);
+    }
+
+    private static AnnotationMirror findSerializedName(Element element)
+    {
+        for (AnnotationMirror annotation : element.getAnnotationMirrors())
+        {
+            if (annotation.getAnnotationType().toString().equals(SERIALIZED_NAME))
+            {
+                return annotation;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the serialized name first, then the alternate names
+     */
+    private static List<String> names(AnnotationMirror serializedName)
+    {
+        List<String> names = new ArrayList<String>();
+        List<String> alternates = Collections.emptyList();
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry
+                : serializedName.getElementValues().entrySet())
+        {
+            String key = entry.getKey().getSimpleName().toString();
+            if (key.equals("value"))
+            {
+                names.add(0, (String) entry.getValue().getValue());
+            }
+            else if (key.equals("alternate"))
+            {
+                alternates = new ArrayList<String>();
+                for (Object alternate : (List<?>) entry.getValue().getValue())
+                {
+                    alternates.add((String) ((AnnotationValue) alternate).getValue());
+                }
+            }
+        }
+        names.addAll(alternates);
+        return names;
+    }
+
+    private static String findGetter(TypeElement type, VariableElement field, Types types)
+            throws InvalidModelException
+    {
+        String fieldName = field.getSimpleName().toString();
+        String capitalized = Character.toUpperCase(fieldName.charAt(0)) + fieldName.substring(1);
+        for (ExecutableElement method : ElementFilter.methodsIn(type.getEnclosedElements()))
+        {
+            String name = method.getSimpleName().toString();
+            if ((name.equals("get" + capitalized) || name.equals("is" + capitalized))
+                    && method.getParameters().isEmpty()
+                    && !method.getModifiers().contains(Modifier.PRIVATE)
+                    && !method.getModifiers().contains(Modifier.STATIC)
+                    && types.isSameType(method.getReturnType(), field.asType()))
+            {
+                return name;
+            }
+        }
+        throw new InvalidModelException(field, "Serialized field must have a getter get" + capitalized + "()");
+    }
+
+    private static boolean hasConstructor(TypeElement type, List<Property> properties, Types types)
+    {
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements()))
+        {
+            List<? extends VariableElement> parameters = constructor.getParameters();
+            if (constructor.getModifiers().contains(Modifier.PRIVATE) || parameters.size() != properties.size())
+            {
+                continue;
+            }
+            boolean matches = true;
+            for (int i = 0; i < parameters.size() && matches; i++)
+            {
+                matches = types.isSameType(parameters.get(i).asType(), properties.get(i).type);
+            }
+            if (matches)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * A serialized field and the way its generated adapter reads and writes it.
+     */
+    static final class Property
+    {
+        enum Kind
+        {
+            INT, LONG, DOUBLE, FLOAT, BOOLEAN,
+            STRING,
+            STRING_ARRAY,
+            // Any other type, read and written by the adapter Gson has for it
+            DELEGATE
+        }
+
+        final String fieldName;
+        // The serialized name first, then the alternate names
+        final List<String> jsonNames;
+        final String getterName;
+        final TypeMirror type;
+        final Kind kind;
+
+        Property(VariableElement field, List<String> jsonNames, String getterName, Kind kind)
+        {
+            this.fieldName = field.getSimpleName().toString();
+            this.jsonNames = jsonNames;
+            this.getterName = getterName;
+            this.type = field.asType();
+            this.kind = kind;
+        }
+
+        static Kind kindOf(TypeMirror type, Elements elements, Types types)
+        {
+            switch (type.getKind())
+            {
+                case INT:
+                    return Kind.INT;
+                case LONG:
+                    return Kind.LONG;
+                case DOUBLE:
+                    return Kind.DOUBLE;
+                case FLOAT:
+                    return Kind.FLOAT;
+                case BOOLEAN:
+                    return Kind.BOOLEAN;
+                case ARRAY:
+                    return isString(((ArrayType) type).getComponentType(), elements, types)
+                            ? Kind.STRING_ARRAY
+                            : Kind.DELEGATE;
+                default:
+                    return isString(type, elements, types) ? Kind.STRING : Kind.DELEGATE;
+            }
+        }
+
+        private static boolean isString(TypeMirror type, Elements elements, Types types)
+        {
+            return type.getKind() == TypeKind.DECLARED
+                    && types.isSameType(type, elements.getTypeElement(String.class.getName()).asType());
+        }
+
+        /**
+         * Whether {@code gson.getAdapter(Type.class)} gets the adapter, otherwise a type token is needed.
+         */
+        boolean isRawType()
+        {
+            TypeMirror component = type;
+            while (component.getKind() == TypeKind.ARRAY)
+            {
+                component = ((ArrayType) component).getComponentType();
+            }
+            return component.getKind() != TypeKind.DECLARED
+                    || ((DeclaredType) component).getTypeArguments().isEmpty();
+        }
+    }
+
+    static final class InvalidModelException extends Exception
+    {
+        final Element element;
+
+        InvalidModelException(Element element, String message)
+        {
+            super(message);
+            this.element = element;
+        }
+    }
+}